@@ -0,0 +1,45 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.agent;
+
+import java.lang.instrument.Instrumentation;
+
+/**
+ * Java agent replacing {@link ove.atomic.Temporal.Reference.Versioned}
+ * instance fields with inline reads and writes of the Temporal.Context of
+ * the current actor. See {@link VersionedTransformer}.
+ * <pre>
+ * java -javaagent:temporal-agent.jar ...
+ * </pre>
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/29/14
+ */
+public final class VersionedAgent {
+
+	private VersionedAgent () { }
+
+	public static void premain (final String args, final Instrumentation instrumentation) {
+		instrumentation.addTransformer(new VersionedTransformer());
+	}
+}
@@ -0,0 +1,363 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.agent;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.AdviceAdapter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.IllegalClassFormatException;
+import java.security.ProtectionDomain;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rewrites the versioned instance fields of classes as they are loaded.
+ * <p>
+ * A class declaring n versioned fields loses them, and gains a single
+ * (synthetic) int field {@value #BASE} set on construction to the first of n
+ * ids allocated for the object. In all classes, getfield and putfield of a
+ * versioned field k become calls of the static VersionedFields accessor of
+ * the field type with id base + k.
+ * <p>
+ * Only the stack is rewritten (not the control flow) so stack map frames
+ * remain valid and the rewritten classes need not be loaded to compute them.
+ * <p>
+ * A class that fails to be rewritten is loaded as is: the failure is logged
+ * (java.util.logging, as a warning) and rethrown to the JVM, which ignores
+ * it.
+ * <p>
+ * REVU: versioned fields are gone for reflection and serialization, and
+ * static versioned fields are not supported (left as is).
+ * <p>
+ * Layouts of classes are cached by name per class loader: classes of the
+ * same name loaded by different loaders may declare different fields.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/29/14
+ */
+final class VersionedTransformer implements ClassFileTransformer {
+
+	/** */
+	static final String VERSIONED = "Love/atomic/Temporal$Reference$Versioned;";
+
+	/** */
+	static final String BASE = "ove$temporal$base";
+
+	/** */
+	static final String FIELDS = "ove/atomic/ri/VersionedFields";
+
+	/** */
+	private static final Logger logger = Logger.getLogger(VersionedTransformer.class.getName());
+
+	/** layouts by (internal) class name, by (weakly held) loader -- null for the bootstrap loader */
+	private final Map<ClassLoader, Map<String, Layout>> layouts = new WeakHashMap<>();
+
+	@Override public byte[] transform (final ClassLoader loader, final String className, final Class<?> redefined,
+			final ProtectionDomain domain, final byte[] bytes) throws IllegalClassFormatException
+	{
+		if(className == null || skipped(className)) {
+			return null;
+		}
+		try {
+			final ClassReader reader = new ClassReader(bytes);
+			final Layout layout = Layout.of(reader);
+			layouts(loader).put(className, layout);
+			final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+			final Rewriter rewriter = new Rewriter(writer, loader, layout);
+			reader.accept(rewriter, ClassReader.EXPAND_FRAMES);
+			return rewriter.changed ? writer.toByteArray() : null;
+		} catch (RuntimeException e) {
+			final String err = String.format("ERR-instrument %s - loaded as is", className);
+			logger.log(Level.WARNING, err, e);
+			final IllegalClassFormatException failure = new IllegalClassFormatException(err);
+			failure.initCause(e);
+			throw failure;
+		}
+	}
+
+	/** @return true if classes of the package are never instrumented */
+	private static boolean skipped (final String className) {
+		return className.startsWith("java/")
+				|| className.startsWith("javax/")
+				|| className.startsWith("jdk/")
+				|| className.startsWith("sun/")
+				|| className.startsWith("com/sun/")
+				|| className.startsWith("ove/atomic/");
+	}
+
+	/** @return layouts of the classes of loader, by (internal) class name */
+	private Map<String, Layout> layouts (final ClassLoader loader) {
+		synchronized (layouts) {
+			return layouts.computeIfAbsent(loader, l -> new ConcurrentHashMap<>());
+		}
+	}
+
+	/** @return the layout of the named class as seen by loader, or null if its class file is not found */
+	private Layout layout (final ClassLoader loader, final String className) {
+		final Map<String, Layout> layouts = layouts(loader);
+		final Layout layout = layouts.get(className);
+		if(layout != null || skipped(className)) {
+			return layout;
+		}
+		final ClassLoader classLoader = loader == null ? ClassLoader.getSystemClassLoader() : loader;
+		try (final InputStream in = classLoader.getResourceAsStream(className + ".class")) {
+			if(in == null) {
+				return null;
+			}
+			final Layout loaded = Layout.of(new ClassReader(in));
+			layouts.put(className, loaded);
+			return loaded;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/** @return the versioned field named name of class owner (or its superclasses), or null */
+	private Field resolve (final ClassLoader loader, String owner, final String name) {
+		for(Layout layout; owner != null && (layout = layout(loader, owner)) != null; owner = layout.superName) {
+			if(layout.declared.containsKey(name)) {
+				return layout.versioned.get(name);
+			}
+		}
+		return null;
+	}
+
+	// ------------------------------------------------------------------
+	// VersionedTransformer.Layout
+	// ------------------------------------------------------------------
+	/** fields of a class, and the (index of) its versioned instance fields */
+	static final class Layout {
+		final String name;
+		String superName;
+		final Map<String, String> declared = new HashMap<>();
+		final Map<String, Field> versioned = new HashMap<>();
+
+		private Layout (final String name) {
+			this.name = name;
+		}
+
+		static Layout of (final ClassReader reader) {
+			final Layout layout = new Layout(reader.getClassName());
+			reader.accept(new ClassVisitor(Opcodes.ASM9) {
+				@Override public void visit (final int version, final int access, final String name, final String signature,
+						final String superName, final String[] interfaces)
+				{
+					layout.superName = superName;
+				}
+				@Override public FieldVisitor visitField (final int access, final String name, final String descriptor,
+						final String signature, final Object value)
+				{
+					layout.declared.put(name, descriptor);
+					if((access & Opcodes.ACC_STATIC) != 0) {
+						return null;
+					}
+					return new FieldVisitor(Opcodes.ASM9) {
+						@Override public AnnotationVisitor visitAnnotation (final String annotation, final boolean visible) {
+							if(VERSIONED.equals(annotation)) {
+								layout.versioned.put(name, new Field(layout.name, layout.versioned.size(), descriptor));
+							}
+							return null;
+						}
+					};
+				}
+			}, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+			return layout;
+		}
+	}
+
+	// ------------------------------------------------------------------
+	// VersionedTransformer.Field
+	// ------------------------------------------------------------------
+	/** a versioned field -- id of field is base + index */
+	static final class Field {
+		final String owner;
+		final int index;
+		final String descriptor;
+
+		Field (final String owner, final int index, final String descriptor) {
+			this.owner = owner;
+			this.index = index;
+			this.descriptor = descriptor;
+		}
+
+		/** @return suffix of the VersionedFields accessors of the field, e.g. "Int" */
+		final String accessor () {
+			switch (descriptor.charAt(0)) {
+				case 'Z': return "Boolean";
+				case 'B': return "Byte";
+				case 'C': return "Char";
+				case 'S': return "Short";
+				case 'I': return "Int";
+				case 'J': return "Long";
+				case 'F': return "Float";
+				case 'D': return "Double";
+				default: return "";
+			}
+		}
+
+		final boolean reference () {
+			return descriptor.charAt(0) == 'L' || descriptor.charAt(0) == '[';
+		}
+
+		final boolean wide () {
+			return descriptor.charAt(0) == 'J' || descriptor.charAt(0) == 'D';
+		}
+	}
+
+	// ------------------------------------------------------------------
+	// VersionedTransformer.Rewriter
+	// ------------------------------------------------------------------
+	/** */
+	private final class Rewriter extends ClassVisitor {
+		final ClassLoader loader;
+		final Layout layout;
+		boolean changed;
+
+		Rewriter (final ClassVisitor writer, final ClassLoader loader, final Layout layout) {
+			super(Opcodes.ASM9, writer);
+			this.loader = loader;
+			this.layout = layout;
+		}
+
+		@Override public FieldVisitor visitField (final int access, final String name, final String descriptor,
+				final String signature, final Object value)
+		{
+			if(layout.versioned.containsKey(name)) {
+				changed = true;
+				return null;
+			}
+			return super.visitField(access, name, descriptor, signature, value);
+		}
+
+		@Override public MethodVisitor visitMethod (final int access, final String name, final String descriptor,
+				final String signature, final String[] exceptions)
+		{
+			final MethodVisitor mv = super.visitMethod(access, name, descriptor, signature, exceptions);
+			return new MethodRewriter(mv, access, name, descriptor);
+		}
+
+		@Override public void visitEnd () {
+			if(!layout.versioned.isEmpty()) {
+				super.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC, BASE, "I", null, null).visitEnd();
+			}
+			super.visitEnd();
+		}
+
+		/** */
+		private final class MethodRewriter extends AdviceAdapter {
+			final boolean constructor;
+			/** owner of the last constructor invoked */
+			String invoked;
+
+			MethodRewriter (final MethodVisitor mv, final int access, final String name, final String descriptor) {
+				super(Opcodes.ASM9, mv, access, name, descriptor);
+				this.constructor = "<init>".equals(name);
+			}
+
+			@Override public void visitMethodInsn (final int opcode, final String owner, final String name,
+					final String descriptor, final boolean isInterface)
+			{
+				if(opcode == Opcodes.INVOKESPECIAL && "<init>".equals(name)) {
+					invoked = owner;
+				}
+				super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+			}
+
+			/** after the super (not this) constructor call: allocate the ids of the object */
+			@Override protected void onMethodEnter () {
+				if(constructor && !layout.versioned.isEmpty() && !layout.name.equals(invoked)) {
+					super.visitVarInsn(Opcodes.ALOAD, 0);
+					super.visitVarInsn(Opcodes.ALOAD, 0);
+					super.visitLdcInsn(layout.versioned.size());
+					super.visitMethodInsn(Opcodes.INVOKESTATIC, FIELDS, "allocate", "(Ljava/lang/Object;I)I", false);
+					super.visitFieldInsn(Opcodes.PUTFIELD, layout.name, BASE, "I");
+					changed = true;
+				}
+			}
+
+			@Override public void visitFieldInsn (final int opcode, final String owner, final String name, final String descriptor) {
+				final Field field = opcode == Opcodes.GETFIELD || opcode == Opcodes.PUTFIELD
+						? resolve(loader, owner, name)
+						: null;
+				if(field == null) {
+					super.visitFieldInsn(opcode, owner, name, descriptor);
+					return;
+				}
+				changed = true;
+				final String accessor = field.accessor();
+				if(opcode == Opcodes.GETFIELD) {
+					// [object] -> [id] -> [value]
+					id(field);
+					if(field.reference()) {
+						super.visitMethodInsn(Opcodes.INVOKESTATIC, FIELDS, "read", "(I)Ljava/lang/Object;", false);
+						if(!"Ljava/lang/Object;".equals(field.descriptor)) {
+							final String type = field.descriptor.charAt(0) == 'L'
+									? field.descriptor.substring(1, field.descriptor.length() - 1)
+									: field.descriptor;
+							super.visitTypeInsn(Opcodes.CHECKCAST, type);
+						}
+					} else {
+						super.visitMethodInsn(Opcodes.INVOKESTATIC, FIELDS, "read" + accessor, "(I)" + field.descriptor, false);
+					}
+				} else {
+					// [object, value] -> [value, object] -> [value, id] -> [id, value]
+					if(field.wide()) {
+						super.visitInsn(Opcodes.DUP2_X1);
+						super.visitInsn(Opcodes.POP2);
+						id(field);
+						super.visitInsn(Opcodes.DUP_X2);
+						super.visitInsn(Opcodes.POP);
+					} else {
+						super.visitInsn(Opcodes.SWAP);
+						id(field);
+						super.visitInsn(Opcodes.SWAP);
+					}
+					final String type = field.reference() ? "Ljava/lang/Object;" : field.descriptor;
+					super.visitMethodInsn(Opcodes.INVOKESTATIC, FIELDS, "write" + accessor, "(I" + type + ")V", false);
+				}
+			}
+
+			/** [object] -> [base + index] */
+			private void id (final Field field) {
+				super.visitFieldInsn(Opcodes.GETFIELD, field.owner, BASE, "I");
+				if(field.index > 0) {
+					super.visitLdcInsn(field.index);
+					super.visitInsn(Opcodes.IADD);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,213 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.agent;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.testng.annotations.Test;
+import ove.atomic.ri.InMemory;
+import ove.poc.VersionedFixtures;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+/**
+ * Round trip of classes instrumented by VersionedTransformer -- loaded by a
+ * class loader that transforms them, as the agent would.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 6/9/14
+ */
+public class VersionedTransformerTest {
+
+	/** */
+	private static final String FIXTURES = VersionedFixtures.class.getName();
+
+	@Test
+	public void instrumentsFields () throws Exception {
+		final ClassLoader loader = new Instrumenting(new VersionedTransformer());
+		final Class<?> base = loader.loadClass(FIXTURES + "$Base");
+		final Class<?> sub = loader.loadClass(FIXTURES + "$Sub");
+		for(final String name : new String[]{ "total", "ratio", "label" }) {
+			try {
+				sub.getDeclaredField(name);
+				fail(String.format("versioned field %s not removed", name));
+			} catch (NoSuchFieldException expected) { }
+		}
+		assertNotNull(base.getDeclaredField("plain"));
+
+		// Base and Sub each have a base id, allocated on construction
+		final Object x = act(() -> {
+			try {
+				return sub.newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		final Field baseOfBase = base.getDeclaredField(VersionedTransformer.BASE);
+		final Field baseOfSub = sub.getDeclaredField(VersionedTransformer.BASE);
+		assertNotEquals(baseOfBase.getInt(x), baseOfSub.getInt(x));
+	}
+
+	@Test
+	public void roundTrip () throws Exception {
+		final ClassLoader loader = new Instrumenting(new VersionedTransformer());
+		final Runnable check = (Runnable) loader.loadClass(FIXTURES + "$Check").newInstance();
+		act(() -> {
+			check.run();
+			return null;
+		});
+	}
+
+	/** classes of the same name of different loaders have their own layouts */
+	@Test
+	public void layoutsByLoader () throws Exception {
+		final VersionedTransformer transformer = new VersionedTransformer();
+		final ClassLoader versioned = new Serving("ove/poc/Layout", layout(true));
+		final ClassLoader plain = new Serving("ove/poc/Layout", layout(false));
+		assertNotNull(transformer.transform(versioned, "ove/poc/Layout", null, null, layout(true)));
+		assertNotNull(transformer.transform(versioned, "ove/poc/Reader", null, null, reader()));
+		assertNull(transformer.transform(plain, "ove/poc/Reader", null, null, reader()), "field of plain Layout rewritten");
+	}
+
+	// ------------------------------------------------------------------
+	// helpers
+	// ------------------------------------------------------------------
+
+	/** @return result of task, run by an actor of a new root context */
+	private static Object act (final java.util.concurrent.Callable<Object> task) throws Exception {
+		final Object[] result = new Object[2];
+		final InMemory.TemporalActor actor = new InMemory.TemporalActor(InMemory.TemporalContext.newRootContext("test"), () -> {
+			try {
+				result[0] = task.call();
+			} catch (Throwable t) {
+				result[1] = t;
+			}
+		}, "test-actor");
+		actor.start();
+		actor.join();
+		if(result[1] != null) {
+			throw new AssertionError(((Throwable) result[1]).getMessage(), (Throwable) result[1]);
+		}
+		return result[0];
+	}
+
+	/** @return class ove/poc/Layout with an int field x, versioned or not */
+	private static byte[] layout (final boolean versioned) {
+		final ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "ove/poc/Layout", null, "java/lang/Object", null);
+		if(versioned) {
+			writer.visitField(0, "x", "I", null, null).visitAnnotation(VersionedTransformer.VERSIONED, true).visitEnd();
+		} else {
+			writer.visitField(0, "x", "I", null, null).visitEnd();
+		}
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	/** @return class ove/poc/Reader with a static method reading field x of a Layout */
+	private static byte[] reader () {
+		final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "ove/poc/Reader", null, "java/lang/Object", null);
+		final MethodVisitor mv = writer.visitMethod(Opcodes.ACC_STATIC, "x", "(Love/poc/Layout;)I", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitFieldInsn(Opcodes.GETFIELD, "ove/poc/Layout", "x", "I");
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	private static byte[] bytes (final InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[4096];
+		for(int n; (n = in.read(buffer)) > 0; ) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	// ------------------------------------------------------------------
+	// class loaders
+	// ------------------------------------------------------------------
+	/** defines the classes of VersionedFixtures itself, transformed */
+	private static final class Instrumenting extends ClassLoader {
+		final VersionedTransformer transformer;
+
+		Instrumenting (final VersionedTransformer transformer) {
+			super(VersionedTransformerTest.class.getClassLoader());
+			this.transformer = transformer;
+		}
+
+		@Override protected Class<?> loadClass (final String name, final boolean resolve) throws ClassNotFoundException {
+			if(!name.startsWith(FIXTURES)) {
+				return super.loadClass(name, resolve);
+			}
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> loaded = findLoadedClass(name);
+				if(loaded == null) {
+					final String className = name.replace('.', '/');
+					try (final InputStream in = getParent().getResourceAsStream(className + ".class")) {
+						final byte[] bytes = bytes(in);
+						final byte[] transformed = transformer.transform(this, className, null, null, bytes);
+						final byte[] defined = transformed == null ? bytes : transformed;
+						loaded = defineClass(name, defined, 0, defined.length);
+					} catch (Exception e) {
+						throw new ClassNotFoundException(name, e);
+					}
+				}
+				if(resolve) {
+					resolveClass(loaded);
+				}
+				return loaded;
+			}
+		}
+	}
+
+	/** serves the class file of one class as a resource */
+	private static final class Serving extends ClassLoader {
+		final String className;
+		final byte[] bytes;
+
+		Serving (final String className, final byte[] bytes) {
+			this.className = className;
+			this.bytes = bytes;
+		}
+
+		@Override public InputStream getResourceAsStream (final String name) {
+			return name.equals(className + ".class") ? new ByteArrayInputStream(bytes) : super.getResourceAsStream(name);
+		}
+	}
+}
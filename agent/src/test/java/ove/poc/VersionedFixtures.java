@@ -0,0 +1,109 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.poc;
+
+import ove.atomic.Temporal;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Classes with versioned fields, loaded instrumented by the tests of the
+ * ove.atomic.agent module -- see VersionedTransformerTest.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 6/9/14
+ */
+public final class VersionedFixtures {
+
+	private VersionedFixtures () { }
+
+	/* -- VersionedFixtures.Base ------------------------------------- */
+
+	public static class Base {
+		@Temporal.Reference.Versioned int count;
+		@Temporal.Reference.Versioned String name = "base";
+		int plain = 1;
+	}
+
+	/* -- VersionedFixtures.Sub -------------------------------------- */
+
+	/** its versioned fields (and base id) shadow none of those of Base */
+	public static class Sub extends Base {
+		@Temporal.Reference.Versioned long total = 7L;
+		@Temporal.Reference.Versioned double ratio;
+		/** initializer reads a versioned field of Base */
+		@Temporal.Reference.Versioned String label = "sub-" + name;
+
+		public Sub () {
+			this(2.5);
+		}
+
+		public Sub (final double ratio) {
+			super();
+			this.ratio = ratio;
+		}
+	}
+
+	/* -- VersionedFixtures.Check ------------------------------------ */
+
+	/** reads and writes the versioned fields of fixtures -- run by an actor */
+	public static final class Check implements Runnable {
+		@Override public void run () {
+			final Sub x = new Sub();
+			final Sub y = new Sub(1.0);
+
+			// field initializers, and constructor writes
+			assertEquals(x.name, "base");
+			assertEquals(x.label, "sub-base");
+			assertEquals(x.total, 7L);
+			assertEquals(x.ratio, 2.5);
+			assertEquals(y.ratio, 1.0);
+			assertEquals(x.count, 0);
+			assertEquals(x.plain, 1);
+
+			// wide putfield: value on the stack above the object, chained and compound
+			final long chained = x.total = 40L;
+			final double doubled = y.ratio = x.ratio * 2;
+			y.total += x.total;
+			x.ratio -= 0.5;
+			assertEquals(chained, 40L);
+			assertEquals(doubled, 5.0);
+			assertEquals(x.total, 40L);
+			assertEquals(y.total, 47L);
+			assertEquals(x.ratio, 2.0);
+			assertEquals(y.ratio, 5.0);
+
+			// fields of Base written through Sub and Base are the same, and per object
+			final Base base = x;
+			base.count++;
+			x.count += 2;
+			y.count = x.count * 10;
+			x.name = "x";
+			assertEquals(base.count, 3);
+			assertEquals(y.count, 30);
+			assertEquals(x.label, "sub-base");
+			assertEquals(y.name, "base");
+			assertEquals(((Base) y).name, "base");
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.benchmarks;
+
+import ove.atomic.Temporal;
+import ove.atomic.ri.InMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Actor#fork, start, and Actor#merge round-trip latency of a task that writes
+ * a single id -- for a TemporalActor (a thread per fork) and a TaskActor
+ * (running on the caller).
+ * <p>
+ * Actor contexts compact after merges, so the timeline depth is bounded.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/27/14
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ActorBenchmark {
+
+	/** */
+	static final int ID = 0;
+
+	/** */
+	static final Runnable task = () -> InMemory.TemporalContext.get().write(ID, Boolean.TRUE);
+
+	/** */
+	Temporal.Actor temporalActor;
+
+	/** */
+	Temporal.Actor taskActor;
+
+	@Setup
+	public void setup () {
+		temporalActor = new InMemory.TemporalActor(context("bench-temporal-actor"), () -> { }, "bench-temporal-actor");
+		taskActor = new InMemory.TaskActor(Runnable::run, context("bench-task-actor"), () -> { }, "bench-task-actor");
+	}
+
+	private static Temporal.Context context (final String name) {
+		final InMemory.TemporalContext context = (InMemory.TemporalContext) InMemory.TemporalContext.newRootContext(name);
+		context.compaction(8);
+		return context;
+	}
+
+	@Benchmark
+	public Temporal.Context temporalActorRoundTrip () {
+		final Temporal.Actor forked = temporalActor.fork(task, "bench-forked");
+		forked.start();
+		temporalActor.merge(forked);
+		return temporalActor.getTemporalContext();
+	}
+
+	@Benchmark
+	public Temporal.Context taskActorRoundTrip () {
+		final Temporal.Actor forked = taskActor.fork(task, "bench-forked");
+		forked.start();
+		taskActor.merge(forked);
+		return taskActor.getTemporalContext();
+	}
+}
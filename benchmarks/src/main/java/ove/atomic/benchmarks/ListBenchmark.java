@@ -0,0 +1,126 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.benchmarks;
+
+import ove.atomic.Temporal;
+import ove.atomic.ri.InMemory;
+import ove.poc.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ove.poc.List add, get, and remove in an actor's context. Ops are run in
+ * batches in the task of a TaskActor running on the caller, so the actor is
+ * bound once per batch.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/27/14
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ListBenchmark {
+
+	/** ops per invocation */
+	static final int OPS = 1 << 10;
+
+	/** */
+	@Param({"16", "1024"})
+	int size;
+
+	/** */
+	Temporal.Context context;
+
+	/** */
+	List<Integer> list;
+
+	/** */
+	int sum;
+
+	@Setup
+	public void setup () {
+		context = InMemory.TemporalContext.newRootContext("bench-root");
+		act(() -> {
+			list = new List<>();
+			for(int i = 0; i < size; i++) {
+				list.add(i);
+			}
+		});
+	}
+
+	/** run task in an actor acting in the context */
+	private void act (final Runnable task) {
+		new InMemory.TaskActor(Runnable::run, context, task, "bench-list").start();
+	}
+
+	/** add at and remove from the head */
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public void addRemove () {
+		act(() -> {
+			for(int i = 0; i < OPS; i++) {
+				list.add(i);
+				list.remove();
+			}
+		});
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public int get () {
+		act(() -> {
+			int sum = 0;
+			for(int i = 0; i < OPS; i++) {
+				sum += list.get(i & (size - 1));
+			}
+			this.sum = sum;
+		});
+		return sum;
+	}
+
+	/** remove from the middle and add at the head */
+	@Benchmark
+	@OperationsPerInvocation(OPS)
+	public void removeAt () {
+		act(() -> {
+			for(int i = 0; i < OPS; i++) {
+				list.add(list.remove(size >> 1));
+			}
+		});
+	}
+}
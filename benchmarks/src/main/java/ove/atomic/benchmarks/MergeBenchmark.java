@@ -0,0 +1,104 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.benchmarks;
+
+import ove.atomic.Temporal;
+import ove.atomic.ri.InMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Context#merge (last-writer-wins) and TemporalContext#reconcile of a number
+ * (fan-out) of branches, each with a modset of size ids, half of which are
+ * also written by the next branch.
+ * <p>
+ * REVU: branches are rebuilt before each invocation -- small merges are
+ * dominated by the timer resolution; compare sizes, not absolute times.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/27/14
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MergeBenchmark {
+
+	/** */
+	@Param({"16", "1024", "65536"})
+	int size;
+
+	/** */
+	@Param({"1", "4", "16"})
+	int fanout;
+
+	/** */
+	InMemory.TemporalContext context;
+
+	/** */
+	Temporal.Context[] branches;
+
+	@Setup(Level.Trial)
+	public void setup () {
+		context = (InMemory.TemporalContext) InMemory.TemporalContext.newRootContext("bench-root");
+		for(int id = 0; id < size * fanout; id++) {
+			context.write(id, id);
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void branch () {
+		final Integer value = Integer.valueOf(-1);
+		branches = new Temporal.Context[fanout];
+		for(int i = 0; i < fanout; i++) {
+			branches[i] = context.branch(String.format("bench-%d", i));
+			for(int id = i * (size >> 1); id < i * (size >> 1) + size; id++) {
+				branches[i].write(id, value);
+			}
+		}
+	}
+
+	@Benchmark
+	public Temporal.Context merge () {
+		return context.merge(branches);
+	}
+
+	@Benchmark
+	public Temporal.Context reconcile () throws Temporal.Context.Op.Exception {
+		return context.reconcile(branches);
+	}
+}
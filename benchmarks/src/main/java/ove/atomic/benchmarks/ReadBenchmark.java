@@ -0,0 +1,104 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.benchmarks;
+
+import ove.atomic.Temporal;
+import ove.atomic.ri.InMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TemporalContext#read of an id written in the context (local), in its root
+ * (a walk of the full parent chain), and of an id written nowhere (miss), at
+ * varying parent chain depths.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/27/14
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReadBenchmark {
+
+	/** */
+	static final int IDS = 1 << 10;
+
+	/** */
+	@Param({"0", "1", "4", "16", "64"})
+	int depth;
+
+	/** */
+	@Param({"hashed", "dense"})
+	InMemory.Storage storage;
+
+	/** */
+	Temporal.Context context;
+
+	/** */
+	int n;
+
+	@Setup
+	public void setup () {
+		Temporal.Context context = InMemory.TemporalContext.newRootContext("bench-root", storage);
+		for(int id = 0; id < IDS; id++) {
+			context.write(id, id);
+		}
+		for(int d = 0; d < depth; d++) {
+			context = context.branch(String.format("bench-%d", d));
+			context.write(IDS + d, d);
+		}
+		for(int id = 0; id < IDS; id++) {
+			context.write(IDS << 1 | id, id);
+		}
+		this.context = context;
+	}
+
+	@Benchmark
+	public Object readLocal () {
+		return context.read(IDS << 1 | (n++ & (IDS - 1)));
+	}
+
+	@Benchmark
+	public Object readRoot () {
+		return context.read(n++ & (IDS - 1));
+	}
+
+	@Benchmark
+	public Object readMiss () {
+		return context.read(IDS << 2 | (n++ & (IDS - 1)));
+	}
+}
@@ -0,0 +1,155 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.benchmarks;
+
+import ove.atomic.Temporal;
+import ove.atomic.ri.Codec;
+import ove.atomic.ri.MappedLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MappedLog restart (recovery) time of a durable context. Each restart rolls
+ * a new segment, so it is measured single shot.
+ * <p>
+ * The setup checks recovery across restarts: the log is torn (as if crashed
+ * mid-append), recovered and appended to, and recovered again -- the second
+ * restart must replay the appends of the first.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/27/14
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class RecoveryBenchmark {
+
+	/** */
+	static final String ROOT = "bench-root";
+
+	/** */
+	@Param({"10000", "100000"})
+	int writes;
+
+	/** */
+	File dir;
+
+	@Setup
+	public void setup () throws IOException {
+		dir = Files.createTempDirectory("recovery-bench").toFile();
+		MappedLog log = MappedLog.open(dir, Codec.serializable);
+		Temporal.Context root = log.newRootContext(ROOT);
+		for(int id = 0; id < writes; id++) {
+			root.write(id, id);
+		}
+		log.close();
+		tear(dir);
+
+		log = MappedLog.open(dir, Codec.serializable);
+		root = log.context(ROOT);
+		check(root, writes);
+		root.write(writes, writes);
+		log.close();
+
+		log = MappedLog.open(dir, Codec.serializable);
+		check(log.context(ROOT), writes + 1);
+		log.close();
+	}
+
+	@TearDown
+	public void tearDown () {
+		final File[] files = dir.listFiles();
+		for(final File file : files == null ? new File[0] : files) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	@Benchmark
+	public Temporal.Context restart () {
+		final MappedLog log = MappedLog.open(dir, Codec.serializable);
+		try {
+			return log.context(ROOT);
+		} finally {
+			log.close();
+		}
+	}
+
+	/** check the values of the recovered context */
+	private static void check (final Temporal.Context context, final int writes) {
+		if(context == null) {
+			throw new IllegalStateException("ERR-context not recovered");
+		}
+		for(int id = 0; id < writes; id++) {
+			if(!Integer.valueOf(id).equals(context.read(id))) {
+				throw new IllegalStateException(String.format("ERR-id %d not recovered", id));
+			}
+		}
+	}
+
+	/**
+	 * append a torn record (bad crc) to the last segment of the log, as if
+	 * crashed mid-append -- see the record format of MappedLog
+	 */
+	private static void tear (final File dir) throws IOException {
+		File last = null;
+		final File[] files = dir.listFiles();
+		for(final File file : files == null ? new File[0] : files) {
+			if(file.getName().startsWith("segment-") && (last == null || file.getName().compareTo(last.getName()) > 0)) {
+				last = file;
+			}
+		}
+		if(last == null) {
+			throw new IllegalStateException("ERR-no segment");
+		}
+		try (final RandomAccessFile segment = new RandomAccessFile(last, "rw")) {
+			long position = 0;
+			for(int length; (length = segment.readInt()) != 0; segment.seek(position)) {
+				position += 8 + length;
+			}
+			segment.seek(position);
+			segment.writeInt(16);
+			segment.writeInt(0xBAD);
+			segment.writeLong(-1L);
+		}
+	}
+}
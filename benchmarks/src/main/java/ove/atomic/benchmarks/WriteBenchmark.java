@@ -0,0 +1,94 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.benchmarks;
+
+import ove.atomic.ri.InMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TemporalContext#write throughput, of new ids (insert) and of ids already
+ * written in the context (overwrite, retaining the prior version).
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/27/14
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WriteBenchmark {
+
+	/** */
+	static final int IDS = 1 << 16;
+
+	/** */
+	@Param({"hashed", "dense"})
+	InMemory.Storage storage;
+
+	/** */
+	@Param({"off", "writes"})
+	InMemory.Journal journal;
+
+	/** */
+	InMemory.TemporalContext context;
+
+	/** */
+	final Object value = new Object();
+
+	/** */
+	int n;
+
+	@Setup
+	public void setup () {
+		context = (InMemory.TemporalContext) InMemory.TemporalContext.newRootContext("bench-root", storage);
+		context.journal(journal);
+		for(int id = 0; id < IDS; id++) {
+			context.write(id, value);
+		}
+	}
+
+	@Benchmark
+	public void overwrite () {
+		context.write(n++ & (IDS - 1), value);
+	}
+
+	/** REVU: the context grows for the duration of an iteration */
+	@Benchmark
+	public void insert () {
+		context.write(IDS + n++, value);
+	}
+}
@@ -0,0 +1,16 @@
+/**
+ * JMH benchmarks of the in-memory reference implementation of the Temporal
+ * model, and of ove.poc.List -- built separately from temporal-poc, see
+ * benchmarks/pom.xml.
+ *
+ * Run all benchmarks, with allocation profiling, and keep the results of a
+ * release for comparison with the next:
+ * <pre>
+ * mvn install
+ * mvn -f benchmarks/pom.xml package
+ * java -jar benchmarks/target/benchmarks.jar -prof gc -rf json -rff temporal-poc-alpha.0.json
+ * </pre>
+ * Run a subset with a regex, e.g. <code>java -jar benchmarks/target/benchmarks.jar Read -p depth=0,64</code>.
+ * <code>-prof gc</code> reports the bytes allocated per op (gc.alloc.rate.norm).
+ */
+package ove.atomic.benchmarks;
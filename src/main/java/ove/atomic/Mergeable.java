@@ -0,0 +1,97 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Merge function of a temporal reference: concurrent updates of the reference
+ * in merged contexts are combined, rather than the last writer winning (or a
+ * reconciling merge failing).
+ * <p>
+ * A merge folds each merged context's value into the merging context's
+ * value, in merge order. The function is called with the thread acting in a
+ * view of the merged ('theirs') context: references read as they do in
+ * theirs, and references written are written by the merge. A function that
+ * cannot merge ours and theirs throws a {@link Conflict}: the merge fails,
+ * as a reconciling merge does on a conflict, and nothing is merged.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/31/14
+ */
+public interface Mergeable<T> {
+
+	/**
+	 * @param base value of the reference before theirs first wrote it -- null if none
+	 * @param ours value of the reference in the merging context, as merged so far
+	 * @param theirs value of the reference in the merged context
+	 * @return the merged value
+	 */
+	T merge (T base, T ours, T theirs);
+
+	/** thrown by a merge function on a conflict of ours and theirs */
+	public static class Conflict extends RuntimeException {
+		public Conflict (final String message) {
+			super(message);
+		}
+	}
+
+	/** delta counter: ours plus the change made by theirs */
+	public static final Mergeable<Integer> intCounter = (base, ours, theirs) ->
+			(ours == null ? 0 : ours) + (theirs == null ? 0 : theirs) - (base == null ? 0 : base);
+
+	/** delta counter: ours plus the change made by theirs */
+	public static final Mergeable<Long> longCounter = (base, ours, theirs) ->
+			(ours == null ? 0L : ours) + (theirs == null ? 0L : theirs) - (base == null ? 0L : base);
+
+	/** delta counter: ours plus the change made by theirs */
+	public static final Mergeable<Double> doubleCounter = (base, ours, theirs) ->
+			(ours == null ? 0d : ours) + (theirs == null ? 0d : theirs) - (base == null ? 0d : base);
+
+	/** @return max register: the greater of ours and theirs */
+	public static <T extends Comparable<? super T>> Mergeable<T> max () {
+		return (base, ours, theirs) -> ours == null ? theirs : theirs == null ? ours : ours.compareTo(theirs) >= 0 ? ours : theirs;
+	}
+
+	/** @return min register: the lesser of ours and theirs */
+	public static <T extends Comparable<? super T>> Mergeable<T> min () {
+		return (base, ours, theirs) -> ours == null ? theirs : theirs == null ? ours : ours.compareTo(theirs) <= 0 ? ours : theirs;
+	}
+
+	/** @return grow-only set: the union of ours and theirs -- sets must not be modified */
+	public static <E> Mergeable<Set<E>> union () {
+		return (base, ours, theirs) -> {
+			if(theirs == null || theirs == base || ours != null && ours.containsAll(theirs)) {
+				return ours;
+			}
+			if(ours == null || ours == base || theirs.containsAll(ours)) {
+				return theirs;
+			}
+			final Set<E> union = new HashSet<>(ours);
+			union.addAll(theirs);
+			return Collections.unmodifiableSet(union);
+		};
+	}
+}
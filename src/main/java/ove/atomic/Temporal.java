@@ -45,7 +45,8 @@ public interface Temporal {
 	 * and Actors are threads, so it is not suitable for light-weight ops, AND,
 	 * would preclude use of thread pools e.g. Executors. (This can be addressed
 	 * at the cost of reducing the elegance of the impl, by passing along the
-	 * context as a token to the thread.)
+	 * context as a token to the thread.) InMemory.TaskActor takes that route,
+	 * binding the actor to the executing thread for the duration of its task.
 	 *
 	 * As of now,
 	 *      Latest Context is a Point of View AND a Flow
@@ -54,8 +55,8 @@ public interface Temporal {
 	 *      Context-chain is a Timeline
 	 *        -- it is permissible to go back and change a given Context.
 	 *
-	 *      Identity for the (in-mem) POC is simply object hashcode of the
-	 *      Temporal.Reference. The conceptual model of ADAM (not described
+	 *      Identity for the (in-mem) POC is simply a dense, process-local
+	 *      serial number of the Temporal.Reference. The conceptual model of ADAM (not described
 	 *      here) addresses the methodology for deriving Universal Identities
 	 *      that would scale this approach across process/node boundaries.
 	 *
@@ -85,9 +86,38 @@ public interface Temporal {
 		/** */
 		<T> T read (int id);
 
+		/** write values[i] as the value of ids[i], in order */
+		default void writeAll (final int[] ids, final Object[] values) {
+			assert ids.length <= values.length : "values is shorter than ids";
+			for(int i = 0; i < ids.length; i++) {
+				write(ids[i], values[i]);
+			}
+		}
+
+		/** read the value of ids[i] into out[i] */
+		default void readAll (final int[] ids, final Object[] out) {
+			assert ids.length <= out.length : "out is shorter than ids";
+			for(int i = 0; i < ids.length; i++) {
+				out[i] = read(ids[i]);
+			}
+		}
+
 		@Deprecated // REVU: for the initial sketch-POC only
 		int[] modset ();
 
+		/** @return number of ids in the modset -- see modsetAt(int) */
+		default int modsetSize () {
+			return modset().length;
+		}
+
+		/**
+		 * @return the id at index, in [0, modsetSize()), of the modset -- contexts
+		 * that hold their modset in order iterate it without allocating
+		 */
+		default int modsetAt (final int index) {
+			return modset()[index];
+		}
+
 		Context.Op[]  operations();
 
 		/** */
@@ -113,11 +143,32 @@ public interface Temporal {
 				}
 			}
 
-			/** */
+			/** @return code of a context op, or null if a reference (Flow) op */
 			Context.Op.Code code();
+
+			/** @return code of a reference (Flow) op, or null if a context op */
+			Flow.Op.Code flowCode();
+
+			/** @return id of the reference of a reference (Flow) op */
+			int id();
+
+			/** @return revision at which the op was performed */
+			long revision();
 		}
 	}
 
+	///////////////////////////////////////////////////////////////////////////
+	/// Temporal.Timeline /////////////////////////////////////////////////////
+	///////////////////////////////////////////////////////////////////////////
+	/** Temporal.Context that retains the revisions of its writes */
+	public interface Timeline extends Context {
+		/** @return revision of the write of id visible in this context, or -1 if none */
+		long revision (int id);
+
+		/** @return value of id visible in this context as of the given revision */
+		<T> T read (int id, long revision);
+	}
+
 	///////////////////////////////////////////////////////////////////////////
 	/// Temporal.Flow //////////////////////////////////////////////////////
 	///////////////////////////////////////////////////////////////////////////
@@ -177,11 +228,14 @@ public interface Temporal {
 		/** */
 		T previousRevision ();
 
+		/** @return value as of the given revision of the timeline */
+		T get (final long revision);
+
 		// ------------------------------------------------------------------
 		// Reference.Versioned
 		// ------------------------------------------------------------------
 
-		/** */
+		/** instance field instrumented as a temporal reference, e.g. by the ove.atomic.agent agent */
 		@Retention(RetentionPolicy.RUNTIME) @Target({ElementType.FIELD})
 		public @interface Versioned { }
 
@@ -197,11 +251,39 @@ public interface Temporal {
 
 		void merge(final Temporal.Actor...actors) ;
 
+		/**
+		 * merge, as merge(), with the actors' contexts pre-merged pairwise as the
+		 * actors complete -- for large fan-outs, so that this actor merges a
+		 * single context.
+		 */
+		void mergeTree(final Temporal.Actor...actors);
+
+		/** merge, failing on merge conflicts -- the actor's context is unchanged on failure */
+		void reconcile(final Temporal.Actor...actors) throws Temporal.Context.Op.Exception;
+
+		/**
+		 * run the task in a transaction of the actor's context, and commit its
+		 * writes into the actor's context -- the task is run again if the commit
+		 * fails on conflict, i.e. if a value it read was since written in the
+		 * actor's context by a commit of another transaction of that context
+		 * (e.g. of an actor forked in one). The actor keeps acting in its
+		 * (updated) context.
+		 * <p>
+		 * If the actor's context is itself a transaction, the task is run in it,
+		 * and the actor's context is committed into its parent while the parent's
+		 * actor keeps running.
+		 * REVU: the task must not merge, reconcile, or go back in time.
+		 */
+		void atomically(final Runnable task);
+
 		/** */
 		Temporal.Context getTemporalContext ();
 
 		void start();
 
+		/** wait for the actor's task to complete */
+		void join() throws InterruptedException;
+
 		void goBackInTime();
 	}
 }
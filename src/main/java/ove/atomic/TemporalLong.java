@@ -0,0 +1,48 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic;
+
+/**
+ * Temporal reference to a primitive long -- e.g. a counter. Reads and writes
+ * do not box.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/30/14
+ */
+public interface TemporalLong {
+
+	/** @return value in the current context -- 0 if never set */
+	long get ();
+
+	/** */
+	void set (long value);
+
+	/** @return the new value */
+	long add (long delta);
+
+	/** @return the new value */
+	long increment ();
+
+	/** @return the new value */
+	long decrement ();
+}
@@ -0,0 +1,90 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+/**
+ * Membership filter of the ids of a context's Store -- see
+ * TemporalContext#lookup(int).
+ *
+ * A blocked Bloom filter: each id sets (and is tested against) 2 bits of a
+ * single 64 bit word, so a test is one memory access. At up to 8 ids per
+ * word false positives are ~5%, and there are no false negatives.
+ *
+ * Ids are never removed: (tombstoned) deletes remain entries of the Store.
+ * The filter is rebuilt from the Store as it grows, and the rebuilt words
+ * are published as a whole, so concurrent readers (of an ancestor context)
+ * see either the prior or the rebuilt filter.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 6/1/14
+ */
+final class Bloom {
+
+	/** ids per word */
+	private static final int LOAD = 8;
+
+	/** */
+	private volatile long[] words = new long[1];
+
+	/** @return false if id is certainly not in the filtered store */
+	final boolean mightContain (final int id) {
+		return mightContain(words, id);
+	}
+
+	/** @return the current words of the filter -- e.g. to test a batch of ids with one (volatile) read */
+	final long[] words () {
+		return words;
+	}
+
+	/** @return false if id is certainly not in the store filtered by words */
+	static boolean mightContain (final long[] words, final int id) {
+		final int hash = IntTable.mix(id);
+		final long bits = bits(hash);
+		return (words[hash & (words.length - 1)] & bits) == bits;
+	}
+
+	/** add id, which is in store -- the filter is rebuilt from store if store outgrew it */
+	final void add (final int id, final Store store) {
+		long[] words = this.words;
+		if(store.size() <= words.length * LOAD) {
+			final int hash = IntTable.mix(id);
+			words[hash & (words.length - 1)] |= bits(hash);
+			return;
+		}
+		int length = words.length;
+		while(length * LOAD < store.size()) {
+			length <<= 1;
+		}
+		words = new long[length << 1];
+		for(int i = 0; i < store.size(); i++) {
+			final int hash = IntTable.mix(store.idAt(i));
+			words[hash & (words.length - 1)] |= bits(hash);
+		}
+		this.words = words;
+	}
+
+	/** @return the 2 bits of the hash -- from its top bits, as its bottom bits index the word */
+	private static long bits (final int hash) {
+		return (1L << (hash >>> 20)) | (1L << (hash >>> 26));
+	}
+}
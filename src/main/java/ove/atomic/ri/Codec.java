@@ -0,0 +1,80 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Encoding of Temporal.Reference values for durable (or shipped) contexts.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/24/14
+ */
+public interface Codec {
+
+	/** @return encoding of value -- value may be null */
+	byte[] encode (Object value);
+
+	/** @return value of encoding -- inverse of encode */
+	Object decode (byte[] bytes, int offset, int length);
+
+	/**
+	 * Java serialization codec -- values must be java.io.Serializable. The
+	 * InMemory references of a value (e.g. the next link of a list
+	 * node) are encoded by id and kind, and decoded to the same (live)
+	 * references -- or, if none, to references reattached to the id (as
+	 * imported by the decoding store, e.g. after a restart). See Identities.
+	 */
+	public static final Codec serializable = new Codec() {
+		@Override final public byte[] encode (final Object value) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			try (final ObjectOutputStream oos = new ObjectOutputStream(out) {
+				{ enableReplaceObject(true); }
+				@Override protected Object replaceObject (final Object obj) {
+					final int id = Identities.idOf(obj);
+					if(id >= 0) {
+						Identities.export(obj, id);
+						return new Identities.Exported(id, Identities.kindOf(obj));
+					}
+					return obj;
+				}
+			}) {
+				oos.writeObject(value);
+			} catch (IOException e) {
+				throw new RuntimeException("ERR-encode", e);
+			}
+			return out.toByteArray();
+		}
+		@Override final public Object decode (final byte[] bytes, final int offset, final int length) {
+			try (final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+				return ois.readObject();
+			} catch (IOException | ClassNotFoundException e) {
+				throw new RuntimeException("ERR-decode", e);
+			}
+		}
+	};
+}
@@ -0,0 +1,625 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.atomic.Temporal;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ove.atomic.ri.InMemory.NilContext;
+
+/**
+ * Durable sketch-implementation of Temporal.Context on an embedded H2
+ * database.
+ *
+ * Contexts, their parent links, and their modsets (the values written in
+ * each context) are stored in the database. Writes are buffered in memory
+ * and handed off in batches to the flusher thread of the database, which
+ * writes them behind in JDBC batches; reads of durable values go through a
+ * (per context) LRU cache, so neither pays a round trip per op. A context
+ * (and its ancestors) is only stored once a batch of its writes is.
+ *
+ * Ids are those of the process that wrote them, its epoch (see Identities),
+ * which is stored with them. A database written by another process is
+ * imported on open: its values are rewritten with the ids of this process.
+ * The root references of its values are found by name -- see
+ * Database#name(String, Object).
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/24/14
+ */
+public interface H2 {
+
+	///////////////////////////////////////////////////////////////////////////
+	/// H2.Database ///////////////////////////////////////////////////////////
+	///////////////////////////////////////////////////////////////////////////
+	/**
+	 * An H2 database of temporal contexts. Access to the database is
+	 * serialized on the Database instance. Batches of writes handed off by
+	 * contexts are queued, and written by a (daemon) flusher thread; until
+	 * written, a batch is read through by its context -- see
+	 * TemporalContext#read(int).
+	 */
+	public static class Database implements AutoCloseable {
+
+		/** @return a database in (local) file mode at the given path */
+		public static Database file (final String path) {
+			return new Database(String.format("jdbc:h2:file:%s", path), Codec.serializable, 1024, 4096);
+		}
+
+		/** */
+		private final Connection connection;
+
+		/** */
+		final Codec codec;
+
+		/** buffered writes per context that trigger a write-behind flush */
+		final int batchSize;
+
+		/** per context LRU cache capacity */
+		final int cacheSize;
+
+		/** */
+		private final AtomicLong keys;
+
+		/** batches handed off by contexts, not yet written */
+		private final ConcurrentLinkedQueue<Batch> queue = new ConcurrentLinkedQueue<>();
+
+		/** a permit per batch handed off -- see flusher */
+		private final Semaphore queued = new Semaphore(0);
+
+		/** */
+		private final Thread flusher;
+
+		/** failure of the flusher -- rethrown to the next context to hand off a batch */
+		private volatile RuntimeException failure;
+
+		/** */
+		private volatile boolean closed;
+
+		public Database (final String url, final Codec codec, final int batchSize, final int cacheSize) {
+			assert url != null : "url is null";
+			assert codec != null : "codec is null";
+			assert batchSize > 0 : "batchSize must be positive";
+			assert cacheSize > 0 : "cacheSize must be positive";
+			this.codec = codec;
+			this.batchSize = batchSize;
+			this.cacheSize = cacheSize;
+			try {
+				this.connection = DriverManager.getConnection(url);
+				try (final Statement stmt = connection.createStatement()) {
+					stmt.execute("CREATE TABLE IF NOT EXISTS TEMPORAL_CONTEXT (ID BIGINT PRIMARY KEY, NAME VARCHAR NOT NULL, PARENT BIGINT)");
+					stmt.execute("CREATE TABLE IF NOT EXISTS TEMPORAL_VALUE (CONTEXT BIGINT NOT NULL, ID INT NOT NULL, REVISION BIGINT NOT NULL, VALUE VARBINARY, PRIMARY KEY (CONTEXT, ID))");
+					stmt.execute("CREATE TABLE IF NOT EXISTS TEMPORAL_NAME (NAME VARCHAR PRIMARY KEY, ID INT NOT NULL, KIND TINYINT NOT NULL)");
+					stmt.execute("CREATE TABLE IF NOT EXISTS TEMPORAL_EPOCH (EPOCH BIGINT NOT NULL)");
+					try (final ResultSet rs = stmt.executeQuery("SELECT EPOCH FROM TEMPORAL_EPOCH")) {
+						if(!rs.next()) {
+							stmt.execute(String.format("INSERT INTO TEMPORAL_EPOCH VALUES (%d)", Identities.epoch));
+						} else if(rs.getLong(1) != Identities.epoch) {
+							rewrite(new Identities.Import(rs.getLong(1)));
+						}
+					}
+					try (final ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(ID), 0) FROM TEMPORAL_CONTEXT")) {
+						rs.next();
+						this.keys = new AtomicLong(rs.getLong(1));
+					}
+				}
+			} catch (SQLException e) {
+				throw new RuntimeException("ERR-open database", e);
+			}
+			this.flusher = new Thread(this::flushBehind, String.format("h2-flusher-%s", url));
+			this.flusher.setDaemon(true);
+			this.flusher.start();
+		}
+
+		/**
+		 * rewrite the values and names of imported ids with the ids of this
+		 * process, in one transaction
+		 */
+		private void rewrite (final Identities.Import imported) throws SQLException {
+			final List<Object[]> rows = new ArrayList<>();
+			try (final Statement stmt = connection.createStatement();
+				 final ResultSet rs = stmt.executeQuery("SELECT CONTEXT, ID, REVISION, VALUE FROM TEMPORAL_VALUE")) {
+				while(rs.next()) {
+					final byte[] bytes = rs.getBytes(4);
+					final Object value = bytes == null ? null : imported.decode(codec, bytes, 0, bytes.length);
+					rows.add(new Object[]{ rs.getLong(1), imported.id(rs.getInt(2)), rs.getLong(3), value == null ? null : codec.encode(value) });
+				}
+			}
+			connection.setAutoCommit(false);
+			try {
+				try (final Statement stmt = connection.createStatement()) {
+					stmt.execute("DELETE FROM TEMPORAL_VALUE");
+					stmt.execute(String.format("UPDATE TEMPORAL_EPOCH SET EPOCH = %d", Identities.epoch));
+				}
+				try (final PreparedStatement stmt = connection.prepareStatement("INSERT INTO TEMPORAL_VALUE (CONTEXT, ID, REVISION, VALUE) VALUES (?, ?, ?, ?)")) {
+					for(final Object[] row : rows) {
+						stmt.setLong(1, (Long) row[0]);
+						stmt.setInt(2, (Integer) row[1]);
+						stmt.setLong(3, (Long) row[2]);
+						stmt.setBytes(4, (byte[]) row[3]);
+						stmt.addBatch();
+					}
+					stmt.executeBatch();
+				}
+				final List<Object[]> names = new ArrayList<>();
+				try (final Statement stmt = connection.createStatement();
+					 final ResultSet rs = stmt.executeQuery("SELECT NAME, ID FROM TEMPORAL_NAME")) {
+					while(rs.next()) {
+						names.add(new Object[]{ rs.getString(1), imported.id(rs.getInt(2)) });
+					}
+				}
+				try (final PreparedStatement stmt = connection.prepareStatement("UPDATE TEMPORAL_NAME SET ID = ? WHERE NAME = ?")) {
+					for(final Object[] name : names) {
+						stmt.setInt(1, (Integer) name[1]);
+						stmt.setString(2, (String) name[0]);
+						stmt.addBatch();
+					}
+					stmt.executeBatch();
+				}
+				connection.commit();
+			} catch (SQLException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		}
+
+		/**
+		 * name an InMemory reference -- e.g. the root of a structure written to
+		 * contexts of this database -- so that it can be found after a restart
+		 * @throws IllegalArgumentException if reference is not an InMemory reference
+		 */
+		public synchronized void name (final String name, final Object reference) {
+			final int id = Identities.idOf(reference);
+			if(id < 0) {
+				throw new IllegalArgumentException("ERR-not an InMemory reference");
+			}
+			Identities.export(reference, id);
+			try (final PreparedStatement stmt = connection.prepareStatement("MERGE INTO TEMPORAL_NAME (NAME, ID, KIND) KEY (NAME) VALUES (?, ?, ?)")) {
+				stmt.setString(1, name);
+				stmt.setInt(2, id);
+				stmt.setByte(3, Identities.kindOf(reference));
+				stmt.executeUpdate();
+			} catch (SQLException e) {
+				throw new RuntimeException("ERR-name reference", e);
+			}
+		}
+
+		/**
+		 * @return the reference named by name(String, Object), or null if none --
+		 * after a restart, a reference of the same kind reattached to its id
+		 */
+		@SuppressWarnings("unchecked")
+		public synchronized <R> R reference (final String name) {
+			try (final PreparedStatement stmt = connection.prepareStatement("SELECT ID, KIND FROM TEMPORAL_NAME WHERE NAME = ?")) {
+				stmt.setString(1, name);
+				try (final ResultSet rs = stmt.executeQuery()) {
+					return rs.next() ? (R) Identities.resolve(rs.getInt(1), rs.getByte(2)) : null;
+				}
+			} catch (SQLException e) {
+				throw new RuntimeException("ERR-read reference", e);
+			}
+		}
+
+		/** @return a new (root) context */
+		public Temporal.Context newRootContext (final String name) {
+			return new TemporalContext(this, NilContext, name);
+		}
+
+		/**
+		 * @return the latest persisted context of the given name, with its
+		 * timeline, or null if none
+		 */
+		public synchronized Temporal.Context open (final String name) {
+			try (final PreparedStatement stmt = connection.prepareStatement("SELECT MAX(ID) FROM TEMPORAL_CONTEXT WHERE NAME = ?")) {
+				stmt.setString(1, name);
+				try (final ResultSet rs = stmt.executeQuery()) {
+					rs.next();
+					final long key = rs.getLong(1);
+					return rs.wasNull() ? null : load(key);
+				}
+			} catch (SQLException e) {
+				throw new RuntimeException("ERR-open context", e);
+			}
+		}
+
+		private TemporalContext load (final long key) throws SQLException {
+			final String name;
+			final long parentKey;
+			try (final PreparedStatement stmt = connection.prepareStatement("SELECT NAME, PARENT FROM TEMPORAL_CONTEXT WHERE ID = ?")) {
+				stmt.setLong(1, key);
+				try (final ResultSet rs = stmt.executeQuery()) {
+					if(!rs.next()) {
+						throw new RuntimeException(String.format("ERR-no context %d", key));
+					}
+					name = rs.getString(1);
+					parentKey = rs.getLong(2);
+					if(rs.wasNull()) {
+						return new TemporalContext(this, key, NilContext, name);
+					}
+				}
+			}
+			return new TemporalContext(this, key, load(parentKey), name);
+		}
+
+		/**
+		 * write all batches handed off so far. Writes buffered by contexts (not
+		 * yet handed off) are not written -- see TemporalContext#flush()
+		 */
+		public synchronized void flush () {
+			drain();
+			failed();
+		}
+
+		/**
+		 * write all batches handed off so far, and close the database. Writes
+		 * still buffered by contexts are lost.
+		 */
+		@Override public synchronized void close () {
+			drain();
+			closed = true;
+			flusher.interrupt();
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				throw new RuntimeException("ERR-close database", e);
+			}
+		}
+
+		final long nextKey () {
+			return keys.incrementAndGet();
+		}
+
+		/** queue a batch of writes of context for the flusher */
+		final void handoff (final TemporalContext context, final Store writes) {
+			failed();
+			if(closed) {
+				throw new IllegalStateException("ERR-database is closed");
+			}
+			queue.add(new Batch(context, writes));
+			queued.release();
+		}
+
+		/** rethrow the failure of the flusher, if any */
+		private void failed () {
+			if(failure != null) {
+				throw new RuntimeException("ERR-write behind failed", failure);
+			}
+		}
+
+		/** flusher thread: writes queued batches as they are handed off */
+		private void flushBehind () {
+			try {
+				while(!closed && failure == null) {
+					queued.acquire();
+					synchronized (this) {
+						try {
+							if(!closed) {
+								drain();
+							}
+						} catch (RuntimeException e) {
+							failure = e;
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				// closed
+			}
+		}
+
+		/** write the queued batches -- caller holds the lock */
+		private void drain () {
+			for(Batch batch; (batch = queue.poll()) != null; ) {
+				write(batch.context, batch.writes);
+				batch.context.inflight.remove(batch.writes);
+			}
+		}
+
+		/** insert the context row, and those of its ancestors not yet stored -- caller holds the lock */
+		private void persist (final TemporalContext context) throws SQLException {
+			if(context.persisted) {
+				return;
+			}
+			if(context.parent instanceof TemporalContext) {
+				persist((TemporalContext) context.parent);
+			}
+			try (final PreparedStatement stmt = connection.prepareStatement("INSERT INTO TEMPORAL_CONTEXT (ID, NAME, PARENT) VALUES (?, ?, ?)")) {
+				stmt.setLong(1, context.key);
+				stmt.setString(2, context.name);
+				if(context.parent instanceof TemporalContext) {
+					stmt.setLong(3, ((TemporalContext) context.parent).key);
+				} else {
+					stmt.setNull(3, java.sql.Types.BIGINT);
+				}
+				stmt.executeUpdate();
+			}
+			context.persisted = true;
+		}
+
+		/** persist the context row and the batch of writes -- caller holds the lock */
+		private void write (final TemporalContext context, final Store writes) {
+			try {
+				persist(context);
+				try (final PreparedStatement stmt = connection.prepareStatement("MERGE INTO TEMPORAL_VALUE (CONTEXT, ID, REVISION, VALUE) KEY (CONTEXT, ID) VALUES (?, ?, ?, ?)")) {
+					for(int i = 0; i < writes.size(); i++) {
+						final Object value = writes.valueAt(i);
+						stmt.setLong(1, context.key);
+						stmt.setInt(2, writes.idAt(i));
+						stmt.setLong(3, writes.revisionAt(i));
+						stmt.setBytes(4, value == null ? null : codec.encode(value));
+						stmt.addBatch();
+					}
+					stmt.executeBatch();
+				}
+			} catch (SQLException e) {
+				throw new RuntimeException("ERR-write context", e);
+			}
+		}
+
+		/** @return the written value of id in context, or ABSENT -- see TemporalContext#read(int) */
+		final synchronized Object read (final TemporalContext context, final int id) {
+			if(!context.persisted) {
+				return TemporalContext.ABSENT;
+			}
+			try (final PreparedStatement stmt = connection.prepareStatement("SELECT VALUE FROM TEMPORAL_VALUE WHERE CONTEXT = ? AND ID = ?")) {
+				stmt.setLong(1, context.key);
+				stmt.setInt(2, id);
+				try (final ResultSet rs = stmt.executeQuery()) {
+					if(!rs.next()) {
+						return TemporalContext.ABSENT;
+					}
+					final byte[] bytes = rs.getBytes(1);
+					return bytes == null ? null : codec.decode(bytes, 0, bytes.length);
+				}
+			} catch (SQLException e) {
+				throw new RuntimeException("ERR-read context", e);
+			}
+		}
+
+		/** @return the written modset of context -- see TemporalContext#modset() */
+		final synchronized int[] modset (final TemporalContext context) {
+			if(!context.persisted) {
+				return new int[0];
+			}
+			try (final PreparedStatement stmt = connection.prepareStatement("SELECT ID FROM TEMPORAL_VALUE WHERE CONTEXT = ?")) {
+				stmt.setLong(1, context.key);
+				try (final ResultSet rs = stmt.executeQuery()) {
+					final IntTable ids = new IntTable();
+					while(rs.next()) {
+						ids.add(rs.getInt(1), null, 0L);
+					}
+					return ids.ids();
+				}
+			} catch (SQLException e) {
+				throw new RuntimeException("ERR-read context", e);
+			}
+		}
+
+		/** */
+		private static final class Batch {
+			final TemporalContext context;
+			final Store writes;
+			Batch (final TemporalContext context, final Store writes) {
+				this.context = context;
+				this.writes = writes;
+			}
+		}
+	}
+
+	///////////////////////////////////////////////////////////////////////////
+	/// H2.TemporalContext ////////////////////////////////////////////////////
+	///////////////////////////////////////////////////////////////////////////
+	/**
+	 * Durable Temporal.Context. Not thread-safe -- like InMemory.TemporalContext
+	 * it is intended to be used by its acting Temporal.Actor.
+	 */
+	public static class TemporalContext implements Temporal.Context {
+
+		/** cached marker of ids with no (durable) value in this context */
+		static final Object ABSENT = new Object();
+
+		/** */
+		private final Database db;
+
+		/** database key of this context */
+		final long key;
+
+		/** */
+		public final String name;
+
+		/** */
+		final Temporal.Context parent;
+
+		/** true once the context row is in the database -- guarded by the database lock */
+		boolean persisted;
+
+		/** buffered writes, not yet handed off to the database */
+		private Store pending = new IntTable();
+
+		/** batches handed off to the database and not yet written, oldest first -- removed by the flusher once written */
+		final ConcurrentLinkedDeque<Store> inflight = new ConcurrentLinkedDeque<>();
+
+		/** last revision stamped in this context -- see Revisions#after(long) */
+		private long clock;
+
+		/** LRU cache of durable values (or ABSENT) read or flushed */
+		private final Map<Integer, Object> cache;
+
+		protected TemporalContext (final Database db, final Temporal.Context parent, final String name) {
+			this(db, db.nextKey(), parent, name);
+			this.persisted = false;
+		}
+
+		private TemporalContext (final Database db, final long key, final Temporal.Context parent, final String name) {
+			if(parent != NilContext) {
+				assert parent instanceof TemporalContext : "ERR-Only H2.TemporalContext supported";
+			}
+			assert name != null : "name is null";
+			this.db = db;
+			this.key = key;
+			this.parent = parent;
+			this.name = name;
+			this.persisted = true;
+			this.clock = Revisions.sync(parent instanceof TemporalContext ? ((TemporalContext) parent).clock : 0L);
+			final int capacity = db.cacheSize;
+			this.cache = new LinkedHashMap<Integer, Object>(16, 0.75f, true) {
+				@Override protected boolean removeEldestEntry (final Map.Entry<Integer, Object> eldest) {
+					return size() > capacity;
+				}
+			};
+		}
+
+		@Override final public Temporal.Context branch () {
+			final String name = String.format("anon-child-h2-context-%d", System.currentTimeMillis());
+			return this.branch (name);
+		}
+
+		@Override final public Temporal.Context branch (final String name) {
+			return new TemporalContext(db, this, name);
+		}
+
+		@Override final public Temporal.Context merge (Temporal.Context... contexts) {
+			final String name = String.format("anon-merged-h2-context-%d", System.nanoTime());
+			final Temporal.Context mergeContext = this.branch(name);
+			for(final Temporal.Context context : contexts) {
+				for(final int id : context.modset()) {
+					mergeContext.write(id, context.read(id));
+				}
+			}
+			return mergeContext;
+		}
+
+		@Override final public <T> void write (int id, T value) {
+			pending.put(id, value, clock = Revisions.after(clock));
+			if(pending.size() >= db.batchSize) {
+				handoff();
+			}
+		}
+
+		/**
+		 * reads the buffered writes, the cache, the batches handed off and not
+		 * yet written, and then the database -- a batch is only removed once
+		 * written, so a value is found in one or the other. The flusher is never
+		 * waited on, but for the database lock.
+		 */
+		@SuppressWarnings("unchecked")
+		@Override final public <T> T read (int id) {
+			Object value = pending.get(id);
+			if(value == null) {
+				value = cache.get(id);
+				if(value == null && !cache.containsKey(id)) {
+					value = inflight(id);
+					if(value == null) {
+						value = db.read(this, id);
+					}
+					cache.put(id, value);
+				}
+			}
+			if((value == null || value == ABSENT) && parent != NilContext) {
+				return parent.read(id);
+			}
+			return value == ABSENT ? null : (T) value;
+		}
+
+		/** @return the latest value of id in the batches not yet written, or null if none */
+		private Object inflight (final int id) {
+			for(final Iterator<Store> batches = inflight.descendingIterator(); batches.hasNext(); ) {
+				final Store batch = batches.next();
+				final int position = batch.position(id);
+				if(position >= 0) {
+					final Object value = batch.valueAt(position);
+					return value == null ? ABSENT : value;
+				}
+			}
+			return null;
+		}
+
+		@Override final public int[] modset () {
+			final IntTable ids = new IntTable(pending.size());
+			for(int i = 0; i < pending.size(); i++) {
+				ids.add(pending.idAt(i), null, 0L);
+			}
+			for(final Store batch : inflight) {
+				for(int i = 0; i < batch.size(); i++) {
+					if(!ids.contains(batch.idAt(i))) {
+						ids.add(batch.idAt(i), null, 0L);
+					}
+				}
+			}
+			for(final int id : db.modset(this)) {
+				if(!ids.contains(id)) {
+					ids.add(id, null, 0L);
+				}
+			}
+			return ids.ids();
+		}
+
+		/** not journaled */
+		@Override final public Op[] operations () {
+			return new Op[0];
+		}
+
+		@Override final public Temporal.Context parent () {
+			return parent;
+		}
+
+		/**
+		 * write the buffered writes of this context (and all batches handed off)
+		 * to the database, before returning -- e.g. before closing the database
+		 */
+		public final void flush () {
+			handoff();
+			db.flush();
+		}
+
+		/** hand off the buffered writes to the database to write behind */
+		private void handoff () {
+			if(pending.size() == 0) {
+				return;
+			}
+			final Store writes = pending;
+			pending = new IntTable();
+			for(int i = 0; i < writes.size(); i++) {
+				cache.put(writes.idAt(i), writes.valueAt(i));
+			}
+			inflight.addLast(writes);
+			db.handoff(this, writes);
+		}
+	}
+}
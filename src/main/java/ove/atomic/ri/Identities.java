@@ -0,0 +1,345 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Allocator of dense, collision free identities for Temporal.References.
+ *
+ * Ids are handed out monotonically from 0, singly or in blocks of
+ * consecutive ids (e.g. for the versioned fields of an object). If recycling
+ * is enabled (via system property {@value #RECYCLE_PROPERTY}) the ids (and
+ * blocks) of owners that have become unreachable are reused before new ids
+ * are minted -- blocks by blocks of the same size.
+ *
+ * A recycled id may still have values written by its prior owner in the
+ * ancestors of the context in which the new owner is created. Since a null
+ * value reads through to ancestors, TemporalReference writes null as a
+ * delete (tombstone) when recycling is enabled.
+ *
+ * REVU: recycling is off by default. A recycled id may still have values
+ * written by its prior owner in contexts that are not descendants of the
+ * context in which the new owner was created, and merging such a context
+ * would overwrite the new owner's value.
+ *
+ * Ids are only meaningful in the process that minted them: its epoch. Ids
+ * encoded (see Exported) by another process are imported -- mapped to new
+ * ids of this process -- so that recovered or loaded values never collide
+ * with the references of this process. See Import.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/19/14
+ */
+final class Identities {
+
+	/** */
+	static final String RECYCLE_PROPERTY = "ove.atomic.ri.recycle-ids";
+
+	/** */
+	static final boolean recycle = Boolean.getBoolean(RECYCLE_PROPERTY);
+
+	/** (random, non zero) identity of the id space of this process -- see Import */
+	static final long epoch = epoch();
+
+	/** kinds of references -- see Exported */
+	static final byte REFERENCE = 0;
+	static final byte MERGEABLE = 1;
+	static final byte SET = 2;
+	static final byte INT = 3;
+	static final byte LONG = 4;
+	static final byte DOUBLE = 5;
+
+	/** import of the decoding thread, if any -- see Import#decode */
+	private static final ThreadLocal<Import> importing = new ThreadLocal<>();
+
+	/** */
+	private static final AtomicInteger next = new AtomicInteger();
+
+	/** recycle: reclaimed reference queue */
+	private static final ReferenceQueue<Object> reclaimed = new ReferenceQueue<>();
+
+	/** tracked owners, indexed by id -- of all ids if recycling, else of exported ids */
+	private static Owner[] owners = new Owner[1024];
+
+	/** recycle: free ids */
+	private static int[] free = new int[64];
+
+	/** recycle: number of free ids */
+	private static int freeCount;
+
+	/** recycle: free blocks by block size -- stacks of base ids, at [0] the number of free blocks */
+	private static final Store blocks = new IntTable();
+
+	private Identities () { }
+
+	/** @return a dense id for the (new) reference */
+	static int allocate (final Object reference) {
+		return allocate(reference, 1);
+	}
+
+	/**
+	 * @return the first of count consecutive dense ids of the (new) owner, e.g.
+	 * for the versioned fields of an object
+	 */
+	static int allocate (final Object owner, final int count) {
+		assert count > 0 : "count is not positive";
+		if(!recycle) {
+			return mint(count);
+		}
+		synchronized (Identities.class) {
+			reclaim();
+			final int id;
+			if(count == 1) {
+				id = freeCount > 0 ? free[--freeCount] : mint(1);
+			} else {
+				final int[] stack = (int[]) blocks.get(count);
+				id = stack != null && stack[0] > 0 ? stack[stack[0]--] : mint(count);
+			}
+			if(id >= owners.length) {
+				owners = Arrays.copyOf(owners, Math.max(id + 1, owners.length << 1));
+			}
+			owners[id] = new Owner(owner, id, count, reclaimed);
+			return id;
+		}
+	}
+
+	/**
+	 * track the owner of id, so that an encoding of the reference can be
+	 * resolved to it -- see Exported
+	 */
+	static void export (final Object reference, final int id) {
+		synchronized (Identities.class) {
+			if(id >= owners.length) {
+				owners = Arrays.copyOf(owners, Math.max(id + 1, owners.length << 1));
+			}
+			if(owners[id] == null || owners[id].get() != reference) {
+				owners[id] = new Owner(reference, id, 1, recycle ? reclaimed : null);
+			}
+		}
+	}
+
+	/** @return the id of an InMemory reference, or -1 if not a reference */
+	static int idOf (final Object reference) {
+		if(reference instanceof InMemory.TemporalReference) {
+			return ((InMemory.TemporalReference<?>) reference).id();
+		} else if(reference instanceof InMemory.IntReference) {
+			return ((InMemory.IntReference) reference).id();
+		} else if(reference instanceof InMemory.LongReference) {
+			return ((InMemory.LongReference) reference).id();
+		} else if(reference instanceof InMemory.DoubleReference) {
+			return ((InMemory.DoubleReference) reference).id();
+		}
+		return -1;
+	}
+
+	/** @return the kind of an InMemory reference -- see idOf(Object) */
+	static byte kindOf (final Object reference) {
+		if(reference instanceof InMemory.GrowOnlySet) {
+			return SET;
+		} else if(reference instanceof InMemory.MergeableReference) {
+			return MERGEABLE;
+		} else if(reference instanceof InMemory.IntReference) {
+			return INT;
+		} else if(reference instanceof InMemory.LongReference) {
+			return LONG;
+		} else if(reference instanceof InMemory.DoubleReference) {
+			return DOUBLE;
+		}
+		return REFERENCE;
+	}
+
+	/**
+	 * @return the reference of id: its (reachable) tracked owner, or else a
+	 * reference of the kind reattached to id -- e.g. to the values of id
+	 * recovered after a restart. A reattached reference does not write an
+	 * initial value, and its merge function (if any) is not restored -- see
+	 * InMemory.MergeableReference.
+	 */
+	static Object resolve (final int id, final byte kind) {
+		synchronized (Identities.class) {
+			final Object owner = owner(id);
+			if(owner != null) {
+				return owner;
+			}
+			final Exported exported = new Exported(id, kind);
+			final Object reference;
+			switch (kind) {
+				case MERGEABLE: reference = new InMemory.MergeableReference<Object>(exported, null); break;
+				case SET: reference = new InMemory.GrowOnlySet<Object>(exported); break;
+				case INT: reference = new InMemory.IntReference(exported); break;
+				case LONG: reference = new InMemory.LongReference(exported); break;
+				case DOUBLE: reference = new InMemory.DoubleReference(exported); break;
+				default: reference = new InMemory.TemporalReference<Object>(exported);
+			}
+			export(reference, id);
+			return reference;
+		}
+	}
+
+	/** @return the (reachable) tracked owner of id, or null */
+	static Object owner (final int id) {
+		synchronized (Identities.class) {
+			return id < owners.length && owners[id] != null ? owners[id].get() : null;
+		}
+	}
+
+	/** @return the number of ids minted so far (an upper bound of live ids) */
+	static int minted () {
+		return next.get();
+	}
+
+	private static long epoch () {
+		final Random random = new Random();
+		long epoch;
+		do {
+			epoch = random.nextLong();
+		} while (epoch == 0L);
+		return epoch;
+	}
+
+	private static int mint (final int count) {
+		final int id = next.getAndAdd(count);
+		if(id < 0 || id + count < 0) {
+			throw new IllegalStateException("ERR-identity space exhausted");
+		}
+		return id;
+	}
+
+	private static void reclaim () {
+		for(Owner owner; (owner = (Owner) reclaimed.poll()) != null; ) {
+			if(owners[owner.id] == owner) {
+				owners[owner.id] = null;
+			}
+			if(owner.count > 1) {
+				int[] stack = (int[]) blocks.get(owner.count);
+				if(stack == null || stack[0] == stack.length - 1) {
+					stack = stack == null ? new int[8] : Arrays.copyOf(stack, stack.length << 1);
+					blocks.put(owner.count, stack, 0L);
+				}
+				stack[++stack[0]] = owner.id;
+			} else {
+				if(freeCount == free.length) {
+					free = Arrays.copyOf(free, freeCount << 1);
+				}
+				free[freeCount++] = owner.id;
+			}
+		}
+	}
+
+	/** */
+	private static final class Owner extends WeakReference<Object> {
+		final int id;
+		/** number of ids of the owner, from id */
+		final int count;
+		Owner (final Object reference, final int id, final int count, final ReferenceQueue<Object> queue) {
+			super(reference, queue);
+			this.id = id;
+			this.count = count;
+		}
+	}
+
+	/**
+	 * Serialized form of a reference: its id and kind, resolved when
+	 * deserialized to the reference of that id -- of the id imported by the
+	 * decoding thread's Import, if any. See Codec.serializable, resolve().
+	 */
+	static final class Exported implements Serializable {
+		private static final long serialVersionUID = 2L;
+		final int id;
+		final byte kind;
+		Exported (final int id, final byte kind) {
+			this.id = id;
+			this.kind = kind;
+		}
+		private Object readResolve () throws ObjectStreamException {
+			final Import imported = importing.get();
+			return resolve(imported == null ? id : imported.id(id), kind);
+		}
+	}
+
+	/**
+	 * Ids of an epoch (e.g. of the process that wrote a log), imported as ids
+	 * of this process: a foreign id is mapped to a new id at first sight, and
+	 * the ids of this epoch are their own imports. Values of an epoch are
+	 * decoded with its Import -- see decode().
+	 */
+	static final class Import {
+		/** of the imported ids */
+		final long epoch;
+		/** foreign id -> (Integer) id of this process */
+		private final Store ids = new IntTable();
+		/** id of this process -> (Integer) foreign id */
+		private final Store foreign = new IntTable();
+
+		Import (final long epoch) {
+			this.epoch = epoch;
+		}
+
+		/** @return true if the ids of the epoch are ids of this process */
+		final boolean local () {
+			return epoch == Identities.epoch;
+		}
+
+		/** @return the id of this process of foreign id -- a new id at first sight */
+		final synchronized int id (final int id) {
+			if(local()) {
+				return id;
+			}
+			final Object imported = ids.get(id);
+			if(imported != null) {
+				return (Integer) imported;
+			}
+			final int local = mint(1);
+			ids.put(id, local, 0L);
+			foreign.put(local, id, 0L);
+			return local;
+		}
+
+		/** @return the foreign id of id of this process, or -1 if not imported */
+		final synchronized int foreign (final int id) {
+			if(local()) {
+				return id;
+			}
+			final Object exported = foreign.get(id);
+			return exported == null ? -1 : (Integer) exported;
+		}
+
+		/** @return value decoded by codec, its encoded references resolved to imported ids */
+		final Object decode (final Codec codec, final byte[] bytes, final int offset, final int length) {
+			final Import prior = importing.get();
+			importing.set(this);
+			try {
+				return codec.decode(bytes, offset, length);
+			} finally {
+				importing.set(prior);
+			}
+		}
+	}
+}
@@ -22,12 +22,27 @@
 
 package ove.atomic.ri;
 
+import ove.atomic.Mergeable;
 import ove.atomic.Temporal;
+import ove.atomic.TemporalDouble;
+import ove.atomic.TemporalInt;
+import ove.atomic.TemporalLong;
 
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
 
 /**
  * Proof-Of-Concept JVM-global, In-Memory sketch-implementation of
@@ -52,139 +67,2127 @@ public interface InMemory {
 		@Override final public Temporal.Context parent () { throw new RuntimeException("BUG");}
 	};
 
-	public static class TemporalContext implements Temporal.Context {
+	/** storage mode of TemporalContext values */
+	public enum Storage {
+		/** open addressing table -- for any ids, e.g. identity hashes */
+		hashed,
+		/** direct (paged) array index -- for dense TemporalReference ids */
+		dense
+	}
+
+	/** operations journal mode of TemporalContext */
+	public enum Journal {
+		/** nothing is recorded */
+		off,
+		/** context ops and writes are recorded */
+		writes,
+		/** context ops, writes, and reads are recorded */
+		full
+	}
+
+	public static class TemporalContext implements Temporal.Timeline {
+
+		/**
+		 * @throws java.lang.AssertionError if current thread is not a Temporal.Actor
+		 * @return the Temporal.Context of the current (acting) Temporal.Actor
+		 */
+		public static Temporal.Context get() {
+			final Thread thread = Thread.currentThread();
+			if(thread instanceof TemporalActor && ((TemporalActor) thread).bound == null) {
+				return ((TemporalActor) thread).temporalContext;
+			}
+			return TemporalActor.currentActor().getTemporalContext();
+		}
+
+		public static Temporal.Context newRootContext () {
+			final String name = String.format("anon-root-temporal-context-%d", System.nanoTime());
+			return new TemporalContext(name);
+		}
+
+		public static Temporal.Context newRootContext (final String name) {
+			return new TemporalContext(name);
+		}
+
+		public static Temporal.Context newRootContext (final String name, final Storage storage) {
+			return new TemporalContext(NilContext, name, storage);
+		}
+
+		/** values written in this context -- its ids are the modset. Replaced when a transaction is reset */
+		private Store map;
+
+		/** membership filter of the ids of map -- null if dense, as its lookups are direct */
+		private Bloom filter;
+
+		/**
+		 * true once a transaction of this context (run by another thread) may
+		 * commit into it -- its map and journal are then only accessed under
+		 * the monitor of this context. See transaction().
+		 */
+		private boolean shared;
+
+		/** storage mode of this context, inherited by its branches */
+		final Storage storage;
+
+		/** journal mode of this context, inherited by its branches */
+		private Journal journal = Journal.off;
+
+		/** operations journal -- null if journal is off */
+		private OpLog operations;
+
+		/** number of prior versions retained per id, inherited by its branches */
+		private int retained = 1;
+
+		/** prior versions of overwritten ids -- null until an id is overwritten */
+		private Store history;
+
+		/** values of mergeable ids (in the parent) before their first write in this context -- see Mergeable */
+		private Store mergeBases;
+
+		/** ids resolved per walk of the timeline by readAll -- bounds its working set */
+		private static final int READ_BLOCK = 256;
+
+		/** true if a context of combined writes -- see combine() */
+		private boolean combined;
+
+		/** revisions of the timeline at the first read of each id -- null unless a transaction, see commit() */
+		private Store reads;
+
+		/** timeline depth retained by compaction after merges (0 is off), inherited by its branches */
+		private int compaction;
+
+		/** durable log of this context (null if not durable), inherited by its branches */
+		MappedLog log;
+
+		/** key of this context in its durable log */
+		long key;
+
+		/** */
+		public final String name;
+
+		/** volatile: may be swapped for a flattened equivalent by compact() */
+		volatile Temporal.Context parent;
+
+		/** revision of the timeline at which this context was branched -- a synchronized revision, see Revisions */
+		final long base;
+
+		/** last revision stamped in this context -- see Revisions#after(long) */
+		private long clock;
+
+		/** all (current and retained) versions in this context are of later revisions -- see read(int, long) */
+		private long floor;
+
+		/** bases of the contexts squashed into this (flattened) context, root first -- null if not flattened */
+		private long[] squashed;
+
+		/** true once squashed by compaction -- see compact() */
+		private boolean compacted;
+
+		/** last frozen copy of the timeline -- see image() */
+		private volatile FrozenContext frozen;
+
+		/** null if metrics are not enabled */
+		final Metrics.Counters counters;
+
+		protected TemporalContext (final String name) {
+			this(NilContext, name);
+		}
+
+		protected TemporalContext (final Temporal.Context parent, final String name) {
+			this(parent, name, parent instanceof TemporalContext ? ((TemporalContext) parent).storage : Storage.hashed);
+		}
+
+		/**
+		 * parent may be any Temporal.Context (e.g. a loaded Snapshot context) --
+		 * policies and the durable log are only inherited from a TemporalContext.
+		 */
+		protected TemporalContext (final Temporal.Context parent, final String name, final Storage storage) {
+			assert parent != null : "parent is null";
+			assert name != null : "name is null";
+			assert storage != null : "storage is null";
+			this.name = name;
+			this.parent = parent;
+			this.storage = storage;
+			this.base = Revisions.sync(parent instanceof TemporalContext ? ((TemporalContext) parent).clock : 0L);
+			this.clock = base;
+			this.floor = base;
+			this.map = Store.of(storage);
+			this.filter = storage == Storage.hashed ? new Bloom() : null;
+			if(parent instanceof TemporalContext) {
+				journal(((TemporalContext) parent).journal);
+				this.retained = ((TemporalContext) parent).retained;
+				this.compaction = ((TemporalContext) parent).compaction;
+				final MappedLog log = ((TemporalContext) parent).log;
+				if(log != null) {
+					this.log = log;
+					this.key = log.branch(((TemporalContext) parent).key, name);
+				}
+			}
+			this.counters = Metrics.enabled ? Metrics.branched(this) : null;
+		}
+
+		/**
+		 * set the compaction policy of this context: once merging results in a
+		 * timeline deeper than twice the given depth, the merge context is
+		 * compacted to the given depth. 0 (default) is off.
+		 */
+		public final void compaction (final int depth) {
+			assert depth >= 0 : "depth is negative";
+			this.compaction = depth;
+		}
+
+		/**
+		 * Squash the ancestors of this context beyond the given depth into a
+		 * single flattened (root) context, so that depth + 1 ancestors remain
+		 * reachable via parent() (and Actor#goBackInTime()).
+		 * <p>
+		 * The flattened context presents the same values (and revisions) as the
+		 * squashed ancestors, and replaces them with a single (volatile) write of
+		 * the parent link, so it is safe with respect to concurrent readers of the
+		 * timeline. Prior versions retained by squashed ancestors are dropped.
+		 * <p>
+		 * The flattened context keeps the bases of the squashed ancestors, so that
+		 * live branches of a squashed ancestor are still found to fork from this
+		 * timeline at their branch revision -- see forkedFrom().
+		 * <p>
+		 * Squashed ancestors must no longer be written: a later write throws
+		 * IllegalStateException. A squashed ancestor that has issued transactions
+		 * is copied under its lock; for others, concurrent writes during
+		 * compaction are not detected -- e.g. compact from the actor of this
+		 * context, once its ancestors have only been merged and branched.
+		 *
+		 * @return the number of ancestors squashed
+		 */
+		public final int compact (final int depth) {
+			assert depth >= 0 : "depth is negative";
+			TemporalContext keep = this;
+			for(int d = 0; d < depth; d++) {
+				if(!(keep.parent instanceof TemporalContext)) {
+					return 0;
+				}
+				keep = (TemporalContext) keep.parent;
+			}
+			final ArrayDeque<TemporalContext> squashed = new ArrayDeque<>();
+			Temporal.Context root = keep.parent;
+			for(; root instanceof TemporalContext; root = ((TemporalContext) root).parent) {
+				squashed.push((TemporalContext) root);
+			}
+			if(squashed.size() < 2) {
+				return 0;
+			}
+			final TemporalContext top = squashed.getLast();
+			final String name = String.format("flattened-%s", top.name);
+			final TemporalContext flattened = new TemporalContext(root, name, top.storage);
+			flattened.retained = top.retained;
+			flattened.compaction = top.compaction;
+			final int count = squashed.size();
+			flattened.squashed = new long[0];
+			while(!squashed.isEmpty()) {
+				final TemporalContext ancestor = squashed.pop();
+				if(ancestor.shared) {
+					synchronized (ancestor) {
+						flattened.squash(ancestor);
+					}
+				} else {
+					flattened.squash(ancestor);
+				}
+			}
+			keep.parent = flattened;
+			return count;
+		}
+
+		/** copy the values of ancestor into this flattened context, and mark it compacted -- see compact() */
+		private void squash (final TemporalContext ancestor) {
+			ancestor.compacted = true;
+			floor = Math.min(floor, ancestor.floor);
+			final int n = squashed.length;
+			final long[] bases = ancestor.squashed == null ? new long[0] : ancestor.squashed;
+			squashed = Arrays.copyOf(squashed, n + bases.length + 1);
+			System.arraycopy(bases, 0, squashed, n, bases.length);
+			squashed[n + bases.length] = ancestor.base;
+			final Store from = ancestor.map;
+			map.reserve(map.size() + from.size());
+			for(int i = 0; i < from.size(); i++) {
+				if(from.valueAt(i) != null) {
+					map.put(from.idAt(i), from.valueAt(i), from.revisionAt(i));
+					filtered(from.idAt(i));
+				}
+			}
+		}
+
+		/** @return revision of a write in this context */
+		private long stamp () {
+			if(compacted) {
+				final String err = String.format("ERR-context %s was squashed by compaction", name);
+				throw new IllegalStateException(err);
+			}
+			return clock = Revisions.after(clock);
+		}
+
+		/**
+		 * @return an immutable, flattened copy of the values visible in this
+		 * context, readable by any thread -- see FrozenContext. This context
+		 * remains writable, and subsequent writes are not visible in the frozen
+		 * copy. A foreign (e.g. Snapshot) root is not copied, but read through.
+		 * <p>
+		 * The copy is built over the (cached) frozen copy of the parent, and
+		 * from the prior freeze of this context if the parent's is unchanged:
+		 * only the writes of this context since -- and the pages of the prior
+		 * copy they fall in -- are copied, the rest is shared. See image().
+		 */
+		public final FrozenContext freeze () {
+			final FrozenContext frozen = image();
+			if(journal != Journal.off) {
+				journaled(OpLog.FREEZE, OpLog.NO_ID, clock);
+			}
+			return frozen;
+		}
+
+		/**
+		 * @return the frozen copy of the timeline as of this context's clock --
+		 * the prior one if this context and its ancestors are unchanged since.
+		 * Ancestors are read under their monitor if shared, as by any read.
+		 */
+		private FrozenContext image () {
+			final Temporal.Context parent = this.parent;
+			final FrozenContext over = parent instanceof TemporalContext ? ((TemporalContext) parent).image() : null;
+			if(shared) {
+				synchronized (this) {
+					return image(parent, over);
+				}
+			}
+			return image(parent, over);
+		}
+
+		private FrozenContext image (final Temporal.Context parent, final FrozenContext over) {
+			final FrozenContext prior = this.frozen;
+			final String name = String.format("frozen-%s", this.name);
+			final FrozenContext image;
+			if(prior != null && prior.over == over) {
+				if(prior.clock == clock) {
+					return prior;
+				}
+				image = prior.with(name, over, map, prior.clock, clock);
+			} else {
+				image = (over != null ? over : FrozenContext.empty(name, parent)).with(name, over, map, Long.MIN_VALUE, clock);
+			}
+			this.frozen = image;
+			return image;
+		}
+
+		/** @return number of ancestors of this context */
+		final int depth () {
+			int depth = 0;
+			for(Temporal.Context c = parent; c != NilContext; c = c.parent()) {
+				depth++;
+			}
+			return depth;
+		}
+
+		/**
+		 * set the number of prior versions of each id retained by this context
+		 * for revision reads (and Reference#previousRevision()). Default is 1.
+		 */
+		public final void retain (final int retained) {
+			assert retained >= 0 : "retained is negative";
+			this.retained = retained;
+		}
+
+		/** set the operations journal mode of this context -- prior ops are retained */
+		public final void journal (final Journal journal) {
+			assert journal != null : "journal is null";
+			this.journal = journal;
+			if(journal != Journal.off && operations == null) {
+				operations = new OpLog();
+				operations.append(OpLog.INITIALIZE, OpLog.NO_ID, clock);
+			}
+		}
+
+		@Override final public Temporal.Context branch () {
+			final String name = String.format("anon-child-temporal-context-%d", System.currentTimeMillis());
+			return this.branch (name);
+		}
+
+		@Override final public Temporal.Context branch (final String name) {
+			if(journal != Journal.off) {
+				journaled(OpLog.BRANCH, OpLog.NO_ID, clock);
+			}
+			return new TemporalContext(this, name);
+		}
+
+		/**
+		 * @return a child of this context that records the revision of the values
+		 * it reads, so that its writes can be committed into this context -- see
+		 * commit(). The transaction may be acted in by another thread, e.g. a
+		 * forked actor: {@code new TemporalActor(context.transaction(), task, name)}
+		 * commits into this context while the actor of this context keeps acting
+		 * in it. Once a transaction is created, the reads and writes of this
+		 * context synchronize with commits (on the monitor of this context).
+		 */
+		public final TemporalContext transaction () {
+			return transaction(true);
+		}
+
+		/** @param shared false if the transaction is only acted in by the actor of this context -- see Actor#atomically */
+		final TemporalContext transaction (final boolean shared) {
+			final String name = String.format("anon-transaction-temporal-context-%d", System.nanoTime());
+			final TemporalContext transaction = (TemporalContext) this.branch(name);
+			transaction.reads = new IntTable();
+			if(shared) {
+				this.shared = true;
+			}
+			return transaction;
+		}
+
+		/**
+		 * Optimistic commit of the writes of this transaction into its parent.
+		 * <p>
+		 * Each id read by this transaction (and not read from its own write) is
+		 * validated against the parent's timeline: if its value there is no
+		 * longer that read -- by the context holding it and its revision, as
+		 * revisions stamped in different contexts may be equal -- the commit
+		 * fails and nothing is written. Otherwise the writes are published to the parent, with new
+		 * revisions. Validation and publication hold the monitor of the parent,
+		 * so they are atomic with respect to other commits and to the reads and
+		 * writes of the parent's actor.
+		 * <p>
+		 * Unlike merge, the parent is updated in place -- its actor keeps acting
+		 * in it. Mergeable ids are not merged: they were read, so are validated.
+		 * Whether it commits or fails, the transaction is reset (its reads and
+		 * writes are discarded), so its actor can run the next transaction -- or
+		 * retry -- in it.
+		 * <p>
+		 * REVU: writes to ancestors of the parent are not synchronized with the
+		 * commit, as they are not with any reader of the timeline.
+		 * REVU: compact() moves the values of squashed ancestors to a descendant,
+		 * so reads of them fail validation if compaction overlaps the transaction.
+		 *
+		 * @throws IllegalStateException if this context is not a transaction
+		 * @throws Op.Exception on the first stale read -- nothing is committed
+		 */
+		public final void commit () throws Op.Exception {
+			if(reads == null) {
+				throw new IllegalStateException(String.format("ERR-%s is not a transaction", name));
+			}
+			final TemporalContext parent = (TemporalContext) this.parent;
+			try {
+				synchronized (parent) {
+					for(int i = 0; i < reads.size(); i++) {
+						if(reads.valueAt(i) == OWN_WRITE) {
+							continue;
+						}
+						final int id = reads.idAt(i);
+						final long revision = reads.revisionAt(i);
+						final Temporal.Context holder = parent.holder(id);
+						if(holder != reads.valueAt(i) || revision(holder, id) != revision) {
+							final Op op = new OpLog.Operation(OpLog.READ, id, revision);
+							throw new Op.Exception(op, String.format("ERR-commit conflict on id %d - read value since written in parent timeline", id));
+						}
+					}
+					for(int i = 0; i < map.size(); i++) {
+						final Object value = map.rawAt(i);
+						if(value instanceof Store.Lane) {
+							parent.write(map.idAt(i), (Store.Lane) value, map.bitsAt(i));
+						} else if(value != null) {
+							parent.write(map.idAt(i), value, value == Store.TOMBSTONE ? OpLog.DELETE : OpLog.WRITE);
+						}
+					}
+					if(parent.journal != Journal.off) {
+						parent.operations.append(OpLog.COMMIT, OpLog.NO_ID, parent.clock);
+					}
+				}
+			} finally {
+				reset();
+			}
+		}
+
+		/** discard the reads and writes of this transaction */
+		private void reset () {
+			map = Store.of(storage);
+			frozen = null;
+			filter = storage == Storage.hashed ? new Bloom() : null;
+			reads = new IntTable();
+			history = null;
+			mergeBases = null;
+			if(Metrics.enabled) {
+				Metrics.released(this);
+			}
+		}
+
+		/** value of tracked reads of the transaction's own writes -- not validated */
+		private static final Object OWN_WRITE = Boolean.FALSE;
+
+		/**
+		 * lookup of id by a transaction: the revision of the value read (-1 if
+		 * none) and the context holding it are recorded at its first read, from
+		 * the same probe of the timeline as the value -- see commit()
+		 */
+		@SuppressWarnings("unchecked")
+		private <T> T tracked (final int id) {
+			final boolean first = reads.position(id) < 0;
+			final Object[] value = new Object[1];
+			long revision = -1L;
+			Temporal.Context holder = null;
+			Temporal.Context context = this;
+			do {
+				final TemporalContext c = (TemporalContext) context;
+				final long r = c.entry(id, value);
+				if(r != NO_ENTRY && holder == null) {
+					holder = c;
+					revision = r;
+					if(first && c == this) {
+						reads.add(id, OWN_WRITE, r);
+					}
+				}
+				if(value[0] != null) {
+					break;
+				}
+				context = c.parent;
+			} while (context instanceof TemporalContext);
+			if(!(context instanceof TemporalContext)) {
+				if(holder == null) {
+					holder = context;
+					revision = revision(context, id);
+				}
+				value[0] = context == NilContext ? null : context.read(id);
+			}
+			if(first && reads.position(id) < 0) {
+				reads.add(id, holder, revision);
+			}
+			return value[0] == Store.TOMBSTONE ? null : (T) value[0];
+		}
+
+		/** revision of no entry -- see entry() */
+		private static final long NO_ENTRY = Long.MIN_VALUE;
+
+		/**
+		 * @return revision of the entry of id in this context's own map (and its
+		 * value in value[0]), or NO_ENTRY -- under the monitor if shared
+		 */
+		private long entry (final int id, final Object[] value) {
+			if(shared) {
+				synchronized (this) {
+					return entry0(id, value);
+				}
+			}
+			return entry0(id, value);
+		}
+
+		private long entry0 (final int id, final Object[] value) {
+			final int position = position(id);
+			if(position < 0) {
+				value[0] = null;
+				return NO_ENTRY;
+			}
+			value[0] = map.valueAt(position);
+			return map.revisionAt(position);
+		}
+
+		/** @return value of id in this context's own map, or null if none -- under the monitor if shared */
+		final Object valueOf (final int id) {
+			if(shared) {
+				synchronized (this) {
+					final int position = position(id);
+					return position < 0 ? null : map.valueAt(position);
+				}
+			}
+			final int position = position(id);
+			return position < 0 ? null : map.valueAt(position);
+		}
+
+		/** @return revision of id in this context's own map, or NO_ENTRY -- under the monitor if shared */
+		private long revisionOf (final int id) {
+			if(shared) {
+				synchronized (this) {
+					final int position = position(id);
+					return position < 0 ? NO_ENTRY : map.revisionAt(position);
+				}
+			}
+			final int position = position(id);
+			return position < 0 ? NO_ENTRY : map.revisionAt(position);
+		}
+
+		/**
+		 * append a read of id to the journal, with the revision of the value read
+		 * and the context holding it -- revisions stamped in different contexts
+		 * may be equal (see Revisions), so Merge validates the read by both
+		 */
+		private void journaledRead (final int id) {
+			final Temporal.Context holder = holder(id);
+			final long revision = revision(holder, id);
+			if(shared) {
+				synchronized (this) {
+					operations.append(OpLog.READ, id, revision, holder);
+				}
+			} else {
+				operations.append(OpLog.READ, id, revision, holder);
+			}
+		}
+
+		/** append to the journal -- under the monitor if shared */
+		private void journaled (final byte code, final int id, final long revision) {
+			if(shared) {
+				synchronized (this) {
+					operations.append(code, id, revision);
+				}
+			} else {
+				operations.append(code, id, revision);
+			}
+		}
+
+		/**
+		 * last-writer-wins merge, in order of the merged contexts
+		 * @throws IllegalStateException if a merge function fails with a conflict -- see Mergeable.Conflict
+		 */
+		@Override final public Temporal.Context merge (Temporal.Context... contexts) {
+			try {
+				return merge(false, contexts);
+			} catch (Op.Exception e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+		}
+
+		/**
+		 * Three-way merge of the contexts, relative to their common ancestor
+		 * with this context. See {@link Merge} for conflicts detected.
+		 * <p>
+		 * Read-write conflicts are only detected for merged contexts that journal
+		 * their reads, i.e. in Journal.full mode (see journal(Journal)) -- e.g.
+		 * set on this context before forking, as branches inherit its mode. For
+		 * all others, only write-write conflicts are detected.
+		 * @throws Op.Exception on the first conflict detected -- nothing is merged
+		 * @return the merged context, a child of this context
+		 */
+		public final Temporal.Context reconcile (Temporal.Context... contexts) throws Op.Exception {
+			return merge(true, contexts);
+		}
+
+		private Temporal.Context merge (final boolean reconcile, final Temporal.Context... contexts) throws Op.Exception {
+			final long start = Metrics.enabled ? System.nanoTime() : 0L;
+			final Store[] merged = Merge.merge(this, contexts, reconcile);
+			final String name = String.format("anon-merged-temporal-context-%d", System.nanoTime());
+			final TemporalContext mergeContext = (TemporalContext) this.branch(name);
+			int size = 0;
+			for(final Store writes : merged) {
+				size += writes.size();
+			}
+			mergeContext.map.reserve(size);
+			for(final Store writes : merged) {
+				for(int i = 0; i < writes.size(); i++) {
+					final Object value = writes.valueAt(i);
+					mergeContext.write(writes.idAt(i), value, value == Store.TOMBSTONE ? OpLog.DELETE : OpLog.WRITE);
+				}
+			}
+			if(mergeContext.journal != Journal.off) {
+				mergeContext.operations.append(OpLog.MERGE, OpLog.NO_ID, mergeContext.clock);
+			}
+			if(mergeContext.log != null) {
+				mergeContext.log.merge(mergeContext.key);
+			}
+			if(compaction > 0 && mergeContext.depth() > compaction << 1) {
+				mergeContext.compact(compaction);
+			}
+			if(Metrics.enabled) {
+				Metrics.merged(mergeContext, contexts.length, size, reconcile, start);
+			}
+			return mergeContext;
+		}
+
+		@Override final public <T> void write (int id, T value) {
+			write(id, value, OpLog.WRITE);
+		}
+
+		/** the map is grown once, and a shared context is locked once */
+		@Override final public void writeAll (final int[] ids, final Object[] values) {
+			assert ids.length <= values.length : "values is shorter than ids";
+			if(ids.length == 0) {
+				return;
+			}
+			if(shared) {
+				synchronized (this) {
+					putAll(ids, values);
+				}
+			} else {
+				putAll(ids, values);
+			}
+		}
+
+		private void putAll (final int[] ids, final Object[] values) {
+			map.reserve(map.size() + ids.length);
+			for(int i = 0; i < ids.length; i++) {
+				put(ids[i], values[i], OpLog.WRITE);
+			}
+		}
+
+		/**
+		 * reads the batch a level of the timeline at a time: each context is
+		 * probed for the ids not found in its descendants, and the walk stops once
+		 * all are found
+		 */
+		@Override final public void readAll (final int[] ids, final Object[] out) {
+			assert ids.length <= out.length : "out is shorter than ids";
+			if(reads != null) {
+				for(int i = 0; i < ids.length; i++) {
+					out[i] = read(ids[i]);
+				}
+				return;
+			}
+			if(journal == Journal.full) {
+				for(final int id : ids) {
+					journaledRead(id);
+				}
+			}
+			if(Metrics.enabled) {
+				Metrics.readAll(this, ids.length);
+			}
+			final int block = Math.min(ids.length, READ_BLOCK);
+			final int[] pending = new int[block];
+			final int[] slots = new int[block];
+			for(int from = 0; from < ids.length; from += block) {
+				int count = Math.min(block, ids.length - from);
+				for(int k = 0; k < count; k++) {
+					pending[k] = ids[from + k];
+					slots[k] = from + k;
+				}
+				Temporal.Context context = this;
+				do {
+					final TemporalContext c = (TemporalContext) context;
+					if(c.shared) {
+						synchronized (c) {
+							count = c.probe(pending, slots, count, out);
+						}
+					} else {
+						count = c.probe(pending, slots, count, out);
+					}
+					if(c == this) {
+						count = branchReads(pending, slots, count, out);
+					}
+					context = c.parent;
+				} while (count > 0 && context instanceof TemporalContext);
+				for(int k = 0; k < count; k++) {
+					out[slots[k]] = context == NilContext ? null : context.read(pending[k]);
+				}
+			}
+		}
+
+		/**
+		 * resolve the pending ids read as of the branch of this context into out
+		 * (at their slots) -- see branchRead
+		 * @return number of ids still pending, compacted to the front
+		 */
+		private int branchReads (final int[] pending, final int[] slots, final int count, final Object[] out) {
+			if(!(parent instanceof TemporalContext)) {
+				return count;
+			}
+			int remaining = 0;
+			for(int k = 0; k < count; k++) {
+				final int id = pending[k];
+				if(Mergers.of(id) != null) {
+					out[slots[k]] = branchValue(id);
+				} else {
+					pending[remaining] = id;
+					slots[remaining++] = slots[k];
+				}
+			}
+			return remaining;
+		}
+
+		/**
+		 * resolve the pending ids found in this context's own map into out (at
+		 * their slots)
+		 * @return number of ids still pending, compacted to the front
+		 */
+		private int probe (final int[] pending, final int[] slots, final int count, final Object[] out) {
+			final long[] filter = this.filter == null ? null : this.filter.words();
+			int remaining = 0;
+			for(int k = 0; k < count; k++) {
+				final int id = pending[k];
+				final int position = filter == null || Bloom.mightContain(filter, id) ? map.position(id) : -1;
+				final Object value = position < 0 ? null : map.valueAt(position);
+				if(value != null) {
+					out[slots[k]] = value == Store.TOMBSTONE ? null : value;
+				} else {
+					pending[remaining] = id;
+					slots[remaining++] = slots[k];
+				}
+			}
+			return remaining;
+		}
+
+		/**
+		 * delete id in this context: its value (including values written by
+		 * ancestors) is no longer visible in this context and its branches.
+		 * A (tombstone) write, that stops reads from searching ancestors.
+		 */
+		public final void delete (final int id) {
+			write(id, Store.TOMBSTONE, OpLog.DELETE);
+		}
+
+		/** delete id in context -- writes null unless a TemporalContext */
+		static void delete (final Temporal.Context context, final int id) {
+			if(context instanceof TemporalContext) {
+				((TemporalContext) context).delete(id);
+			} else {
+				context.write(id, null);
+			}
+		}
+
+		private void write (final int id, final Object value, final byte code) {
+			if(shared) {
+				synchronized (this) {
+					put(id, value, code);
+				}
+			} else {
+				put(id, value, code);
+			}
+		}
+
+		private void put (final int id, final Object value, final byte code) {
+			final long revision = stamp();
+			final int position = map.position(id);
+			if(position < 0) {
+				if(parent != NilContext && Mergers.of(id) != null) {
+					mergeBase(id);
+				}
+				map.add(id, value, revision);
+				filtered(id);
+			} else {
+				if(retained > 0) {
+					retain(id, position);
+				}
+				map.set(position, value, revision);
+			}
+			if(journal != Journal.off) {
+				operations.append(code, id, revision);
+			}
+			if(log != null) {
+				log.write(key, id, revision, value);
+			}
+			if(Metrics.enabled) {
+				Metrics.written(this);
+			}
+		}
+
+		/** write a primitive value of id, without boxing -- see Store.Lane */
+		final void write (final int id, final Store.Lane lane, final long bits) {
+			if(shared) {
+				synchronized (this) {
+					put(id, lane, bits);
+				}
+			} else {
+				put(id, lane, bits);
+			}
+		}
+
+		private void put (final int id, final Store.Lane lane, final long bits) {
+			final long revision = stamp();
+			final int position = map.position(id);
+			if(position < 0) {
+				if(parent != NilContext && Mergers.of(id) != null) {
+					mergeBase(id);
+				}
+				map.add(id, lane, bits, revision);
+				filtered(id);
+			} else {
+				if(retained > 0) {
+					retain(id, position);
+				}
+				map.set(position, lane, bits, revision);
+			}
+			if(journal != Journal.off) {
+				operations.append(OpLog.WRITE, id, revision);
+			}
+			if(log != null) {
+				log.write(key, id, revision, lane.box(bits));
+			}
+			if(Metrics.enabled) {
+				Metrics.written(this);
+			}
+		}
+
+		/** @return bits of the primitive value of id visible in context -- boxed unless a TemporalContext */
+		static long read (final Temporal.Context context, final int id, final Store.Lane lane) {
+			return context instanceof TemporalContext
+					? ((TemporalContext) context).read(id, lane)
+					: lane.bits(context.read(id));
+		}
+
+		/** write the primitive value of id in context -- boxed unless a TemporalContext */
+		static void write (final Temporal.Context context, final int id, final Store.Lane lane, final long bits) {
+			if(context instanceof TemporalContext) {
+				((TemporalContext) context).write(id, lane, bits);
+			} else {
+				context.write(id, lane.box(bits));
+			}
+		}
+
+		/** @return bits of the primitive value of id visible in this context (0 if none), without boxing */
+		final long read (final int id, final Store.Lane lane) {
+			if(reads != null) {
+				return lane.bits(read(id));
+			}
+			if(journal == Journal.full) {
+				journaledRead(id);
+			}
+			if(Metrics.enabled) {
+				Metrics.read(this);
+			}
+			Temporal.Context context = this;
+			do {
+				final TemporalContext c = (TemporalContext) context;
+				if(c.shared) {
+					final Object value = c.valueOf(id);
+					if(value != null) {
+						return value == Store.TOMBSTONE ? 0L : lane.bits(value);
+					}
+					if(c == this && branchRead(id)) {
+						return lane.bits(branchValue(id));
+					}
+					context = c.parent;
+					continue;
+				}
+				final int position = c.filter == null || c.filter.mightContain(id) ? c.map.position(id) : -1;
+				if(position >= 0) {
+					final Object value = c.map.rawAt(position);
+					if(value == lane) {
+						return c.map.bitsAt(position);
+					}
+					if(value == Store.TOMBSTONE) {
+						return 0L;
+					}
+					if(value != null) {
+						return lane.bits(c.map.valueAt(position));
+					}
+				}
+				if(c == this && branchRead(id)) {
+					return lane.bits(branchValue(id));
+				}
+				context = c.parent;
+			} while (context instanceof TemporalContext);
+			return context == NilContext ? 0L : lane.bits(context.read(id));
+		}
+
+		/** attach a (recovered, or new root) context to its durable log */
+		final void attach (final MappedLog log, final long key) {
+			this.log = log;
+			this.key = key;
+		}
+
+		/** restore a (recovered) write */
+		final void restore (final int id, final Object value, final long revision) {
+			if(frozen != null) {
+				frozen = null; // not of a later revision -- see image()
+			}
+			map.put(id, value, revision);
+			filtered(id);
+			clock = Math.max(clock, revision);
+			floor = Math.min(floor, revision - 1);
+		}
+
+		/** add (new) id of map to the filter */
+		private void filtered (final int id) {
+			if(filter != null) {
+				filter.add(id, map);
+			}
+		}
+
+		/** @return position of id in the map, or -1 -- skips the map if the filter excludes id */
+		final int position (final int id) {
+			return filter == null || filter.mightContain(id) ? map.position(id) : -1;
+		}
+
+		@Override final public <T> T read (int id) {
+			if(journal == Journal.full) {
+				journaledRead(id);
+			}
+			if(reads != null) {
+				return tracked(id);
+			}
+			if(Metrics.enabled) {
+				return Metrics.read(this, id);
+			}
+			return lookup(id);
+		}
+
+		/** @return value of id visible in this context -- not journaled */
+		@SuppressWarnings("unchecked")
+		final <T> T lookup (final int id) {
+			Temporal.Context context = this;
+			do {
+				final TemporalContext c = (TemporalContext) context;
+				final Object value = c.valueOf(id);
+				if(value != null) {
+					return value == Store.TOMBSTONE ? null : (T) value;
+				}
+				if(c == this && branchRead(id)) {
+					return (T) branchValue(id);
+				}
+				context = c.parent;
+			} while (context instanceof TemporalContext);
+			return context == NilContext ? null : context.read(id);
+		}
+
+		/**
+		 * @return the context of the write of id visible in this context (the
+		 * first in the timeline with an entry for id) or, if none, the root of
+		 * the timeline -- see revision(int)
+		 */
+		final Temporal.Context holder (final int id) {
+			Temporal.Context context = this;
+			do {
+				if(((TemporalContext) context).revisionOf(id) != NO_ENTRY) {
+					return context;
+				}
+				context = ((TemporalContext) context).parent;
+			} while (context instanceof TemporalContext);
+			return context;
+		}
+
+		/** @return revision of id in a holder of id -- see holder(int) */
+		static long revision (final Temporal.Context holder, final int id) {
+			return holder instanceof Temporal.Timeline ? ((Temporal.Timeline) holder).revision(id) : -1L;
+		}
+
+		@Override final public long revision (final int id) {
+			Temporal.Context context = this;
+			do {
+				final long revision = ((TemporalContext) context).revisionOf(id);
+				if(revision != NO_ENTRY) {
+					return revision;
+				}
+				context = ((TemporalContext) context).parent;
+			} while (context instanceof TemporalContext);
+			return context instanceof Temporal.Timeline ? ((Temporal.Timeline) context).revision(id) : -1L;
+		}
+
+		/**
+		 * Walks the timeline, skipping contexts with no version as old as the
+		 * revision (i.e. branched after it) without probing them; in a context
+		 * that wrote id, the version is found in O(log versions).
+		 * <p>
+		 * REVU: versions are indexed per context, not by id across the timeline,
+		 * so a read of a recent revision still probes (the filter of) each
+		 * ancestor -- compact() bounds the depth.
+		 * @throws IllegalStateException if the version of a context in the timeline
+		 * at that revision is no longer retained
+		 */
+		@SuppressWarnings("unchecked")
+		@Override final public <T> T read (final int id, final long revision) {
+			Temporal.Context context = this;
+			do {
+				final TemporalContext c = (TemporalContext) context;
+				final Object value;
+				if(revision <= c.floor) {
+					value = null;
+				} else if(c.shared) {
+					synchronized (c) {
+						value = c.valueAsOf(id, revision);
+					}
+				} else {
+					value = c.valueAsOf(id, revision);
+				}
+				if(value != null) {
+					return value == Store.TOMBSTONE ? null : (T) value;
+				}
+				context = c.parent;
+			} while (context instanceof TemporalContext);
+			return context instanceof Temporal.Timeline ? ((Temporal.Timeline) context).read(id, revision) : null;
+		}
+
+		/** @return value of id in this context's own map (or retained versions) as of revision, or null if none */
+		private Object valueAsOf (final int id, final long revision) {
+			final int position = position(id);
+			if(position < 0) {
+				return null;
+			}
+			if(map.revisionAt(position) <= revision) {
+				return map.valueAt(position);
+			}
+			if(history != null) {
+				final Versions versions = (Versions) history.get(id);
+				if(versions != null) {
+					final int i = versions.find(revision);
+					if(i >= 0 && versions.valueAt(i) != null) {
+						return versions.valueAt(i);
+					}
+					if(versions.dropped(revision)) {
+						final String err = String.format("ERR-revision %d of id %d no longer retained in %s", revision, id, name);
+						throw new IllegalStateException(err);
+					}
+				}
+			}
+			return null;
+		}
+
+		/** record the value of mergeable id visible in the parent when this context branched, before its first write -- see branchRead */
+		private void mergeBase (final int id) {
+			if(mergeBases == null) {
+				mergeBases = new IntTable();
+			}
+			final Temporal.Context parent = this.parent;
+			mergeBases.put(id, parent instanceof TemporalContext ? branchValue(id) : parent.read(id), 0L);
+		}
+
+		/**
+		 * @return true if a read of id that misses this context's own map is of
+		 * the parent as of the branch of this context, rather than of its current
+		 * value: a mergeable id reads as the merge base of its first write here,
+		 * whatever the parent's actor has since written. Transactions read the
+		 * current value -- their reads are validated on commit.
+		 */
+		final boolean branchRead (final int id) {
+			return parent instanceof TemporalContext && Mergers.of(id) != null;
+		}
+
+		/** @return value of id visible in the (TemporalContext) parent when this context branched -- see branchRead */
+		final Object branchValue (final int id) {
+			final TemporalContext parent = (TemporalContext) this.parent;
+			try {
+				return parent.read(id, base);
+			} catch (IllegalStateException e) {
+				// REVU: the version is no longer retained by the parent -- read its current value
+				return parent.lookup(id);
+			}
+		}
+
+		/** @return the value of mergeable id before its first write in this context, or null */
+		final Object mergeBaseOf (final int id) {
+			return mergeBases == null ? null : mergeBases.get(id);
+		}
+
+		/**
+		 * @return a context with the writes of a, then b, as if merged in that
+		 * order -- see Merge#combine. It reads through a's parent, and is neither
+		 * journaled nor logged: it is only to be merged, see TemporalActor#mergeTree
+		 */
+		static TemporalContext combine (final Temporal.Context a, final Temporal.Context b) {
+			assert a instanceof TemporalContext && b instanceof TemporalContext : "ERR-Only InMemory.TemporalContext supported";
+			final TemporalContext ours = (TemporalContext) a;
+			final TemporalContext theirs = (TemporalContext) b;
+			final TemporalContext combined;
+			if(ours.combined) {
+				combined = ours; // only referenced by the combining tree
+			} else {
+				combined = new TemporalContext(String.format("anon-combined-temporal-context-%d", System.nanoTime()));
+				combined.parent = ours.parent;
+				combined.combined = true;
+			}
+			combined.map.reserve(ours.map.size() + theirs.map.size());
+			Merge.combine(ours, theirs, combined);
+			if(ours.mergeBases != null || theirs.mergeBases != null) {
+				if(combined.mergeBases == null) {
+					combined.mergeBases = new IntTable();
+				}
+				for(final TemporalContext c : combined == ours ? new TemporalContext[]{ theirs } : new TemporalContext[]{ ours, theirs }) {
+					for(int i = 0; c.mergeBases != null && i < c.mergeBases.size(); i++) {
+						if(!combined.mergeBases.contains(c.mergeBases.idAt(i))) {
+							combined.mergeBases.put(c.mergeBases.idAt(i), c.mergeBases.valueAt(i), 0L);
+						}
+					}
+				}
+			}
+			return combined;
+		}
+
+		/** retain the version of id at position, before it is overwritten */
+		private void retain (final int id, final int position) {
+			if(history == null) {
+				history = new IntTable();
+			}
+			final long revision = map.revisionAt(position);
+			Versions versions = (Versions) history.get(id);
+			if(versions == null) {
+				versions = new Versions(retained);
+				history.put(id, versions, revision);
+			}
+			final int size = versions.size();
+			versions.push(revision, map.rawAt(position), map.bitsAt(position));
+			if(Metrics.enabled && versions.size() > size) {
+				Metrics.retained(this);
+			}
+		}
+
+		/**
+		 * Contexts are identified by their (unique) base revisions, including
+		 * those squashed by compaction of either timeline.
+		 * @return the revision at which this context's timeline forked from that
+		 * of the given context, or 0 if they share no ancestor
+		 */
+		final long forkedFrom (final TemporalContext ours) {
+			final Set<Long> timeline = new HashSet<>();
+			Temporal.Context root = ours;
+			for(; root instanceof TemporalContext; root = ((TemporalContext) root).parent) {
+				final TemporalContext c = (TemporalContext) root;
+				timeline.add(c.base);
+				for(int i = 0; c.squashed != null && i < c.squashed.length; i++) {
+					timeline.add(c.squashed[i]);
+				}
+			}
+			if(timeline.contains(base)) {
+				return Long.MAX_VALUE;
+			}
+			for(TemporalContext c = this; c.parent instanceof TemporalContext; c = (TemporalContext) c.parent) {
+				final TemporalContext parent = (TemporalContext) c.parent;
+				if(timeline.contains(parent.base)) {
+					return c.base;
+				}
+				for(int i = parent.squashed == null ? -1 : parent.squashed.length - 1; i >= 0; i--) {
+					if(timeline.contains(parent.squashed[i])) {
+						// forked from a squashed ancestor, at the base of its squashed branch (if any)
+						return i == parent.squashed.length - 1 ? c.base : parent.squashed[i + 1];
+					}
+				}
+			}
+			TemporalContext c = this;
+			while(c.parent instanceof TemporalContext) {
+				c = (TemporalContext) c.parent;
+			}
+			return c.parent != NilContext && c.parent == root ? c.base : 0L;
+		}
+
+		/** @return the values written in this context */
+		final Store store () {
+			return map;
+		}
+
+		/** @return the journal of this context if journaling in the given mode, or null */
+		final OpLog journaled (final Journal journal) {
+			return this.journal == journal ? operations : null;
+		}
+
+		@Override final public int[] modset () {
+			if(shared) {
+				synchronized (this) {
+					return map.ids();
+				}
+			}
+			return map.ids();
+		}
+
+		@Override final public int modsetSize () {
+			return map.size();
+		}
+
+		@Override final public int modsetAt (final int index) {
+			return map.idAt(index);
+		}
+
+		/** @return the journaled ops of this context -- empty if journal was never enabled */
+		@Override final public Op[] operations () {
+			if(shared) {
+				synchronized (this) {
+					return operations == null ? new Op[0] : operations.operations();
+				}
+			}
+			return operations == null ? new Op[0] : operations.operations();
+		}
+
+		@Override final public Temporal.Context parent () {
+			return parent;
+		}
+	}
+
+	/**
+	 * Temporal.Context backed by a persistent hash array mapped trie.
+	 *
+	 * Each context holds the complete (context-visible) view of its timeline,
+	 * structurally shared with its parent, so read is O(log32 n) regardless
+	 * of the depth of the timeline and branch is a pointer copy.
+	 *
+	 * REVU: unlike TemporalContext, a branch is a snapshot of its parent at
+	 * the point of branching, and does not see subsequent parent writes.
+	 */
+	public static class TrieContext implements Temporal.Context {
+
+		public static Temporal.Context newRootContext () {
+			final String name = String.format("anon-root-trie-context-%d", System.nanoTime());
+			return new TrieContext(name);
+		}
+
+		public static Temporal.Context newRootContext (final String name) {
+			return new TrieContext(name);
+		}
+
+		/** complete view of the timeline as of this context */
+		private IntTrie view;
+
+		/** values written in this context -- its keys are the modset */
+		private IntTrie local = IntTrie.EMPTY;
+
+		/** */
+		public final String name;
+
+		/** */
+		final Temporal.Context parent;
+
+		protected TrieContext (final String name) {
+			this(NilContext, IntTrie.EMPTY, name);
+		}
+
+		protected TrieContext (final TrieContext parent, final String name) {
+			this(parent, parent.view, name);
+		}
+
+		private TrieContext (final Temporal.Context parent, final IntTrie view, final String name) {
+			assert name != null : "name is null";
+			this.name = name;
+			this.parent = parent;
+			this.view = view;
+		}
+
+		@Override final public Temporal.Context branch () {
+			final String name = String.format("anon-child-trie-context-%d", System.currentTimeMillis());
+			return this.branch (name);
+		}
+
+		@Override final public Temporal.Context branch (final String name) {
+			return new TrieContext(this, name);
+		}
+
+		@Override final public Temporal.Context merge (Temporal.Context... contexts) {
+			final String name = String.format("anon-merged-trie-context-%d", System.nanoTime());
+			final Temporal.Context mergeContext = this.branch(name);
+			for(final Temporal.Context context : contexts) {
+				for(final int id : context.modset()) {
+					mergeContext.write(id, context.read(id));
+				}
+			}
+			return mergeContext;
+		}
+
+		@Override final public <T> void write (int id, T value) {
+			view = view.put(id, value);
+			local = local.put(id, value);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override final public <T> T read (int id) {
+			return (T) view.get(id);
+		}
+
+		@Override final public int[] modset () {
+			return local.keys();
+		}
+
+		/** not journaled */
+		@Override final public Op[] operations () {
+			return new Op[0];
+		}
+
+		@Override final public Temporal.Context parent () {
+			return parent;
+		}
+	}
+
+	/**
+	 * Thread-safe Temporal.Context for contexts shared by concurrent actors
+	 * (e.g. a parent read while its forked actors are still writing).
+	 *
+	 * Values are kept in a persistent trie published via an AtomicReference.
+	 * Reads are a volatile load and a trie lookup and never block; writes
+	 * path-copy and CAS the trie. Once writers contend (a CAS fails) the trie
+	 * is split into a fixed number of stripes, published via an
+	 * AtomicReferenceArray, so writers only contend with writers of the same
+	 * stripe -- contexts written by a single actor (e.g. branches and merge
+	 * contexts) never allocate stripes. Each trie (and thus modset membership)
+	 * is safely published with its values.
+	 */
+	public static class ConcurrentContext implements Temporal.Context {
+
+		public static Temporal.Context newRootContext () {
+			final String name = String.format("anon-root-concurrent-context-%d", System.nanoTime());
+			return new ConcurrentContext(name);
+		}
+
+		public static Temporal.Context newRootContext (final String name) {
+			return new ConcurrentContext(name);
+		}
+
+		/** */
+		private static final int STRIPE_BITS = stripeBits(Runtime.getRuntime().availableProcessors() * 4);
+
+		/** value of the trie once split into stripes -- compared by identity */
+		private static final IntTrie STRIPED = IntTrie.EMPTY.put(0, null);
+
+		/** values written in this context -- their keys are the modset. STRIPED once split into stripes */
+		private final AtomicReference<IntTrie> values = new AtomicReference<>(IntTrie.EMPTY);
+
+		/** values written in this context, by stripe -- null until writers contend */
+		private volatile AtomicReferenceArray<IntTrie> stripes;
+
+		/** */
+		public final String name;
+
+		/** */
+		final Temporal.Context parent;
+
+		protected ConcurrentContext (final String name) {
+			this(NilContext, name);
+		}
+
+		protected ConcurrentContext (final Temporal.Context parent, final String name) {
+			if(parent != NilContext) {
+				assert parent instanceof ConcurrentContext : "ERR-Only InMemory.ConcurrentContext supported";
+			}
+			assert name != null : "name is null";
+			this.name = name;
+			this.parent = parent;
+		}
+
+		@Override final public Temporal.Context branch () {
+			final String name = String.format("anon-child-concurrent-context-%d", System.currentTimeMillis());
+			return this.branch (name);
+		}
+
+		@Override final public Temporal.Context branch (final String name) {
+			return new ConcurrentContext(this, name);
+		}
+
+		@Override final public Temporal.Context merge (Temporal.Context... contexts) {
+			final String name = String.format("anon-merged-concurrent-context-%d", System.nanoTime());
+			final Temporal.Context mergeContext = this.branch(name);
+			for(final Temporal.Context context : contexts) {
+				for(final int id : context.modset()) {
+					mergeContext.write(id, context.read(id));
+				}
+			}
+			return mergeContext;
+		}
+
+		@Override final public <T> void write (int id, T value) {
+			for(;;) {
+				final IntTrie trie = values.get();
+				if(trie == STRIPED) {
+					break;
+				}
+				if(values.compareAndSet(trie, trie.put(id, value))) {
+					return;
+				}
+				stripe(values.get());
+			}
+			final AtomicReferenceArray<IntTrie> stripes = stripes();
+			final int stripe = stripe(id);
+			for(;;) {
+				final IntTrie values = stripes.get(stripe);
+				if(stripes.compareAndSet(stripe, values, values.put(id, value))) {
+					return;
+				}
+			}
+		}
+
+		@Override final public <T> T read (int id) {
+			ConcurrentContext context = this;
+			for(;;) {
+				@SuppressWarnings("unchecked")
+				final T value = (T) context.trieOf(id).get(id);
+				if(value != null || context.parent == NilContext) {
+					return value;
+				}
+				context = (ConcurrentContext) context.parent;
+			}
+		}
+
+		@Override final public int[] modset () {
+			final IntTrie trie = values.get();
+			if(trie != STRIPED) {
+				return trie.keys();
+			}
+			final AtomicReferenceArray<IntTrie> stripes = stripes();
+			final IntTrie[] snapshot = new IntTrie[stripes.length()];
+			int size = 0;
+			for(int i = 0; i < snapshot.length; i++) {
+				snapshot[i] = stripes.get(i);
+				size += snapshot[i].size();
+			}
+			final int[] ids = new int[size];
+			int offset = 0;
+			for(final IntTrie values : snapshot) {
+				final int[] keys = values.keys();
+				System.arraycopy(keys, 0, ids, offset, keys.length);
+				offset += keys.length;
+			}
+			return ids;
+		}
+
+		/** not journaled */
+		@Override final public Op[] operations () {
+			return new Op[0];
+		}
+
+		@Override final public Temporal.Context parent () {
+			return parent;
+		}
+
+		/** @return the trie holding id in this context */
+		private IntTrie trieOf (final int id) {
+			final IntTrie trie = values.get();
+			return trie != STRIPED ? trie : stripes().get(stripe(id));
+		}
+
+		/** split the (contended) trie into stripes -- a no-op if the trie has since changed */
+		private void stripe (final IntTrie trie) {
+			if(trie == STRIPED) {
+				return;
+			}
+			final AtomicReferenceArray<IntTrie> split = new AtomicReferenceArray<>(1 << STRIPE_BITS);
+			final IntTrie[] tries = new IntTrie[split.length()];
+			Arrays.fill(tries, IntTrie.EMPTY);
+			trie.forEach((id, value) -> tries[stripe(id)] = tries[stripe(id)].put(id, value));
+			for(int i = 0; i < tries.length; i++) {
+				split.set(i, tries[i]);
+			}
+			if(values.compareAndSet(trie, STRIPED)) {
+				stripes = split;
+			}
+		}
+
+		/** @return the stripes, once published by the splitting writer */
+		private AtomicReferenceArray<IntTrie> stripes () {
+			AtomicReferenceArray<IntTrie> stripes;
+			while((stripes = this.stripes) == null) {
+				Thread.yield();
+			}
+			return stripes;
+		}
+
+		/** top bits of the spread id -- tries index with the bottom bits */
+		private static int stripe (final int id) {
+			return IntTable.mix(id) >>> (32 - STRIPE_BITS);
+		}
+
+		private static int stripeBits (final int n) {
+			int bits = 1;
+			while((1 << bits) < n && bits < 10) {
+				bits++;
+			}
+			return bits;
+		}
+	}
+
+	/**
+	 * Immutable, flattened copy of the timeline of a TemporalContext as of
+	 * its freeze -- see TemporalContext#freeze().
+	 *
+	 * All state is final and written before the context is published, so it
+	 * can be shared with and read by any thread (e.g. request handlers that
+	 * are not Temporal.Actors) without synchronization. Values are packed in
+	 * pages indexed directly by id when the ids are dense (as TemporalReference
+	 * ids are), and by binary search of sorted ids otherwise.
+	 *
+	 * A frozen context is only built from another one and the writes of a
+	 * context (see with()): pages are copied on write, and all others shared
+	 * with the frozen context it is built from. REVU: sorted ids are not
+	 * shared, but copied.
+	 *
+	 * Writes fail -- branch to write.
+	 */
+	public static final class FrozenContext implements Temporal.Timeline {
+
+		/** */
+		private static final int PAGE_BITS = 10;
+
+		/** */
+		private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+		/** */
+		public final String name;
+
+		/** foreign (non TemporalContext) root of the frozen timeline, or NilContext */
+		private final Temporal.Context parent;
+
+		/** clock of the frozen context at its freeze -- see TemporalContext#image() */
+		final long clock;
+
+		/** frozen copy of the parent this copy was built over, or null */
+		final FrozenContext over;
+
+		/** number of values */
+		private final int size;
+
+		/** pages of values (null for vacant slots), indexed by id -- null if ids are sorted */
+		private final Object[][] pages;
+
+		/** pages of revisions of values */
+		private final long[][] revisionPages;
+
+		/** sorted ids -- null if values are paged */
+		private final int[] ids;
+
+		/** values of sorted ids -- deletes are frozen (as tombstones) only if there is a foreign root */
+		private final Object[] values;
+
+		/** revisions of values of sorted ids */
+		private final long[] revisions;
+
+		/** @return empty frozen context of the given root */
+		static FrozenContext empty (final String name, final Temporal.Context root) {
+			return new FrozenContext(name, root, 0L, null, 0, new Object[0][], new long[0][], null, null, null);
+		}
+
+		private FrozenContext (final String name, final Temporal.Context parent, final long clock, final FrozenContext over, final int size,
+				final Object[][] pages, final long[][] revisionPages, final int[] ids, final Object[] values, final long[] revisions)
+		{
+			this.name = name;
+			this.parent = parent;
+			this.clock = clock;
+			this.over = over;
+			this.size = size;
+			this.pages = pages;
+			this.revisionPages = revisionPages;
+			this.ids = ids;
+			this.values = values;
+			this.revisions = revisions;
+		}
+
+		/**
+		 * @return a frozen context with the writes of the given store of a
+		 * revision after since -- all if Long.MIN_VALUE -- over the values of
+		 * this context
+		 * @param over frozen copy of the parent of the context of the writes
+		 */
+		final FrozenContext with (final String name, final FrozenContext over, final Store writes, final long since, final long clock) {
+			int n = 0;
+			int max = -1;
+			boolean dense = pages != null;
+			for(int i = 0; i < writes.size(); i++) {
+				if(writes.rawAt(i) != null && writes.revisionAt(i) > since) {
+					n++;
+					max = Math.max(max, writes.idAt(i));
+					dense &= writes.idAt(i) >= 0;
+				}
+			}
+			if(n == 0) {
+				return new FrozenContext(name, parent, clock, over, size, pages, revisionPages, ids, values, revisions);
+			}
+			dense &= max < ((size + n) << 2) + (1 << PAGE_BITS) * 4;
+			return dense ? paged(name, over, writes, since, clock, max) : sorted(name, over, writes, since, clock, n);
+		}
+
+		/** @return this context, with the writes copied into (copies of) their pages */
+		private FrozenContext paged (final String name, final FrozenContext over, final Store writes, final long since, final long clock, final int max) {
+			final int directory = Math.max(pages.length, (max >>> PAGE_BITS) + 1);
+			final Object[][] pages = Arrays.copyOf(this.pages, directory);
+			final long[][] revisionPages = Arrays.copyOf(this.revisionPages, directory);
+			final boolean[] copied = new boolean[directory];
+			int size = this.size;
+			for(int i = 0; i < writes.size(); i++) {
+				if(writes.rawAt(i) == null || writes.revisionAt(i) <= since) {
+					continue;
+				}
+				final int id = writes.idAt(i);
+				final int p = id >>> PAGE_BITS;
+				if(!copied[p]) {
+					copied[p] = true;
+					pages[p] = pages[p] == null ? new Object[1 << PAGE_BITS] : pages[p].clone();
+					revisionPages[p] = revisionPages[p] == null ? new long[1 << PAGE_BITS] : revisionPages[p].clone();
+				}
+				final Object value = writes.valueAt(i);
+				final Object frozen = value == Store.TOMBSTONE && parent == NilContext ? null : value;
+				final Object prior = pages[p][id & PAGE_MASK];
+				size += (frozen != null ? 1 : 0) - (prior != null ? 1 : 0);
+				pages[p][id & PAGE_MASK] = frozen;
+				revisionPages[p][id & PAGE_MASK] = writes.revisionAt(i);
+			}
+			return new FrozenContext(name, parent, clock, over, size, pages, revisionPages, null, null, null);
+		}
+
+		/** @return this context, with the writes, copied into sorted ids */
+		private FrozenContext sorted (final String name, final FrozenContext over, final Store writes, final long since, final long clock, final int count) {
+			final IntTable merged = new IntTable(size + count);
+			for(final int id : modset()) {
+				final int position = position(id);
+				merged.add(id, valueAt(position), revisionAt(position));
+			}
+			for(int i = 0; i < writes.size(); i++) {
+				if(writes.rawAt(i) != null && writes.revisionAt(i) > since) {
+					merged.put(writes.idAt(i), writes.valueAt(i), writes.revisionAt(i));
+				}
+			}
+			final int[] all = merged.ids();
+			Arrays.sort(all);
+			int n = 0;
+			final int[] ids = new int[all.length];
+			final Object[] values = new Object[all.length];
+			final long[] revisions = new long[all.length];
+			for(final int id : all) {
+				final int position = merged.position(id);
+				if(merged.valueAt(position) != Store.TOMBSTONE || parent != NilContext) {
+					ids[n] = id;
+					values[n] = merged.valueAt(position);
+					revisions[n++] = merged.revisionAt(position);
+				}
+			}
+			return new FrozenContext(name, parent, clock, over, n, null, null, Arrays.copyOf(ids, n), Arrays.copyOf(values, n), Arrays.copyOf(revisions, n));
+		}
+
+		/** @return position of id -- its slot if paged -- or -1 if none */
+		private int position (final int id) {
+			if(pages != null) {
+				final int p = id >>> PAGE_BITS;
+				return id >= 0 && p < pages.length && pages[p] != null && pages[p][id & PAGE_MASK] != null ? id : -1;
+			}
+			final int position = Arrays.binarySearch(ids, id);
+			return position < 0 ? -1 : position;
+		}
+
+		/** @return value at position */
+		private Object valueAt (final int position) {
+			return pages != null ? pages[position >>> PAGE_BITS][position & PAGE_MASK] : values[position];
+		}
+
+		/** @return revision at position */
+		private long revisionAt (final int position) {
+			return pages != null ? revisionPages[position >>> PAGE_BITS][position & PAGE_MASK] : revisions[position];
+		}
+
+		@Override final public Temporal.Context branch () {
+			final String name = String.format("anon-child-temporal-context-%d", System.currentTimeMillis());
+			return this.branch(name);
+		}
+
+		@Override final public Temporal.Context branch (final String name) {
+			return new TemporalContext(this, name);
+		}
+
+		/** REVU: merges into a (TemporalContext) branch of this context, i.e. two levels down */
+		@Override final public Temporal.Context merge (final Temporal.Context... contexts) {
+			return branch().merge(contexts);
+		}
+
+		@Override final public <T> void write (final int id, final T value) {
+			throw new IllegalStateException(String.format("ERR-frozen context %s is read-only - branch to write", name));
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override final public <T> T read (final int id) {
+			final int position = position(id);
+			if(position >= 0) {
+				final Object value = valueAt(position);
+				return value == Store.TOMBSTONE ? null : (T) value;
+			}
+			return parent == NilContext ? null : parent.read(id);
+		}
+
+		@Override final public long revision (final int id) {
+			final int position = position(id);
+			if(position >= 0) {
+				return revisionAt(position);
+			}
+			return parent instanceof Temporal.Timeline ? ((Temporal.Timeline) parent).revision(id) : -1L;
+		}
+
+		/**
+		 * @throws IllegalStateException if id was written after the given revision --
+		 * prior versions are not frozen
+		 */
+		@SuppressWarnings("unchecked")
+		@Override final public <T> T read (final int id, final long revision) {
+			final int position = position(id);
+			if(position >= 0) {
+				if(revisionAt(position) > revision) {
+					final String err = String.format("ERR-revision %d of id %d not retained in frozen context %s", revision, id, name);
+					throw new IllegalStateException(err);
+				}
+				final Object value = valueAt(position);
+				return value == Store.TOMBSTONE ? null : (T) value;
+			}
+			return parent instanceof Temporal.Timeline ? ((Temporal.Timeline) parent).read(id, revision) : null;
+		}
+
+		/** @return ids of the values of this context */
+		@Override final public int[] modset () {
+			if(ids != null) {
+				return ids.clone();
+			}
+			final int[] modset = new int[size];
+			int j = 0;
+			for(int p = 0; p < pages.length; p++) {
+				final Object[] page = pages[p];
+				for(int i = 0; page != null && i < page.length; i++) {
+					if(page[i] != null) {
+						modset[j++] = (p << PAGE_BITS) | i;
+					}
+				}
+			}
+			return modset;
+		}
+
+		/** @return no ops -- operations are not frozen */
+		@Override final public Op[] operations () {
+			return new Op[0];
+		}
+
+		@Override final public Temporal.Context parent () {
+			return parent;
+		}
+	}
+
+	///////////////////////////////////////////////////////////////////////////
+	/// Temporal.Reference ////////////////////////////////////////////////////
+	///////////////////////////////////////////////////////////////////////////
+	public static class TemporalReference<T> implements Temporal.Reference<T> {
+
+		/** dense, collision free, identity of this reference */
+		private final int id;
+
+		public TemporalReference (final T initialValue) {
+			this.id = Identities.allocate(this);
+			set (context(), initialValue);
+		}
+
+		/** reattached to the values of an exported id -- see Identities#resolve */
+		TemporalReference (final Identities.Exported exported) {
+			this.id = exported.id;
+		}
+
+		@Override final public T get () {
+			return get (context());
+		}
+
+		@Override final public void set (T value) {
+			set (context(), value);
+		}
+
+		/** @return value of the write preceding the current (visible) write */
+		@Override final public T previousRevision () {
+			final Temporal.Context context = context();
+			if(context instanceof Temporal.Timeline) {
+				final Temporal.Timeline timeline = (Temporal.Timeline) context;
+				final long revision = timeline.revision (this.id());
+				return revision < 0 ? null : timeline.read (this.id(), revision - 1);
+			}
+			// REVU: not quite correct but good enough for non-timeline contexts
+			final Temporal.Context prevContext = context.parent();
+			final Temporal.Context ctx = prevContext == null ? context : prevContext;
+			return ctx.read (this.id());
+		}
+
+		/**
+		 * @return value visible in the given context -- e.g. of a loop over many
+		 * references that looks up the actor's context once, or of a FrozenContext
+		 * read by a thread that is not an actor
+		 */
+		public final T get (final Temporal.Context context) {
+			if(context instanceof TemporalContext) {
+				return ((TemporalContext) context).read (this.id());
+			}
+			return context.read (this.id());
+		}
+
+		/**
+		 * set the value in the given context -- see get(Temporal.Context). If ids
+		 * are recycled, null is written as a delete, so that it shadows a prior
+		 * owner's value of the id in ancestor contexts.
+		 */
+		public final void set (final Temporal.Context context, final T value) {
+			if(value == null && Identities.recycle) {
+				TemporalContext.delete (context, this.id());
+			} else if(context instanceof TemporalContext) {
+				((TemporalContext) context).write (this.id(), value);
+			} else {
+				context.write (this.id(), value);
+			}
+		}
+
+		/** delete the value -- see TemporalContext#delete(int) */
+		public final void delete () {
+			TemporalContext.delete (context(), this.id());
+		}
+
+		@Override final public T get (final long revision) {
+			final Temporal.Context context = context();
+			if(!(context instanceof Temporal.Timeline)) {
+				throw new RuntimeException("ERR-context does not retain revisions");
+			}
+			return ((Temporal.Timeline) context).read (this.id(), revision);
+		}
+
+		/** extension-point TODO: ADAMic Naming */
+		protected int id() {
+			return this.id;
+		}
+
+		protected static Temporal.Context context() {
+			return InMemory.TemporalContext.get();
+		}
+	}
+
+	/** TemporalReference with a merge function -- see Mergeable */
+	public static class MergeableReference<T> extends TemporalReference<T> implements Mergers.Owner {
+
+		/** held by the reference -- Mergers only holds the reference weakly */
+		private final Mergeable<T> merger;
+
+		public MergeableReference (final T initialValue, final Mergeable<T> merger) {
+			super(initialValue);
+			assert merger != null : "merger is null";
+			this.merger = merger;
+			Mergers.register(this.id(), this);
+		}
 
 		/**
-		 * @throws java.lang.AssertionError if current thread is not a Temporal.Actor
-		 * @return the Temporal.Context of the current (acting) Temporal.Actor
+		 * reattached to the values of an exported id -- see Identities#resolve.
+		 * REVU: merge functions are not encoded, so unless restored by the kind
+		 * (merger) the reattached reference merges last-writer-wins.
 		 */
-		public static Temporal.Context get() {
-			return TemporalActor.currentActor().getTemporalContext();
+		MergeableReference (final Identities.Exported exported, final Mergeable<T> merger) {
+			super(exported);
+			this.merger = merger;
+			if(merger != null) {
+				Mergers.register(this.id(), this);
+			}
 		}
 
-		public static Temporal.Context newRootContext () {
-			final String name = String.format("anon-root-temporal-context-%d", System.nanoTime());
-			return new TemporalContext(name);
+		@Override final public Mergeable<T> merger () {
+			return merger;
 		}
+	}
 
-		public static Temporal.Context newRootContext (final String name) {
-			return new TemporalContext(name);
+	/**
+	 * Grow-only set -- concurrently added elements are merged.
+	 * REVU: copy on write; sets are unmodifiable
+	 */
+	public static class GrowOnlySet<E> extends MergeableReference<Set<E>> {
+
+		public GrowOnlySet () {
+			super(Collections.<E>emptySet(), Mergeable.<E>union());
 		}
 
-		/** */
-		private final Map<Integer, Object> map = new HashMap<>();
+		/** reattached to the values of an exported id -- see Identities#resolve */
+		GrowOnlySet (final Identities.Exported exported) {
+			super(exported, Mergeable.<E>union());
+		}
 
-		/** */
-		private final Set<Temporal.Context.Op> operations = new HashSet<>();
+		public final void add (final E element) {
+			final Set<E> set = get();
+			if(!set.contains(element)) {
+				final Set<E> grown = new HashSet<>(set);
+				grown.add(element);
+				set(Collections.unmodifiableSet(grown));
+			}
+		}
 
-		/** */
-		private final Set<Integer> modSet = new HashSet<>();
+		public final boolean contains (final E element) {
+			return get().contains(element);
+		}
+	}
 
-		/** */
-		public final String name;
+	/** TemporalInt held unboxed in a TemporalContext */
+	public static class IntReference implements TemporalInt, Mergers.Owner {
 
-		/** */
-		final Temporal.Context parent;
+		/** dense, collision free, identity of this reference */
+		private final int id;
 
-		protected TemporalContext (final String name) {
-			this(NilContext, name);
+		/** null if none -- held by the reference, see Mergers */
+		private final Mergeable<Integer> merger;
+
+		/** @return identity of this reference */
+		final int id () {
+			return id;
 		}
 
-		protected TemporalContext (final Temporal.Context parent, final String name) {
-			if(parent != NilContext) {
-				assert parent instanceof TemporalContext : "ERR-Only InMemory.TemporalContext supported";
+		public IntReference (final int initialValue) {
+			this(initialValue, null);
+		}
+
+		/** e.g. Mergeable.intCounter -- or null if none */
+		public IntReference (final int initialValue, final Mergeable<Integer> merger) {
+			this.id = Identities.allocate(this);
+			this.merger = merger;
+			TemporalContext.write (TemporalReference.context(), id, Store.Lane.INT, initialValue);
+			if(merger != null) {
+				Mergers.register(id, this);
 			}
-			assert name != null : "name is null";
-			this.name = name;
-			this.parent = parent;
 		}
 
-		@Override final public Temporal.Context branch () {
-			final String name = String.format("anon-child-temporal-context-%d", System.currentTimeMillis());
-			return this.branch (name);
+		/** reattached to the values of an exported id, without a merge function -- see Identities#resolve */
+		IntReference (final Identities.Exported exported) {
+			this.id = exported.id;
+			this.merger = null;
 		}
 
-		@Override final public Temporal.Context branch (final String name) {
-			return new TemporalContext(this, name);
+		@Override final public Mergeable<Integer> merger () {
+			return merger;
 		}
 
-		// REVU: TODO: this needs to use Temporal.Context#operations() & check for merge conflicts
-		//
-		@Override final public Temporal.Context merge (Temporal.Context... contexts) {
-			final String name = String.format("anon-merged-temporal-context-%d", System.nanoTime());
-			final Temporal.Context mergeContext = this.branch(name);
-			for(final Temporal.Context context : contexts) {
-				for(final int id : context.modset()) {
-					mergeContext.write(id, context.read(id));
-				}
-			}
-			return mergeContext;
+		@Override final public int get () {
+			return (int) TemporalContext.read (TemporalReference.context(), id, Store.Lane.INT);
 		}
 
-		@Override final public <T> void write (int id, T value) {
-			map.put(id, value);
-			modSet.add(id);
+		/** @return value visible in the given context -- see TemporalReference#get(Temporal.Context) */
+		public final int get (final Temporal.Context context) {
+			return (int) TemporalContext.read (context, id, Store.Lane.INT);
 		}
 
-		@Override final public <T> T read (int id) {
-			@SuppressWarnings("unchecked")
-			T value = (T) map.get(id);
-			if(value == null && parent != NilContext) {
-				value = parent.read(id);
-			}
+		@Override final public void set (final int value) {
+			set (TemporalReference.context(), value);
+		}
+
+		/** set the value in the given context */
+		public final void set (final Temporal.Context context, final int value) {
+			TemporalContext.write (context, id, Store.Lane.INT, value);
+		}
+
+		@Override final public int add (final int delta) {
+			return add (TemporalReference.context(), delta);
+		}
+
+		/** add delta to the value in the given context */
+		public final int add (final Temporal.Context context, final int delta) {
+			final int value = (int) TemporalContext.read (context, id, Store.Lane.INT) + delta;
+			TemporalContext.write (context, id, Store.Lane.INT, value);
 			return value;
 		}
 
-		@Override final public int[] modset () {
-			final int[] ids = new int[modSet.size()];
-			final Object[] _ids = modSet.toArray();
-			for(int i = 0; i < ids.length; i++) {
-				ids[i] = ((Integer) _ids[i]);
+		@Override final public int increment () {
+			return add (1);
+		}
+
+		@Override final public int decrement () {
+			return add (-1);
+		}
+	}
+
+	/** TemporalLong held unboxed in a TemporalContext */
+	public static class LongReference implements TemporalLong, Mergers.Owner {
+
+		/** dense, collision free, identity of this reference */
+		private final int id;
+
+		/** null if none -- held by the reference, see Mergers */
+		private final Mergeable<Long> merger;
+
+		/** @return identity of this reference */
+		final int id () {
+			return id;
+		}
+
+		public LongReference (final long initialValue) {
+			this(initialValue, null);
+		}
+
+		/** e.g. Mergeable.longCounter -- or null if none */
+		public LongReference (final long initialValue, final Mergeable<Long> merger) {
+			this.id = Identities.allocate(this);
+			this.merger = merger;
+			TemporalContext.write (TemporalReference.context(), id, Store.Lane.LONG, initialValue);
+			if(merger != null) {
+				Mergers.register(id, this);
 			}
-			return ids;
 		}
 
-		@Override final public Op[] operations () {
-			throw new RuntimeException("Not implemented - TODO"); // TODO
+		/** reattached to the values of an exported id, without a merge function -- see Identities#resolve */
+		LongReference (final Identities.Exported exported) {
+			this.id = exported.id;
+			this.merger = null;
 		}
 
-		@Override final public Temporal.Context parent () {
-			return parent;
+		@Override final public Mergeable<Long> merger () {
+			return merger;
+		}
+
+		@Override final public long get () {
+			return TemporalContext.read (TemporalReference.context(), id, Store.Lane.LONG);
+		}
+
+		/** @return value visible in the given context -- see TemporalReference#get(Temporal.Context) */
+		public final long get (final Temporal.Context context) {
+			return TemporalContext.read (context, id, Store.Lane.LONG);
+		}
+
+		@Override final public void set (final long value) {
+			set (TemporalReference.context(), value);
+		}
+
+		/** set the value in the given context */
+		public final void set (final Temporal.Context context, final long value) {
+			TemporalContext.write (context, id, Store.Lane.LONG, value);
+		}
+
+		@Override final public long add (final long delta) {
+			return add (TemporalReference.context(), delta);
+		}
+
+		/** add delta to the value in the given context */
+		public final long add (final Temporal.Context context, final long delta) {
+			final long value = TemporalContext.read (context, id, Store.Lane.LONG) + delta;
+			TemporalContext.write (context, id, Store.Lane.LONG, value);
+			return value;
+		}
+
+		@Override final public long increment () {
+			return add (1L);
+		}
+
+		@Override final public long decrement () {
+			return add (-1L);
 		}
 	}
 
-	///////////////////////////////////////////////////////////////////////////
-	/// Temporal.Reference ////////////////////////////////////////////////////
-	///////////////////////////////////////////////////////////////////////////
-	public static class TemporalReference<T> implements Temporal.Reference<T> {
+	/** TemporalDouble held unboxed in a TemporalContext */
+	public static class DoubleReference implements TemporalDouble, Mergers.Owner {
 
-		public TemporalReference (final T initialValue) {
-			context().write (this.id(), initialValue);
+		/** dense, collision free, identity of this reference */
+		private final int id;
+
+		/** null if none -- held by the reference, see Mergers */
+		private final Mergeable<Double> merger;
+
+		/** @return identity of this reference */
+		final int id () {
+			return id;
 		}
 
-		@Override final public T get () {
-			return context().read (this.id());
+		public DoubleReference (final double initialValue) {
+			this(initialValue, null);
 		}
 
-		@Override final public void set (T value) {
-			context().write (this.id(), value);
+		/** e.g. Mergeable.doubleCounter -- or null if none */
+		public DoubleReference (final double initialValue, final Mergeable<Double> merger) {
+			this.id = Identities.allocate(this);
+			this.merger = merger;
+			set (initialValue);
+			if(merger != null) {
+				Mergers.register(id, this);
+			}
 		}
 
-		// REVU: not quite correct but good enough for POC
-		// TODO: it needs to walk the timeline and use the last Flow.Op.Code.write context
-		@Override final public T previousRevision () {
-			final Temporal.Context prevContext = context().parent();
-			final Temporal.Context ctx = prevContext == null ? context() : prevContext;
-			return ctx.read (this.id());
+		/** reattached to the values of an exported id, without a merge function -- see Identities#resolve */
+		DoubleReference (final Identities.Exported exported) {
+			this.id = exported.id;
+			this.merger = null;
 		}
 
-		/** extension-point TODO: ADAMic Naming */
-		protected int id() {
-			return this.hashCode();
+		@Override final public Mergeable<Double> merger () {
+			return merger;
 		}
 
-		protected static Temporal.Context context() {
-			return InMemory.TemporalContext.get();
+		@Override final public double get () {
+			return Double.longBitsToDouble (TemporalContext.read (TemporalReference.context(), id, Store.Lane.DOUBLE));
+		}
+
+		/** @return value visible in the given context -- see TemporalReference#get(Temporal.Context) */
+		public final double get (final Temporal.Context context) {
+			return Double.longBitsToDouble (TemporalContext.read (context, id, Store.Lane.DOUBLE));
+		}
+
+		@Override final public void set (final double value) {
+			set (TemporalReference.context(), value);
+		}
+
+		/** set the value in the given context */
+		public final void set (final Temporal.Context context, final double value) {
+			TemporalContext.write (context, id, Store.Lane.DOUBLE, Double.doubleToRawLongBits(value));
+		}
+
+		@Override final public double add (final double delta) {
+			return add (TemporalReference.context(), delta);
+		}
+
+		/** add delta to the value in the given context */
+		public final double add (final Temporal.Context context, final double delta) {
+			final double value = Double.longBitsToDouble (TemporalContext.read (context, id, Store.Lane.DOUBLE)) + delta;
+			TemporalContext.write (context, id, Store.Lane.DOUBLE, Double.doubleToRawLongBits(value));
+			return value;
 		}
 	}
 
@@ -195,16 +2198,22 @@ public interface InMemory {
 
 		private Temporal.Context temporalContext;
 
-		protected TemporalActor (final Temporal.Context temporalContext, final Runnable task) {
+		/** actor bound to this thread in its stead (e.g. a merge view) -- only accessed by this thread, see TaskActor#bind */
+		Temporal.Actor bound;
+
+		/** completed with the actor's context when its task completes -- see mergeTree */
+		private final CompletableFuture<Temporal.Context> done = new CompletableFuture<>();
+
+		public TemporalActor (final Temporal.Context temporalContext, final Runnable task) {
 			this(temporalContext, task, String.format("actor-anon-%d", System.currentTimeMillis()));
 		}
 
-		protected TemporalActor (final Temporal.Context temporalContext, final Runnable task, final String name) {
+		/** actor acting in the given context -- e.g. a TrieContext root */
+		public TemporalActor (final Temporal.Context temporalContext, final Runnable task, final String name) {
 			super(task, name);
 			assert temporalContext != null : "temporalContext is null";
-			assert temporalContext instanceof TemporalContext : "ERR-Only InMemory.TemporalContext supported";
 			assert task != null : "task is null";
-			this.temporalContext = (TemporalContext) temporalContext;
+			this.temporalContext = temporalContext;
 		}
 
 		public TemporalActor (final Runnable task, final String name) {
@@ -216,24 +2225,186 @@ public interface InMemory {
 			return String.format("actor: %s", getName());
 		}
 
+		@Override final public void run () {
+			try {
+				super.run();
+			} finally {
+				done.complete(temporalContext);
+			}
+		}
+
 		@Override final public Temporal.Actor fork (final Runnable task, final String name) {
 			return new InMemory.TemporalActor(this.temporalContext.branch(), task, name);
 		}
 
 		@Override final public void merge (Temporal.Actor... actors) {
+			this.temporalContext = merge(this.temporalContext, actors);
+		}
+
+		@Override final public void mergeTree (Temporal.Actor... actors) {
+			this.temporalContext = mergeTree(this.temporalContext, actors);
+		}
+
+		@Override final public void reconcile (Temporal.Actor... actors) throws Temporal.Context.Op.Exception {
+			this.temporalContext = reconcile(this.temporalContext, actors);
+		}
+
+		@Override final public void atomically (final Runnable task) {
+			atomically(this.temporalContext, task, context -> this.temporalContext = context);
+		}
+
+		/** attempts of Actor#atomically(Runnable) before it gives up */
+		static final int ATTEMPTS = 64;
+
+		/**
+		 * run the task in transactions of the given context, bound as the actor's
+		 * context, until one commits into it. If the given context is itself a
+		 * transaction (e.g. of an actor forked in a transaction of its parent's
+		 * context), the task is run in it, and it is committed into its parent.
+		 * @throws IllegalStateException if none commits in ATTEMPTS attempts
+		 */
+		static void atomically (final Temporal.Context temporalContext, final Runnable task, final Consumer<Temporal.Context> bind) {
+			assert temporalContext instanceof TemporalContext : "ERR-Only InMemory.TemporalContext supported";
+			assert task != null : "task is null";
+			Temporal.Context.Op.Exception conflict = null;
+			if(((TemporalContext) temporalContext).reads != null) {
+				for(int attempt = 0; attempt < ATTEMPTS; attempt++) {
+					task.run();
+					try {
+						((TemporalContext) temporalContext).commit();
+						return;
+					} catch (Temporal.Context.Op.Exception e) {
+						conflict = e;
+						Thread.yield();
+					}
+				}
+				throw new IllegalStateException(String.format("ERR-transaction aborted after %d conflicts", ATTEMPTS), conflict);
+			}
+			for(int attempt = 0; attempt < ATTEMPTS; attempt++) {
+				final TemporalContext transaction = ((TemporalContext) temporalContext).transaction(false);
+				bind.accept(transaction);
+				try {
+					task.run();
+					transaction.commit();
+					return;
+				} catch (Temporal.Context.Op.Exception e) {
+					conflict = e;
+					Thread.yield();
+				} finally {
+					bind.accept(temporalContext);
+				}
+			}
+			throw new IllegalStateException(String.format("ERR-transaction aborted after %d conflicts", ATTEMPTS), conflict);
+		}
+
+		/** join the actors and merge their contexts into the given context */
+		static Temporal.Context merge (final Temporal.Context temporalContext, final Temporal.Actor... actors) {
+			return temporalContext.merge(join(actors));
+		}
+
+		/**
+		 * merge the actors' contexts into the given context, pre-merged pairwise
+		 * in a tree: adjacent actors' contexts are combined on the common
+		 * fork-join pool as soon as both complete, and the combined contexts in
+		 * turn, so that the given context merges a single (combined) context.
+		 * The merge is last-writer-wins in the order of the actors, as merge(),
+		 * and fails as merge() does if a merge function fails.
+		 * <p>
+		 * A write is copied at most once per level of the tree, so this is more
+		 * work in total than merge(), for less after the last actor completes.
+		 * REVU: the combined contexts are discarded as they are combined, but
+		 * each actor retains its own context for as long as it is reachable.
+		 */
+		static Temporal.Context mergeTree (final Temporal.Context temporalContext, final Temporal.Actor... actors) {
+			if(actors.length < 2) {
+				return merge(temporalContext, actors);
+			}
+			List<CompletableFuture<Temporal.Context>> level = new ArrayList<>(actors.length);
+			for(final Temporal.Actor actor : actors) {
+				level.add(completion(actor));
+			}
+			while(level.size() > 1) {
+				final List<CompletableFuture<Temporal.Context>> next = new ArrayList<>((level.size() + 1) >>> 1);
+				for(int i = 0; i < level.size(); i += 2) {
+					next.add(i + 1 < level.size()
+							? level.get(i).thenCombineAsync(level.get(i + 1), TemporalContext::combine, ForkJoinPool.commonPool())
+							: level.get(i));
+				}
+				level = next;
+			}
+			final Temporal.Context combined;
+			try {
+				combined = level.get(0).join();
+			} catch (CompletionException e) {
+				if(e.getCause() instanceof Mergeable.Conflict) {
+					throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+				}
+				throw e;
+			}
+			return temporalContext.merge(combined);
+		}
+
+		/** @return future of the actor's context on completion of its task */
+		private static CompletableFuture<Temporal.Context> completion (final Temporal.Actor actor) {
+			if(actor instanceof TemporalActor) {
+				return ((TemporalActor) actor).done;
+			}
+			if(actor instanceof TaskActor) {
+				return ((TaskActor) actor).done;
+			}
+			return CompletableFuture.supplyAsync(() -> {
+				final Joined joined = new Joined(actor);
+				try {
+					ForkJoinPool.managedBlock(joined);
+				} catch (InterruptedException e) {
+					throw new RuntimeException("", e);
+				}
+				return joined.context;
+			}, ForkJoinPool.commonPool());
+		}
+
+		/**
+		 * join of a foreign actor on a common pool thread, as a managed block:
+		 * the pool may add a thread while it blocks, so that combines still run
+		 * -- see completion
+		 */
+		private static final class Joined implements ForkJoinPool.ManagedBlocker {
+			private final Temporal.Actor actor;
+			private volatile Temporal.Context context;
+
+			Joined (final Temporal.Actor actor) {
+				this.actor = actor;
+			}
+
+			@Override final public boolean block () throws InterruptedException {
+				actor.join();
+				context = actor.getTemporalContext();
+				return true;
+			}
+
+			@Override final public boolean isReleasable () {
+				return context != null;
+			}
+		}
+
+		/** join the actors and reconcile their contexts with the given context */
+		static Temporal.Context reconcile (final Temporal.Context temporalContext, final Temporal.Actor... actors)
+				throws Temporal.Context.Op.Exception
+		{
+			assert temporalContext instanceof TemporalContext : "ERR-Only InMemory.TemporalContext supported";
+			return ((TemporalContext) temporalContext).reconcile(join(actors));
+		}
+
+		/** join the actors and gather their contexts */
+		private static Temporal.Context[] join (final Temporal.Actor... actors) {
 			try {
-				// gather contexts
 				final Temporal.Context[] contexts = new Temporal.Context[actors.length];
 				int i = 0;
 				for (final Temporal.Actor actor : actors) {
-					assert actor instanceof InMemory.TemporalActor : "ERR- only InMemory.TemporalActors supported";
-					final InMemory.TemporalActor _actor = (TemporalActor) actor;
-					_actor.join();
+					actor.join();
 					contexts [i++] = actor.getTemporalContext();
 				}
-
-				// merge them
-				this.temporalContext = this.temporalContext.merge(contexts);
+				return contexts;
 			} catch (InterruptedException e) {
 				e.printStackTrace();
 				throw new RuntimeException("", e);
@@ -241,8 +2412,11 @@ public interface InMemory {
 		}
 
 		@Override final public void goBackInTime() {
-			// TODO: guard against null parent
-			this.temporalContext = this.temporalContext.parent();
+			final Temporal.Context parent = this.temporalContext.parent();
+			if(parent == null || parent == NilContext) {
+				throw new IllegalStateException("ERR-no prior context in timeline");
+			}
+			this.temporalContext = parent;
 		}
 		@Override final public Temporal.Context getTemporalContext () {
 			return temporalContext;
@@ -254,8 +2428,147 @@ public interface InMemory {
 		 */
 		public static Temporal.Actor currentActor () {
 			final Thread currentThread = Thread.currentThread();
+			if(currentThread instanceof TemporalActor) {
+				final Temporal.Actor bound = ((TemporalActor) currentThread).bound;
+				return bound != null ? bound : (TemporalActor) currentThread;
+			}
+			final Temporal.Actor bound = TaskActor.binding.get();
+			if(bound != null) {
+				return bound;
+			}
 			assert currentThread instanceof Temporal.Actor : "ERR-current thread is not a Temporal.Actor";
 			return (Temporal.Actor) currentThread;
 		}
 	}
+
+	/**
+	 * Temporal.Actor that runs its task on a supplied Executor (e.g. a thread
+	 * pool, or a virtual thread per task executor) and not on a Thread of its
+	 * own. The actor is bound to the executing thread for the duration of its
+	 * task, so TemporalContext.get() and currentActor() resolve as they do for
+	 * a TemporalActor.
+	 *
+	 * REVU: merge blocks the merging task until the merged actors complete. A
+	 * bounded executor can deadlock if all its threads are merging.
+	 */
+	public static class TaskActor implements Temporal.Actor {
+
+		/** actor bound to the current (executing) thread, if any -- except TemporalActor threads, see bind() */
+		private static final ThreadLocal<Temporal.Actor> binding = new ThreadLocal<>();
+
+		/**
+		 * bind the actor to the current thread -- in a field of the thread if a
+		 * TemporalActor, so that its context lookups avoid the ThreadLocal
+		 * @return the prior binding, to restore with unbind()
+		 */
+		static Temporal.Actor bind (final Temporal.Actor actor) {
+			final Thread thread = Thread.currentThread();
+			if(thread instanceof TemporalActor) {
+				final Temporal.Actor outer = ((TemporalActor) thread).bound;
+				((TemporalActor) thread).bound = actor;
+				return outer;
+			}
+			final Temporal.Actor outer = binding.get();
+			binding.set(actor);
+			return outer;
+		}
+
+		/** restore the binding prior to bind() */
+		static void unbind (final Temporal.Actor outer) {
+			final Thread thread = Thread.currentThread();
+			if(thread instanceof TemporalActor) {
+				((TemporalActor) thread).bound = outer;
+			} else if(outer == null) {
+				binding.remove();
+			} else {
+				binding.set(outer);
+			}
+		}
+
+		/** */
+		private final Executor executor;
+
+		/** */
+		private final Runnable task;
+
+		/** */
+		private final String name;
+
+		/** completed with the actor's context when its task completes */
+		private final CompletableFuture<Temporal.Context> done = new CompletableFuture<>();
+
+		/** */
+		private volatile Temporal.Context temporalContext;
+
+		public TaskActor (final Executor executor, final Runnable task, final String name) {
+			this(executor, InMemory.TemporalContext.newRootContext(), task, name);
+		}
+
+		public TaskActor (final Executor executor, final Temporal.Context temporalContext, final Runnable task, final String name) {
+			assert executor != null : "executor is null";
+			assert temporalContext != null : "temporalContext is null";
+			assert task != null : "task is null";
+			assert name != null : "name is null";
+			this.executor = executor;
+			this.temporalContext = temporalContext;
+			this.task = task;
+			this.name = name;
+		}
+
+		@Override final public String toString () {
+			return String.format("actor: %s", name);
+		}
+
+		@Override final public Temporal.Actor fork (final Runnable task, final String name) {
+			return new InMemory.TaskActor(executor, this.temporalContext.branch(), task, name);
+		}
+
+		@Override final public void merge (Temporal.Actor... actors) {
+			this.temporalContext = TemporalActor.merge(this.temporalContext, actors);
+		}
+
+		@Override final public void mergeTree (Temporal.Actor... actors) {
+			this.temporalContext = TemporalActor.mergeTree(this.temporalContext, actors);
+		}
+
+		@Override final public void reconcile (Temporal.Actor... actors) throws Temporal.Context.Op.Exception {
+			this.temporalContext = TemporalActor.reconcile(this.temporalContext, actors);
+		}
+
+		@Override final public void atomically (final Runnable task) {
+			TemporalActor.atomically(this.temporalContext, task, context -> this.temporalContext = context);
+		}
+
+		@Override final public Temporal.Context getTemporalContext () {
+			return temporalContext;
+		}
+
+		@Override final public void start () {
+			executor.execute(() -> {
+				final Temporal.Actor outer = bind(this);
+				try {
+					task.run();
+				} finally {
+					unbind(outer);
+					done.complete(temporalContext);
+				}
+			});
+		}
+
+		@Override final public void join () throws InterruptedException {
+			try {
+				done.get();
+			} catch (ExecutionException e) {
+				throw new RuntimeException("BUG", e);
+			}
+		}
+
+		@Override final public void goBackInTime() {
+			final Temporal.Context parent = this.temporalContext.parent();
+			if(parent == null || parent == NilContext) {
+				throw new IllegalStateException("ERR-no prior context in timeline");
+			}
+			this.temporalContext = parent;
+		}
+	}
 }
@@ -0,0 +1,87 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+/**
+ * Primitive int keyed, open-addressing (linear probe) store of Objects.
+ *
+ * The hash index {@link #slots} only holds (1 + position) into the dense
+ * arrays of the Store, 0 marking a free slot. Suitable for sparse ids,
+ * e.g. identity hashes.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/18/14
+ */
+final class IntTable extends Store {
+
+	/** hash index: 1 + position of entry in dense arrays; 0 is free */
+	private int[] slots;
+
+	IntTable () {
+		this(MIN_CAPACITY);
+	}
+
+	IntTable (final int expected) {
+		super(expected);
+		this.slots = new int[ids.length << 1];
+	}
+
+	@Override final int position (final int id) {
+		final int mask = slots.length - 1;
+		for(int i = mix(id) & mask; ; i = (i + 1) & mask) {
+			final int slot = slots[i];
+			if(slot == 0) {
+				return -1;
+			}
+			if(ids[slot - 1] == id) {
+				return slot - 1;
+			}
+		}
+	}
+
+	@Override final void index (final int id, final int position) {
+		final int mask = slots.length - 1;
+		int i = mix(id) & mask;
+		while(slots[i] != 0) {
+			i = (i + 1) & mask;
+		}
+		slots[i] = position + 1;
+	}
+
+	@Override final void grown (final int capacity) {
+		slots = new int[capacity << 1];
+		for(int position = 0; position < size; position++) {
+			index(ids[position], position);
+		}
+	}
+
+	/** murmur3 finalizer - identity hashes and dense ids both need spreading */
+	static int mix (int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
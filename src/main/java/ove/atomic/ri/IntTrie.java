@@ -0,0 +1,201 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+/**
+ * Persistent (immutable) hash array mapped trie of int keys to Objects.
+ *
+ * Updates path-copy at most 7 nodes and share everything else with the
+ * prior version, so a trie can be handed to any number of contexts or
+ * threads without copying or synchronization.
+ *
+ * Keys are spread with {@link IntTable#mix(int)}, which is a bijection on
+ * int, so two distinct keys never share a full hash and the trie needs no
+ * collision nodes.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/18/14
+ */
+final class IntTrie {
+
+	/** */
+	static final IntTrie EMPTY = new IntTrie(new Node(0, new Object[0]), 0);
+
+	/** */
+	private static final int BITS = 5;
+
+	/** */
+	private static final int MASK = (1 << BITS) - 1;
+
+	/** */
+	private final Node root;
+
+	/** */
+	private final int size;
+
+	private IntTrie (final Node root, final int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	/** @return number of entries */
+	final int size () {
+		return size;
+	}
+
+	/** @return value mapped to key, or null if none */
+	final Object get (final int key) {
+		final Leaf leaf = root.find(IntTable.mix(key), 0);
+		return leaf == null ? null : leaf.value;
+	}
+
+	/** @return true if trie has an entry for key (regardless of its value) */
+	final boolean contains (final int key) {
+		return root.find(IntTable.mix(key), 0) != null;
+	}
+
+	/** @return a new trie with key mapped to value -- this trie is unchanged */
+	final IntTrie put (final int key, final Object value) {
+		final int hash = IntTable.mix(key);
+		final boolean added = root.find(hash, 0) == null;
+		return new IntTrie(root.put(hash, 0, new Leaf(hash, key, value)), added ? size + 1 : size);
+	}
+
+	/** @return the keys of this trie, in trie (not insertion) order */
+	final int[] keys () {
+		final int[] keys = new int[size];
+		root.keys(keys, 0);
+		return keys;
+	}
+
+	/** visits each entry of this trie, in trie order */
+	final void forEach (final Visitor visitor) {
+		root.forEach(visitor);
+	}
+
+	// ------------------------------------------------------------------
+	// IntTrie.Visitor
+	// ------------------------------------------------------------------
+	/** */
+	interface Visitor {
+		/** */
+		void visit (int key, Object value);
+	}
+
+	// ------------------------------------------------------------------
+	// IntTrie nodes
+	// ------------------------------------------------------------------
+	/** */
+	private static final class Leaf {
+		final int hash;
+		final int key;
+		final Object value;
+		Leaf (final int hash, final int key, final Object value) {
+			this.hash = hash;
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	/** bitmap indexed node - array elements are either Leaf or Node */
+	private static final class Node {
+		final int bitmap;
+		final Object[] array;
+		Node (final int bitmap, final Object[] array) {
+			this.bitmap = bitmap;
+			this.array = array;
+		}
+
+		final Leaf find (final int hash, final int shift) {
+			Node node = this;
+			for(int s = shift; ; s += BITS) {
+				final int bit = 1 << ((hash >>> s) & MASK);
+				if((node.bitmap & bit) == 0) {
+					return null;
+				}
+				final Object e = node.array[Integer.bitCount(node.bitmap & (bit - 1))];
+				if(e instanceof Leaf) {
+					final Leaf leaf = (Leaf) e;
+					return leaf.hash == hash ? leaf : null;
+				}
+				node = (Node) e;
+			}
+		}
+
+		final Node put (final int hash, final int shift, final Leaf leaf) {
+			final int bit = 1 << ((hash >>> shift) & MASK);
+			final int idx = Integer.bitCount(bitmap & (bit - 1));
+			if((bitmap & bit) == 0) {
+				final Object[] copy = new Object[array.length + 1];
+				System.arraycopy(array, 0, copy, 0, idx);
+				copy[idx] = leaf;
+				System.arraycopy(array, idx, copy, idx + 1, array.length - idx);
+				return new Node(bitmap | bit, copy);
+			}
+			final Object e = array[idx];
+			final Object replacement;
+			if(e instanceof Node) {
+				replacement = ((Node) e).put(hash, shift + BITS, leaf);
+			} else if(((Leaf) e).hash == hash) {
+				replacement = leaf;
+			} else {
+				replacement = pair((Leaf) e, leaf, shift + BITS);
+			}
+			final Object[] copy = array.clone();
+			copy[idx] = replacement;
+			return new Node(bitmap, copy);
+		}
+
+		private static Node pair (final Leaf a, final Leaf b, final int shift) {
+			final int ia = (a.hash >>> shift) & MASK;
+			final int ib = (b.hash >>> shift) & MASK;
+			if(ia == ib) {
+				return new Node(1 << ia, new Object[]{ pair(a, b, shift + BITS) });
+			}
+			return ia < ib
+					? new Node((1 << ia) | (1 << ib), new Object[]{ a, b })
+					: new Node((1 << ia) | (1 << ib), new Object[]{ b, a });
+		}
+
+		final int keys (final int[] keys, int offset) {
+			for(final Object e : array) {
+				if(e instanceof Leaf) {
+					keys[offset++] = ((Leaf) e).key;
+				} else {
+					offset = ((Node) e).keys(keys, offset);
+				}
+			}
+			return offset;
+		}
+
+		final void forEach (final Visitor visitor) {
+			for(final Object e : array) {
+				if(e instanceof Leaf) {
+					visitor.visit(((Leaf) e).key, ((Leaf) e).value);
+				} else {
+					((Node) e).forEach(visitor);
+				}
+			}
+		}
+	}
+}
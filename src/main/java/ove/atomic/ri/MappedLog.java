@@ -0,0 +1,691 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.atomic.Temporal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static ove.atomic.ri.InMemory.NilContext;
+
+/**
+ * Memory-mapped, segmented, append-only log of the root, branch, write, and
+ * merge ops of durable InMemory.TemporalContexts, for crash recovery and
+ * fast restart.
+ * <p>
+ * Appending a record is a copy into the mapped segment. Segments are forced
+ * to disk by a background thread at most every sync interval (group commit),
+ * or on {@link #sync()}, so the cost of an fsync is amortized over all
+ * records appended in the interval.
+ * <p>
+ * Once a number of segments has been filled, the background thread folds the
+ * latest checkpoint and the filled segments into a new checkpoint (without
+ * decoding values) and deletes them, bounding the replay time on recovery.
+ * <p>
+ * Records are <code>[int length][int crc32][byte type][payload]</code>; a
+ * zero length ends a segment. A torn (bad crc) record ends its segment: on
+ * recovery its tail is zeroed, so that the segments appended after a restart
+ * are replayed on the next.
+ * <p>
+ * Ids (of written references, and of the references encoded in values) are
+ * those of the process that appended them: each segment and checkpoint starts
+ * with the epoch of its ids (see Identities). On recovery the ids of another
+ * epoch are imported -- replayed as new ids of this process -- and the
+ * recovered state is rewritten as a checkpoint of this epoch before any new
+ * record is appended. The root references of the recovered values are found
+ * by name: see name(String, Object) and reference(String).
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/25/14
+ */
+public final class MappedLog implements AutoCloseable {
+
+	/** record types */
+	private static final byte ROOT = 1;
+	private static final byte BRANCH = 2;
+	private static final byte WRITE = 3;
+	private static final byte MERGE = 4;
+	private static final byte EPOCH = 5;
+	private static final byte NAME = 6;
+
+	/** encoded value lengths of null and deleted values */
+	private static final int NULL = -1;
+	private static final int DELETED = -2;
+
+	/** record header: length and crc */
+	private static final int HEADER = 8;
+
+	/** */
+	private static final String SEGMENT = "segment-%016d.log";
+
+	/** */
+	private static final String CHECKPOINT = "checkpoint-%016d.ckp";
+
+	/** */
+	private final File dir;
+
+	/** */
+	private final Codec codec;
+
+	/** */
+	private final int segmentSize;
+
+	/** */
+	private final int checkpointSegments;
+
+	/** current segment */
+	private MappedByteBuffer segment;
+
+	/** sequence number of current segment */
+	private long segmentSeq;
+
+	/** sequence number of the first segment not in the latest checkpoint */
+	private volatile long checkpointSeq;
+
+	/** position of the record being appended in the current segment */
+	private int start;
+
+	/** appended since last sync */
+	private boolean dirty;
+
+	/** serializes checkpoints -- appending is not blocked by a checkpoint */
+	private final Object checkpointing = new Object();
+
+	/** */
+	private long keys;
+
+	/** recovered contexts, by key */
+	private final Map<Long, InMemory.TemporalContext> recovered = new HashMap<>();
+
+	/** recovered contexts, latest by name */
+	private final Map<String, InMemory.TemporalContext> named = new HashMap<>();
+
+	/** named references, by name -- see name(String, Object) */
+	private final Map<String, Identities.Exported> references = new HashMap<>();
+
+	/** group commit and checkpoint thread */
+	private final ScheduledExecutorService syncer;
+
+	/** of appended records */
+	private final CRC32 crc = new CRC32();
+
+	/** open (and recover) the log in dir with 64MB segments, a 10ms sync interval, checkpointing every 4 segments */
+	public static MappedLog open (final File dir, final Codec codec) {
+		return new MappedLog(dir, codec, 64 << 20, 10, 4);
+	}
+
+	public MappedLog (final File dir, final Codec codec, final int segmentSize, final long syncMillis, final int checkpointSegments) {
+		assert dir != null : "dir is null";
+		assert codec != null : "codec is null";
+		assert segmentSize > HEADER : "segmentSize too small";
+		assert checkpointSegments > 0 : "checkpointSegments must be positive";
+		this.dir = dir;
+		this.codec = codec;
+		this.segmentSize = segmentSize;
+		this.checkpointSegments = checkpointSegments;
+		if(!dir.isDirectory() && !dir.mkdirs()) {
+			throw new RuntimeException(String.format("ERR-can not create log dir %s", dir));
+		}
+		recover();
+		roll();
+		this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread thread = new Thread(r, String.format("mapped-log-sync-%s", dir.getName()));
+			thread.setDaemon(true);
+			return thread;
+		});
+		syncer.scheduleWithFixedDelay(this::sync, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+	}
+
+	// ------------------------------------------------------------------
+	// contexts
+	// ------------------------------------------------------------------
+
+	/** @return a new durable root context -- its branches are durable */
+	public Temporal.Context newRootContext (final String name) {
+		final InMemory.TemporalContext context = new InMemory.TemporalContext(NilContext, name, InMemory.Storage.hashed);
+		context.attach(this, root(name));
+		return context;
+	}
+
+	/** @return the latest recovered context of the given name, or null if none */
+	public Temporal.Context context (final String name) {
+		return named.get(name);
+	}
+
+	// ------------------------------------------------------------------
+	// references
+	// ------------------------------------------------------------------
+
+	/**
+	 * name an InMemory reference -- e.g. the root of a structure written to the
+	 * durable contexts of this log -- so that it can be found after a restart
+	 * @throws IllegalArgumentException if reference is not an InMemory reference
+	 */
+	public void name (final String name, final Object reference) {
+		assert name != null : "name is null";
+		final int id = Identities.idOf(reference);
+		if(id < 0) {
+			throw new IllegalArgumentException("ERR-not an InMemory reference");
+		}
+		final byte kind = Identities.kindOf(reference);
+		Identities.export(reference, id);
+		final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		synchronized (this) {
+			final ByteBuffer record = begin(NAME, 13 + bytes.length);
+			record.putLong(id).put(kind).putInt(bytes.length).put(bytes);
+			end(record);
+			references.put(name, new Identities.Exported(id, kind));
+		}
+	}
+
+	/**
+	 * @return the reference named (see name(String, Object)) before or since
+	 * recovery, or null if none -- after a restart, a reference of the same
+	 * kind reattached to the recovered values of its (imported) id
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <R> R reference (final String name) {
+		final Identities.Exported exported = references.get(name);
+		return exported == null ? null : (R) Identities.resolve(exported.id, exported.kind);
+	}
+
+	// ------------------------------------------------------------------
+	// appending (per op)
+	// ------------------------------------------------------------------
+
+	final synchronized long root (final String name) {
+		final long key = ++keys;
+		final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		final ByteBuffer record = begin(ROOT, 12 + bytes.length);
+		record.putLong(key).putInt(bytes.length).put(bytes);
+		end(record);
+		return key;
+	}
+
+	final synchronized long branch (final long parent, final String name) {
+		final long key = ++keys;
+		final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		final ByteBuffer record = begin(BRANCH, 20 + bytes.length);
+		record.putLong(key).putLong(parent).putInt(bytes.length).put(bytes);
+		end(record);
+		return key;
+	}
+
+	final void write (final long key, final int id, final long revision, final Object value) {
+		final byte[] bytes = value == null || value == Store.TOMBSTONE ? null : codec.encode(value);
+		synchronized (this) {
+			final ByteBuffer record = begin(WRITE, 24 + (bytes == null ? 0 : bytes.length));
+			record.putLong(key).putInt(id).putLong(revision);
+			if(bytes == null) {
+				record.putInt(value == null ? NULL : DELETED);
+			} else {
+				record.putInt(bytes.length).put(bytes);
+			}
+			end(record);
+		}
+	}
+
+	final synchronized void merge (final long key) {
+		final ByteBuffer record = begin(MERGE, 8);
+		record.putLong(key);
+		end(record);
+	}
+
+	/** @return the segment, positioned at the payload of a new record */
+	private ByteBuffer begin (final byte type, final int payload) {
+		final int length = 1 + payload;
+		if(HEADER + length > segmentSize) {
+			throw new IllegalArgumentException(String.format("ERR-record of %d bytes exceeds segment size", length));
+		}
+		if(segment.remaining() < HEADER + length) {
+			if(segment.remaining() >= 4) {
+				segment.putInt(0);
+			}
+			segment.force();
+			roll();
+			if(segmentSeq - checkpointSeq > checkpointSegments) {
+				final long upTo = segmentSeq;
+				syncer.execute(() -> checkpoint(upTo));
+			}
+		}
+		start = segment.position();
+		segment.position(start + HEADER);
+		segment.put(type);
+		return segment;
+	}
+
+	/** write the header of the record ending at the current position */
+	private void end (final ByteBuffer record) {
+		final int end = record.position();
+		final ByteBuffer payload = record.duplicate();
+		payload.position(start + HEADER).limit(end);
+		crc.reset();
+		crc.update(payload);
+		record.putInt(start, end - start - HEADER);
+		record.putInt(start + 4, (int) crc.getValue());
+		dirty = true;
+	}
+
+	/** map the next segment, and start it with the epoch of its ids */
+	private void roll () {
+		segmentSeq++;
+		segment = map(file(SEGMENT, segmentSeq), segmentSize);
+		final ByteBuffer record = begin(EPOCH, 8);
+		record.putLong(Identities.epoch);
+		end(record);
+	}
+
+	// ------------------------------------------------------------------
+	// durability
+	// ------------------------------------------------------------------
+
+	/** force appended records to disk */
+	public void sync () {
+		final MappedByteBuffer current;
+		synchronized (this) {
+			if(!dirty) {
+				return;
+			}
+			dirty = false;
+			current = segment;
+		}
+		current.force();
+	}
+
+	/** fold the latest checkpoint and all filled segments into a new checkpoint */
+	public void checkpoint () {
+		final long upTo;
+		synchronized (this) {
+			if(segment.position() > 0) {
+				segment.putInt(0);
+				segment.force();
+				roll();
+			}
+			upTo = segmentSeq;
+		}
+		checkpoint(upTo);
+	}
+
+	@Override public void close () {
+		syncer.shutdown();
+		try {
+			syncer.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			segment.force();
+		}
+	}
+
+	/** checkpoint segments before upTo */
+	private void checkpoint (final long upTo) {
+		synchronized (checkpointing) {
+			if(upTo <= checkpointSeq) {
+				return;
+			}
+			final Folder folder = new Folder();
+			final File previous = file(CHECKPOINT, checkpointSeq);
+			if(previous.exists()) {
+				scan(previous, folder, new CRC32());
+			}
+			for(long seq = checkpointSeq; seq < upTo; seq++) {
+				final File file = file(SEGMENT, seq);
+				if(file.exists()) {
+					scan(file, folder, new CRC32());
+				}
+			}
+			final File tmp = new File(dir, String.format(CHECKPOINT, upTo) + ".tmp");
+			try (final RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+				final FileChannel channel = out.getChannel();
+				channel.write(sealed(new CRC32(), record(EPOCH, 8).putLong(Identities.epoch)));
+				for(final byte[] name : folder.names.values()) {
+					channel.write(ByteBuffer.wrap(name));
+				}
+				for(final Folder.Context c : folder.contexts.values()) {
+					channel.write(ByteBuffer.wrap(c.record));
+					for(int i = 0; i < c.writes.size(); i++) {
+						channel.write(ByteBuffer.wrap((byte[]) c.writes.valueAt(i)));
+					}
+				}
+				channel.write(ByteBuffer.allocate(4));
+				channel.force(true);
+			} catch (IOException e) {
+				throw new RuntimeException("ERR-checkpoint", e);
+			}
+			if(!tmp.renameTo(file(CHECKPOINT, upTo))) {
+				throw new RuntimeException("ERR-checkpoint rename");
+			}
+			previous.delete();
+			for(long seq = checkpointSeq; seq < upTo; seq++) {
+				file(SEGMENT, seq).delete();
+			}
+			checkpointSeq = upTo;
+		}
+	}
+
+	// ------------------------------------------------------------------
+	// recovery
+	// ------------------------------------------------------------------
+
+	private void recover () {
+		long checkpoint = 0;
+		long last = 0;
+		final String[] names = dir.list();
+		for(final String name : names == null ? new String[0] : names) {
+			if(name.startsWith("checkpoint-") && name.endsWith(".ckp")) {
+				checkpoint = Math.max(checkpoint, seq(name));
+			} else if(name.startsWith("segment-")) {
+				last = Math.max(last, seq(name));
+			}
+		}
+		this.checkpointSeq = checkpoint;
+		final Replayer replayer = new Replayer();
+		final File ckp = file(CHECKPOINT, checkpoint);
+		if(ckp.exists()) {
+			scan(ckp, replayer, crc);
+		}
+		for(long seq = checkpoint; seq <= last; seq++) {
+			final File file = file(SEGMENT, seq);
+			if(file.exists()) {
+				final int torn = scan(file, replayer, crc);
+				if(torn >= 0) {
+					zero(file, torn);
+				}
+			}
+		}
+		this.segmentSeq = Math.max(last, checkpoint);
+		for(final Map.Entry<Long, InMemory.TemporalContext> e : recovered.entrySet()) {
+			e.getValue().attach(this, e.getKey());
+			keys = Math.max(keys, e.getKey());
+		}
+		if(replayer.imported) {
+			rewrite(replayer.parents);
+		}
+	}
+
+	/**
+	 * checkpoint the recovered state (of imported ids) as a checkpoint of this
+	 * epoch, and delete the recovered segments and checkpoint
+	 * @param parents keys of the parents of the recovered contexts (-1 if a root)
+	 */
+	private void rewrite (final Map<Long, Long> parents) {
+		final long upTo = segmentSeq + 1;
+		final File tmp = new File(dir, String.format(CHECKPOINT, upTo) + ".tmp");
+		try (final RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+			final FileChannel channel = out.getChannel();
+			channel.write(sealed(crc, record(EPOCH, 8).putLong(Identities.epoch)));
+			for(final Map.Entry<String, Identities.Exported> e : references.entrySet()) {
+				final byte[] bytes = e.getKey().getBytes(StandardCharsets.UTF_8);
+				channel.write(sealed(crc, record(NAME, 13 + bytes.length).putLong(e.getValue().id).put(e.getValue().kind).putInt(bytes.length).put(bytes)));
+			}
+			for(final Map.Entry<Long, InMemory.TemporalContext> e : new TreeMap<>(recovered).entrySet()) {
+				final long parent = parents.get(e.getKey());
+				final byte[] name = e.getValue().name.getBytes(StandardCharsets.UTF_8);
+				channel.write(sealed(crc, parent < 0
+						? record(ROOT, 12 + name.length).putLong(e.getKey()).putInt(name.length).put(name)
+						: record(BRANCH, 20 + name.length).putLong(e.getKey()).putLong(parent).putInt(name.length).put(name)));
+				final Store writes = e.getValue().store();
+				for(int i = 0; i < writes.size(); i++) {
+					final Object value = writes.valueAt(i);
+					final byte[] bytes = value == null || value == Store.TOMBSTONE ? null : codec.encode(value);
+					final ByteBuffer record = record(WRITE, 24 + (bytes == null ? 0 : bytes.length));
+					record.putLong(e.getKey()).putInt(writes.idAt(i)).putLong(writes.revisionAt(i));
+					if(bytes == null) {
+						record.putInt(value == null ? NULL : DELETED);
+					} else {
+						record.putInt(bytes.length).put(bytes);
+					}
+					channel.write(sealed(crc, record));
+				}
+			}
+			channel.write(ByteBuffer.allocate(4));
+			channel.force(true);
+		} catch (IOException e) {
+			throw new RuntimeException("ERR-rewrite", e);
+		}
+		if(!tmp.renameTo(file(CHECKPOINT, upTo))) {
+			throw new RuntimeException("ERR-rewrite rename");
+		}
+		file(CHECKPOINT, checkpointSeq).delete();
+		for(long seq = checkpointSeq; seq < upTo; seq++) {
+			file(SEGMENT, seq).delete();
+		}
+		checkpointSeq = upTo;
+		segmentSeq = upTo - 1;
+	}
+
+	/** @return a (heap) record of type, positioned at its payload -- see sealed(CRC32, ByteBuffer) */
+	private static ByteBuffer record (final byte type, final int payload) {
+		final ByteBuffer record = ByteBuffer.allocate(HEADER + 1 + payload);
+		record.position(HEADER);
+		record.put(type);
+		return record;
+	}
+
+	/** @return the record, with its header written, flipped for writing */
+	private static ByteBuffer sealed (final CRC32 crc, final ByteBuffer record) {
+		final ByteBuffer payload = record.duplicate();
+		payload.flip();
+		payload.position(HEADER);
+		crc.reset();
+		crc.update(payload);
+		record.putInt(0, record.position() - HEADER);
+		record.putInt(4, (int) crc.getValue());
+		record.flip();
+		return record;
+	}
+
+	/** @return position of the torn record that ended the scan, or -1 if none */
+	private static int scan (final File file, final Visitor visitor, final CRC32 crc) {
+		final ByteBuffer buffer = map(file, 0);
+		while(buffer.remaining() >= HEADER) {
+			final int torn = buffer.position();
+			final int length = buffer.getInt();
+			if(length == 0) {
+				return -1;
+			}
+			final int checksum = buffer.getInt();
+			if(length < 0 || length > buffer.remaining()) {
+				return torn;
+			}
+			final ByteBuffer payload = buffer.slice();
+			payload.limit(length);
+			crc.reset();
+			crc.update(payload.duplicate());
+			if((int) crc.getValue() != checksum) {
+				return torn;
+			}
+			buffer.position(buffer.position() + length);
+			final int start = buffer.position() - length - HEADER;
+			final byte type = payload.get();
+			final long key = payload.getLong();
+			switch (type) {
+				case ROOT:
+					visitor.context(key, -1L, utf(payload), buffer, start);
+					break;
+				case BRANCH:
+					final long parent = payload.getLong();
+					visitor.context(key, parent, utf(payload), buffer, start);
+					break;
+				case WRITE:
+					final int id = payload.getInt();
+					final long revision = payload.getLong();
+					final int n = payload.getInt();
+					visitor.write(key, id, revision, n < 0 ? null : payload, n, buffer, start);
+					break;
+				case MERGE:
+					break;
+				case EPOCH:
+					visitor.epoch(key, buffer, start);
+					break;
+				case NAME:
+					final byte kind = payload.get();
+					visitor.name(utf(payload), (int) key, kind, buffer, start);
+					break;
+				default:
+					return torn;
+			}
+		}
+		return -1;
+	}
+
+	/** zero the (torn) tail of the segment from position, and force it */
+	private static void zero (final File file, final int position) {
+		final MappedByteBuffer buffer = map(file, (int) file.length());
+		buffer.position(position);
+		while(buffer.remaining() >= 8) {
+			buffer.putLong(0L);
+		}
+		while(buffer.hasRemaining()) {
+			buffer.put((byte) 0);
+		}
+		buffer.force();
+	}
+
+	/** */
+	private interface Visitor {
+		/** ids of the records that follow are of epoch -- see Identities */
+		void epoch (long epoch, ByteBuffer log, int start);
+		void name (String name, int id, byte kind, ByteBuffer log, int start);
+		void context (long key, long parent, String name, ByteBuffer log, int start);
+		void write (long key, int id, long revision, ByteBuffer value, int length, ByteBuffer log, int start);
+	}
+
+	/** rebuilds contexts from the log -- importing the ids of other epochs */
+	private final class Replayer implements Visitor {
+		/** imports by epoch */
+		final Map<Long, Identities.Import> imports = new HashMap<>();
+		/** of the records replayed -- of no epoch until the first epoch record */
+		Identities.Import current = new Identities.Import(0L);
+		/** true if ids of another epoch were replayed */
+		boolean imported;
+		/** parent keys of the recovered contexts, -1 if a root */
+		final Map<Long, Long> parents = new HashMap<>();
+
+		@Override public void epoch (final long epoch, final ByteBuffer log, final int start) {
+			current = imports.computeIfAbsent(epoch, Identities.Import::new);
+		}
+		@Override public void name (final String name, final int id, final byte kind, final ByteBuffer log, final int start) {
+			imported |= !current.local();
+			references.put(name, new Identities.Exported(current.id(id), kind));
+		}
+		@Override public void context (final long key, final long parent, final String name, final ByteBuffer log, final int start) {
+			final InMemory.TemporalContext context = parent < 0
+					? new InMemory.TemporalContext(NilContext, name, InMemory.Storage.hashed)
+					: new InMemory.TemporalContext(recovered.get(parent), name);
+			recovered.put(key, context);
+			named.put(name, context);
+			parents.put(key, parent);
+		}
+		@Override public void write (final long key, final int id, final long revision, final ByteBuffer value, final int length, final ByteBuffer log, final int start) {
+			imported |= !current.local();
+			Object decoded = length == DELETED ? Store.TOMBSTONE : null;
+			if(value != null) {
+				final byte[] bytes = new byte[length];
+				value.get(bytes);
+				decoded = current.decode(codec, bytes, 0, length);
+			}
+			recovered.get(key).restore(current.id(id), decoded, revision);
+			Revisions.advance(revision);
+		}
+	}
+
+	/** folds the log into its latest state, as raw (encoded) records */
+	private static final class Folder implements Visitor {
+		static final class Context {
+			byte[] record;
+			final Store writes = new IntTable();
+		}
+		final Map<String, byte[]> names = new TreeMap<>();
+		final Map<Long, Context> contexts = new TreeMap<>();
+
+		@Override public void epoch (final long epoch, final ByteBuffer log, final int start) {
+			if(epoch != Identities.epoch) {
+				throw new RuntimeException("BUG"); // records of other epochs are rewritten on recovery
+			}
+		}
+		@Override public void name (final String name, final int id, final byte kind, final ByteBuffer log, final int start) {
+			names.put(name, copy(log, start));
+		}
+
+		@Override public void context (final long key, final long parent, final String name, final ByteBuffer log, final int start) {
+			final Context c = new Context();
+			c.record = copy(log, start);
+			contexts.put(key, c);
+		}
+		@Override public void write (final long key, final int id, final long revision, final ByteBuffer value, final int length, final ByteBuffer log, final int start) {
+			contexts.get(key).writes.put(id, copy(log, start), revision);
+		}
+		private static byte[] copy (final ByteBuffer log, final int start) {
+			final ByteBuffer record = log.duplicate();
+			record.limit(log.position()).position(start);
+			final byte[] bytes = new byte[record.remaining()];
+			record.get(bytes);
+			return bytes;
+		}
+	}
+
+	// ------------------------------------------------------------------
+	// files
+	// ------------------------------------------------------------------
+
+	private File file (final String format, final long seq) {
+		return new File(dir, String.format(format, seq));
+	}
+
+	private static long seq (final String name) {
+		return Long.parseLong(name.replaceAll("[^0-9]", ""));
+	}
+
+	private static String utf (final ByteBuffer payload) {
+		final byte[] bytes = new byte[payload.getInt()];
+		payload.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/** @return file mapped read-write at (at least) size, or read-only at its size if size is 0 */
+	private static MappedByteBuffer map (final File file, final int size) {
+		try (final RandomAccessFile raf = new RandomAccessFile(file, size == 0 ? "r" : "rw")) {
+			final FileChannel channel = raf.getChannel();
+			return size == 0
+					? channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+					: channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} catch (IOException e) {
+			throw new RuntimeException(String.format("ERR-map %s", file), e);
+		}
+	}
+}
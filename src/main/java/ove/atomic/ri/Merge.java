@@ -0,0 +1,408 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.atomic.Mergeable;
+import ove.atomic.Temporal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the writes of a merge of (child) contexts into a TemporalContext.
+ *
+ * A plain merge is last-writer-wins in the order of the merged contexts. A
+ * reconciling merge is three-way: each merged context is compared with the
+ * merging context ('ours') relative to their common ancestor, and fails with
+ * a Context.Op.Exception on
+ * <ul>
+ * <li>write-write: an id written with different values by two merged
+ *     contexts, or by a merged context and by ours since the fork.</li>
+ * <li>read-write: an id read by a merged context (with a full journal) that
+ *     was subsequently written by ours, or by a merged context preceding it in
+ *     merge order. A read is stale if the revision of the value read (as
+ *     journaled) is no longer that of the value in ours.</li>
+ * </ul>
+ * Reads are only journaled in Journal.full mode (the default is off): for
+ * merged contexts with any other journal mode, only write-write conflicts
+ * are detected.
+ *
+ * Ids of mergeable references (see {@link Mergeable}) are neither last-writer
+ * -wins nor conflicts: each merged context's value is folded into the merged
+ * value with the reference's merge function. Writes made by merge functions
+ * are installed after the merged writes. A merge function may fail with a
+ * Mergeable.Conflict, which fails the merge (reconciling or not) as a conflict.
+ *
+ * Large merges are partitioned by id and the partitions merged in parallel
+ * on the common fork-join pool; only installing the result in the merge
+ * context is sequential. Merges of many actors may instead be pre-merged
+ * pairwise, as the actors complete, see {@link #combine}.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/21/14
+ */
+final class Merge {
+
+	/** total merged entries above which partitions are merged in parallel */
+	static final int PARALLEL_THRESHOLD = 1 << 15;
+
+	/** */
+	private static final int PARTITION_BITS = 6;
+
+	private Merge () { }
+
+	/**
+	 * @return the merged writes, as a store of partitions
+	 * @throws Temporal.Context.Op.Exception on a conflict if reconciling
+	 */
+	static Store[] merge (final InMemory.TemporalContext ours, final Temporal.Context[] contexts, final boolean reconcile)
+			throws Temporal.Context.Op.Exception
+	{
+		final Source[] sources = new Source[contexts.length];
+		int total = 0;
+		for(int k = 0; k < contexts.length; k++) {
+			sources[k] = new Source(ours, contexts[k], reconcile);
+			total += sources[k].store.size();
+		}
+
+		if(total < PARALLEL_THRESHOLD || contexts.length == 1 && !reconcile) {
+			final Store[] writes = new Store[1];
+			final Store merged = merge(ours, sources, -1, total, reconcile, writes);
+			return writes[0] == null ? new Store[] { merged } : new Store[] { merged, writes[0] };
+		}
+
+		final int partitions = 1 << PARTITION_BITS;
+		IntStream.range(0, sources.length).parallel().forEach(k -> sources[k].partition());
+
+		final Store[] merged = new Store[partitions];
+		final Store[] writes = new Store[partitions];
+		final AtomicReference<Temporal.Context.Op.Exception> conflict = new AtomicReference<>();
+		final int expected = total >>> PARTITION_BITS;
+		IntStream.range(0, partitions).parallel().forEach(p -> {
+			try {
+				merged[p] = merge(ours, sources, p, expected, reconcile, writes);
+			} catch (Temporal.Context.Op.Exception e) {
+				conflict.compareAndSet(null, e);
+			}
+		});
+		if(conflict.get() != null) {
+			throw conflict.get();
+		}
+		final ArrayList<Store> result = new ArrayList<>(Arrays.asList(merged));
+		for(final Store w : writes) {
+			if(w != null) {
+				result.add(w);
+			}
+		}
+		return result.toArray(new Store[result.size()]);
+	}
+
+	/**
+	 * merge a partition (or all, if partition is -1) of the sources
+	 * @param writes the writes of merge functions, if any, are set at [max(partition, 0)]
+	 */
+	private static Store merge (final InMemory.TemporalContext ours, final Source[] sources, final int partition, final int expected,
+			final boolean reconcile, final Store[] writes)
+			throws Temporal.Context.Op.Exception
+	{
+		final IntTable merged = new IntTable(expected);
+		View view = null;
+		for(int k = 0; k < sources.length; k++) {
+			final Source source = sources[k];
+			if(reconcile && source.readIds != null) {
+				final int[] reads = partition < 0 ? null : source.readPartitions[partition];
+				final int n = reads == null ? source.readIds.length : reads.length;
+				for(int i = 0; i < n; i++) {
+					final int r = reads == null ? i : reads[i];
+					if(Mergers.of(source.readIds[r]) == null) {
+						source.validateRead(ours, merged, source.readIds[r], source.readRevisions[r], source.readHolders[r]);
+					}
+				}
+			}
+			final int[] positions = partition < 0 ? null : source.partitions[partition];
+			final int n = positions == null ? source.store.size() : positions.length;
+			for(int i = 0; i < n; i++) {
+				final int position = positions == null ? i : positions[i];
+				final int id = source.store.idAt(position);
+				Object value = source.store.valueAt(position);
+				final Mergeable<Object> merger = value == Store.TOMBSTONE ? null : Mergers.of(id);
+				if(merger != null) {
+					if(view == null) {
+						view = new View();
+					}
+					final int p = merged.position(id);
+					final Object merging = p >= 0 && merged.valueAt(p) != Store.TOMBSTONE ? merged.valueAt(p) : ours.lookup(id);
+					try {
+						value = view.merge(source, merger, merging, value, source.base(id));
+					} catch (Mergeable.Conflict e) {
+						throw conflict(OpLog.WRITE, id, source.store.revisionAt(position), e.getMessage());
+					}
+				} else if(reconcile) {
+					source.validateWrite(ours, merged, id, value, source.store.revisionAt(position));
+				}
+				merged.put(id, value, 0L);
+			}
+		}
+		if(view != null && view.writes.size() > 0) {
+			writes[Math.max(partition, 0)] = view.writes;
+		}
+		return merged;
+	}
+
+	/**
+	 * pre-merge context b after context a (both merged into a common ancestor,
+	 * in that order) into combined, which may be a itself: writes of b override those of a, except
+	 * mergeable ids written by both, which are folded with the merge function
+	 * relative to b's base. Ids written by only one of them keep their value
+	 * (and revision), so that their merge base remains valid.
+	 * @throws Mergeable.Conflict if a merge function fails
+	 */
+	static void combine (final InMemory.TemporalContext a, final InMemory.TemporalContext b, final InMemory.TemporalContext combined) {
+		final Store ours = a.store();
+		for(int i = 0; a != combined && i < ours.size(); i++) {
+			combined.restore(ours.idAt(i), ours.valueAt(i), ours.revisionAt(i));
+		}
+		final Source source = new Source(b);
+		final Store theirs = source.store;
+		View view = null;
+		for(int i = 0; i < theirs.size(); i++) {
+			final int id = theirs.idAt(i);
+			Object value = theirs.valueAt(i);
+			final Mergeable<Object> merger = value == Store.TOMBSTONE ? null : Mergers.of(id);
+			if(merger != null) {
+				final int p = ours.position(id);
+				if(p >= 0 && ours.valueAt(p) != Store.TOMBSTONE) {
+					if(view == null) {
+						view = new View();
+					}
+					value = view.merge(source, merger, ours.valueAt(p), value, source.base(id));
+				}
+			}
+			combined.restore(id, value, theirs.revisionAt(i));
+		}
+		if(view != null) {
+			final Store writes = view.writes;
+			for(int i = 0; i < writes.size(); i++) {
+				combined.restore(writes.idAt(i), writes.valueAt(i), Revisions.current());
+			}
+		}
+	}
+
+	/** @return a conflict on id for the op of the source */
+	static Temporal.Context.Op.Exception conflict (final byte code, final int id, final long revision, final String reason) {
+		final Temporal.Context.Op op = new OpLog.Operation(code, id, revision);
+		return new Temporal.Context.Op.Exception(op, String.format("ERR-merge conflict on id %d - %s", id, reason));
+	}
+
+	// ------------------------------------------------------------------
+	// Merge.Source
+	// ------------------------------------------------------------------
+	/** a merged context's writes, reads, and fork point from ours */
+	private static final class Source {
+		/** merged context */
+		final Temporal.Context context;
+		/** writes of the merged context */
+		final Store store;
+		/** revision at which the merged context forked from ours' timeline */
+		final long fork;
+		/** reads of the merged context -- null unless reconciling a fully journaled context */
+		int[] readIds;
+		long[] readRevisions;
+		Object[] readHolders;
+		/** per partition positions of writes, and indexes of reads */
+		int[][] partitions;
+		int[][] readPartitions;
+
+		Source (final InMemory.TemporalContext ours, final Temporal.Context context, final boolean reconcile) {
+			this.context = context;
+			if(context instanceof InMemory.TemporalContext) {
+				final InMemory.TemporalContext theirs = (InMemory.TemporalContext) context;
+				this.store = theirs.store();
+				this.fork = theirs.forkedFrom(ours);
+				final OpLog log = theirs.journaled(InMemory.Journal.full);
+				if(reconcile && log != null) {
+					reads(log);
+				}
+			} else {
+				// REVU: other context types are merged by value, without conflict checks on ours
+				final int[] ids = context.modset();
+				this.store = new IntTable(ids.length);
+				for(final int id : ids) {
+					store.put(id, context.read(id), 0L);
+				}
+				this.fork = Long.MAX_VALUE;
+			}
+		}
+
+		/** source of a combine -- see Merge#combine */
+		Source (final InMemory.TemporalContext theirs) {
+			this.context = theirs;
+			this.store = theirs.store();
+			this.fork = Long.MAX_VALUE;
+		}
+
+		/** reads of the journal, except reads of the merged context's own writes (that follow them in the journal) */
+		private void reads (final OpLog log) {
+			final Store written = new IntTable();
+			int n = 0;
+			readIds = new int[16];
+			readRevisions = new long[16];
+			readHolders = new Object[16];
+			for(int i = 0; i < log.size(); i++) {
+				final byte code = log.codeAt(i);
+				if(code == OpLog.WRITE || code == OpLog.DELETE) {
+					written.put(log.idAt(i), Boolean.TRUE, 0L);
+				} else if(code == OpLog.READ && !written.contains(log.idAt(i))) {
+					if(n == readIds.length) {
+						readIds = Arrays.copyOf(readIds, n << 1);
+						readRevisions = Arrays.copyOf(readRevisions, n << 1);
+						readHolders = Arrays.copyOf(readHolders, n << 1);
+					}
+					readIds[n] = log.idAt(i);
+					readHolders[n] = log.holderAt(i);
+					readRevisions[n++] = log.revisionAt(i);
+				}
+			}
+			readIds = Arrays.copyOf(readIds, n);
+			readRevisions = Arrays.copyOf(readRevisions, n);
+			readHolders = Arrays.copyOf(readHolders, n);
+		}
+
+		/** bucket writes (and reads) by partition */
+		final void partition () {
+			partitions = partition(store.ids, store.size());
+			if(readIds != null) {
+				readPartitions = partition(readIds, readIds.length);
+			}
+		}
+
+		private static int[][] partition (final int[] ids, final int n) {
+			final int[] counts = new int[1 << PARTITION_BITS];
+			for(int i = 0; i < n; i++) {
+				counts[partitionOf(ids[i])]++;
+			}
+			final int[][] partitions = new int[counts.length][];
+			for(int p = 0; p < counts.length; p++) {
+				partitions[p] = new int[counts[p]];
+				counts[p] = 0;
+			}
+			for(int i = 0; i < n; i++) {
+				final int p = partitionOf(ids[i]);
+				partitions[p][counts[p]++] = i;
+			}
+			return partitions;
+		}
+
+		private static int partitionOf (final int id) {
+			return IntTable.mix(id) >>> (32 - PARTITION_BITS);
+		}
+
+		/** @return value of mergeable id before the merged context first wrote it, or null */
+		final Object base (final int id) {
+			return context instanceof InMemory.TemporalContext ? ((InMemory.TemporalContext) context).mergeBaseOf(id) : null;
+		}
+
+		/** @return value of id in the merged context -- not journaled */
+		final Object read (final int id) {
+			return context instanceof InMemory.TemporalContext ? ((InMemory.TemporalContext) context).lookup(id) : context.read(id);
+		}
+
+		final void validateWrite (final InMemory.TemporalContext ours, final Store merged, final int id, final Object value, final long revision)
+				throws Temporal.Context.Op.Exception
+		{
+			if(fork != Long.MAX_VALUE && ours.revision(id) > fork && !Objects.equals(ours.lookup(id), value)) {
+				throw conflict(OpLog.WRITE, id, revision, "written by merging context since fork");
+			}
+			final int p = merged.position(id);
+			if(p >= 0 && !Objects.equals(merged.valueAt(p), value)) {
+				throw conflict(OpLog.WRITE, id, revision, "written by merged contexts");
+			}
+		}
+
+		/**
+		 * @param revision of the value read -- see TemporalContext#read(int)
+		 * @param holder context holding the value read -- revisions stamped in
+		 * different contexts may be equal
+		 */
+		final void validateRead (final InMemory.TemporalContext ours, final Store merged, final int id, final long revision, final Object holder)
+				throws Temporal.Context.Op.Exception
+		{
+			final Temporal.Context current = ours.holder(id);
+			if(current != holder || InMemory.TemporalContext.revision(current, id) != revision) {
+				throw conflict(OpLog.READ, id, revision, "read value since written by merging context");
+			}
+			if(merged.contains(id)) {
+				throw conflict(OpLog.READ, id, revision, "read value since written by preceding merged context");
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------
+	// Merge.View
+	// ------------------------------------------------------------------
+	/**
+	 * Context in which merge functions act: reads are of the merged context
+	 * (and the merge function's own writes), and writes are recorded.
+	 */
+	private static final class View implements Temporal.Context {
+		/** writes of merge functions */
+		final Store writes = new IntTable();
+		/** actor acting in this view */
+		final Temporal.Actor actor = new InMemory.TaskActor(Runnable::run, this, () -> { }, "merge-view");
+		/** */
+		Source source;
+
+		/** @return the merged value of the merge function, acting in this view of the source */
+		final Object merge (final Source source, final Mergeable<Object> merger, final Object ours, final Object theirs, final Object base) {
+			this.source = source;
+			final Temporal.Actor outer = InMemory.TaskActor.bind(actor);
+			try {
+				return merger.merge(base, ours, theirs);
+			} finally {
+				InMemory.TaskActor.unbind(outer);
+			}
+		}
+
+		@Override final public <T> void write (final int id, final T value) {
+			writes.put(id, value, 0L);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override final public <T> T read (final int id) {
+			final int position = writes.position(id);
+			return (T) (position >= 0 ? writes.valueAt(position) : source.read(id));
+		}
+
+		@Override final public Temporal.Context branch () { throw new RuntimeException("BUG"); }
+		@Override final public Temporal.Context branch (final String name) { throw new RuntimeException("BUG"); }
+		@Override final public Temporal.Context merge (final Temporal.Context... contexts) { throw new RuntimeException("BUG"); }
+		@Override final public int[] modset () { return writes.ids(); }
+		@Override final public int modsetSize () { return writes.size(); }
+		@Override final public int modsetAt (final int index) { return writes.idAt(index); }
+		@Override final public Op[] operations () { return new Op[0]; }
+		@Override final public Temporal.Context parent () { return source.context; }
+	}
+}
@@ -0,0 +1,95 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.atomic.Mergeable;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Registry of the (mergeable) references with a merge function, by id.
+ *
+ * Ids are dense, so references are held in an array indexed by id, written
+ * on (the rare) registration and read without locking by merges. References
+ * are held weakly, and their merge function read from them: a registered
+ * function (e.g. a lambda capturing its structure) does not pin its
+ * reference, and the slot of a reclaimed reference is cleared, so that a
+ * recycled id (see Identities) does not inherit its function.
+ * REVU: the array is sized by the greatest registered id.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/31/14
+ */
+final class Mergers {
+
+	/** a reference with a merge function */
+	interface Owner {
+		/** @return merge function of the reference, or null if none */
+		Mergeable<?> merger ();
+	}
+
+	/** */
+	private static volatile Entry[] owners = new Entry[0];
+
+	/** reclaimed owners -- their slots are cleared on registration */
+	private static final ReferenceQueue<Owner> reclaimed = new ReferenceQueue<>();
+
+	private Mergers () { }
+
+	/** register the owner of id */
+	static synchronized void register (final int id, final Owner owner) {
+		assert id >= 0 : "id is negative";
+		assert owner != null : "owner is null";
+		Entry[] registered = owners;
+		for(Entry entry; (entry = (Entry) reclaimed.poll()) != null; ) {
+			if(registered[entry.id] == entry) {
+				registered[entry.id] = null;
+			}
+		}
+		if(id >= registered.length) {
+			registered = Arrays.copyOf(registered, Math.max(id + 1, registered.length << 1));
+		}
+		registered[id] = new Entry(owner, id);
+		owners = registered; // (re)publish
+	}
+
+	/** @return merge function of id, or null if none */
+	@SuppressWarnings("unchecked")
+	static Mergeable<Object> of (final int id) {
+		final Entry[] registered = owners;
+		final Entry entry = id >= 0 && id < registered.length ? registered[id] : null;
+		final Owner owner = entry == null ? null : entry.get();
+		return owner == null ? null : (Mergeable<Object>) owner.merger();
+	}
+
+	/** weak slot of an owner */
+	private static final class Entry extends WeakReference<Owner> {
+		final int id;
+		Entry (final Owner owner, final int id) {
+			super(owner, reclaimed);
+			this.id = id;
+		}
+	}
+}
@@ -0,0 +1,544 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.atomic.Temporal;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static ove.atomic.ri.InMemory.NilContext;
+import static ove.atomic.ri.InMemory.TemporalContext;
+
+/**
+ * Instrumentation of InMemory.TemporalContext reads, writes, branches and
+ * merges, published as JFR events and via JMX ({@link MetricsMBean}).
+ *
+ * Metrics are enabled via system property {@value #PROPERTY}. The switch is
+ * a static final, so if disabled the instrumented paths are compiled away and
+ * a TemporalContext only carries a null counters field.
+ *
+ * JFR events (category "ove", "Temporal"):
+ * <ul>
+ * <li>ove.atomic.Merge - every merge, with duration and size</li>
+ * <li>ove.atomic.DeepRead - reads walking at least {@value #DEEP} ancestors (disabled by default)</li>
+ * <li>ove.atomic.Branch - every branch (disabled by default)</li>
+ * <li>ove.atomic.Statistics - totals, every second</li>
+ * </ul>
+ *
+ * JFR events are defined reflectively (see JfrEvent), so Metrics compiles
+ * for Java 8 and runs without jdk.jfr: events require a JDK with jdk.jfr
+ * (8u262 or 11+), and are dropped otherwise.
+ *
+ * REVU: per context counters are not synchronized -- counts of a context
+ * read or written by more than one thread at a time are approximate. Retained
+ * entries are published by the writing thread (see retained(TemporalContext)),
+ * and not counted by walking the (unsynchronized) stores of a context.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/28/14
+ */
+final class Metrics implements MetricsMBean {
+
+	/** */
+	static final String PROPERTY = "ove.atomic.ri.metrics";
+
+	/** */
+	static final boolean enabled = Boolean.getBoolean(PROPERTY);
+
+	/** */
+	static final String OBJECT_NAME = "ove.atomic.ri:type=InMemory";
+
+	/** read depth at (and beyond) which a DeepRead event is committed */
+	static final int DEEP = 16;
+
+	/** */
+	private static final int BUCKETS = 8;
+
+	/** */
+	private static final Metrics metrics = new Metrics();
+
+	/** */
+	private final LongAdder[] misses = new LongAdder[BUCKETS];
+
+	/** */
+	private final LongAdder branches = new LongAdder();
+
+	/** */
+	private final LongAdder merges = new LongAdder();
+
+	/** */
+	private final LongAdder mergedEntries = new LongAdder();
+
+	/** */
+	private final AtomicLong maxMergedEntries = new AtomicLong();
+
+	/** */
+	private final LongAdder mergeNanos = new LongAdder();
+
+	/** counters of registered contexts -- purged of unreachable contexts */
+	private final ArrayList<Counters> registry = new ArrayList<>();
+
+	/** registry size at which it is next purged */
+	private int purgeAt = 1024;
+
+	/** reads, writes, and misses of purged contexts */
+	private long retiredReads;
+	private long retiredWrites;
+	private long retiredMisses;
+
+	static {
+		if(enabled) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+			} catch (Exception e) {
+				throw new RuntimeException("ERR-register metrics mbean", e);
+			}
+			JfrEvent.STATISTICS.periodic(() -> JfrEvent.STATISTICS.commit(
+					metrics.getReads(),
+					metrics.getReadMisses(),
+					metrics.getWrites(),
+					metrics.getBranches(),
+					metrics.getMerges(),
+					metrics.getLiveContexts(),
+					metrics.getRetainedEntries()));
+		}
+	}
+
+	private Metrics () {
+		for(int i = 0; i < BUCKETS; i++) {
+			misses[i] = new LongAdder();
+		}
+	}
+
+	// ------------------------------------------------------------------
+	// instrumentation -- call only if enabled
+	// ------------------------------------------------------------------
+
+	/** @return counters of the (new) context */
+	static Counters branched (final TemporalContext context) {
+		final Counters counters = new Counters(context);
+		synchronized (metrics) {
+			if(metrics.registry.size() >= metrics.purgeAt) {
+				metrics.purge();
+				metrics.purgeAt = Math.max(1024, metrics.registry.size() << 1);
+			}
+			metrics.registry.add(counters);
+		}
+		if(context.parent != NilContext) {
+			metrics.branches.increment();
+			if(JfrEvent.BRANCH.isEnabled()) {
+				JfrEvent.BRANCH.commit(context.name, name(context.parent));
+			}
+		}
+		return counters;
+	}
+
+	/** @return value of id visible in context -- see TemporalContext#lookup(int) */
+	@SuppressWarnings("unchecked")
+	static <T> T read (final TemporalContext context, final int id) {
+		context.counters.reads++;
+		Temporal.Context c = context;
+		int depth = 0;
+		do {
+			final Object value = ((TemporalContext) c).valueOf(id);
+			if(value != null) {
+				if(depth > 0) {
+					missed(context, id, depth);
+				}
+				return value == Store.TOMBSTONE ? null : (T) value;
+			}
+			if(depth == 0 && context.branchRead(id)) {
+				return (T) context.branchValue(id); // see TemporalContext#branchRead
+			}
+			c = ((TemporalContext) c).parent;
+			depth++;
+		} while (c instanceof TemporalContext);
+		missed(context, id, depth);
+		return c == NilContext ? null : c.read(id);
+	}
+
+	/** read of a primitive value -- misses are not counted */
+	static void read (final TemporalContext context) {
+		context.counters.reads++;
+	}
+
+	/** batched reads -- misses are not counted */
+	static void readAll (final TemporalContext context, final int count) {
+		context.counters.reads += count;
+	}
+
+	private static void missed (final TemporalContext context, final int id, final int depth) {
+		context.counters.misses++;
+		metrics.misses[Math.min(BUCKETS - 1, 31 - Integer.numberOfLeadingZeros(depth))].increment();
+		if(depth >= DEEP && JfrEvent.DEEP_READ.isEnabled()) {
+			JfrEvent.DEEP_READ.commit(context.name, id, depth);
+		}
+	}
+
+	/** */
+	static void written (final TemporalContext context) {
+		context.counters.writes++;
+	}
+
+	/** a prior version was retained (and none dropped) by the context */
+	static void retained (final TemporalContext context) {
+		context.counters.versions++;
+	}
+
+	/** the context dropped its prior versions */
+	static void released (final TemporalContext context) {
+		context.counters.versions = 0;
+	}
+
+	/** @param start System.nanoTime() at start of merge */
+	static void merged (final TemporalContext context, final int contexts, final int entries, final boolean reconcile, final long start) {
+		final long nanos = System.nanoTime() - start;
+		metrics.merges.increment();
+		metrics.mergedEntries.add(entries);
+		metrics.mergeNanos.add(nanos);
+		metrics.maxMergedEntries.accumulateAndGet(entries, Math::max);
+		if(JfrEvent.MERGE.isEnabled()) {
+			JfrEvent.MERGE.commit(name(context.parent), contexts, entries, reconcile, nanos);
+		}
+	}
+
+	private static String name (final Temporal.Context context) {
+		return context instanceof TemporalContext ? ((TemporalContext) context).name : String.valueOf(context);
+	}
+
+	// ------------------------------------------------------------------
+	// MetricsMBean
+	// ------------------------------------------------------------------
+
+	@Override final public long getReads () {
+		synchronized (this) {
+			long reads = retiredReads;
+			for(final Counters c : registry) reads += c.reads;
+			return reads;
+		}
+	}
+
+	@Override final public long getReadMisses () {
+		synchronized (this) {
+			long misses = retiredMisses;
+			for(final Counters c : registry) misses += c.misses;
+			return misses;
+		}
+	}
+
+	@Override final public long[] getReadMissDepthHistogram () {
+		final long[] histogram = new long[BUCKETS];
+		for(int i = 0; i < BUCKETS; i++) {
+			histogram[i] = misses[i].sum();
+		}
+		return histogram;
+	}
+
+	@Override final public long getWrites () {
+		synchronized (this) {
+			long writes = retiredWrites;
+			for(final Counters c : registry) writes += c.writes;
+			return writes;
+		}
+	}
+
+	@Override final public long getBranches () {
+		return branches.sum();
+	}
+
+	@Override final public long getMerges () {
+		return merges.sum();
+	}
+
+	@Override final public long getMergedEntries () {
+		return mergedEntries.sum();
+	}
+
+	@Override final public long getMaxMergedEntries () {
+		return maxMergedEntries.get();
+	}
+
+	@Override final public long getMergeNanos () {
+		return mergeNanos.sum();
+	}
+
+	@Override final public int getLiveContexts () {
+		synchronized (this) {
+			purge();
+			return registry.size();
+		}
+	}
+
+	@Override final public long getRetainedEntries () {
+		synchronized (this) {
+			long entries = 0;
+			for(final Counters c : registry) {
+				final TemporalContext context = c.context.get();
+				if(context != null) {
+					entries += c.entries(context);
+				}
+			}
+			return entries;
+		}
+	}
+
+	@Override final public String[] busiest (final int n) {
+		return describe(n, Comparator.comparingLong((Counters c) -> c.reads + c.writes).reversed());
+	}
+
+	@Override final public String[] deepest (final int n) {
+		return describe(n, Comparator.comparingInt((Counters c) -> {
+			final TemporalContext context = c.context.get();
+			return context == null ? -1 : context.depth();
+		}).reversed());
+	}
+
+	private String[] describe (final int n, final Comparator<Counters> order) {
+		final ArrayList<Counters> counters;
+		synchronized (this) {
+			purge();
+			counters = new ArrayList<>(registry);
+		}
+		counters.sort(order);
+		final ArrayList<String> described = new ArrayList<>();
+		for(final Counters c : counters) {
+			final TemporalContext context = c.context.get();
+			if(context != null && described.size() < n) {
+				described.add(String.format("%s depth: %d entries: %d reads: %d misses: %d writes: %d",
+						context.name, context.depth(), c.entries(context), c.reads, c.misses, c.writes));
+			}
+		}
+		return described.toArray(new String[described.size()]);
+	}
+
+	/** drop counters of unreachable contexts -- call holding lock */
+	private void purge () {
+		int n = 0;
+		for(final Counters c : registry) {
+			if(c.context.get() == null) {
+				retiredReads += c.reads;
+				retiredWrites += c.writes;
+				retiredMisses += c.misses;
+			} else {
+				registry.set(n++, c);
+			}
+		}
+		registry.subList(n, registry.size()).clear();
+	}
+
+	// ------------------------------------------------------------------
+	// Metrics.Counters
+	// ------------------------------------------------------------------
+	/** counts of a context -- see REVU above */
+	static final class Counters {
+		final WeakReference<TemporalContext> context;
+		long reads;
+		long misses;
+		long writes;
+		/** prior versions retained */
+		long versions;
+
+		Counters (final TemporalContext context) {
+			this.context = new WeakReference<>(context);
+		}
+
+		/** @return values and prior versions retained by context -- an int read of its store */
+		long entries (final TemporalContext context) {
+			return context.store().size() + versions;
+		}
+	}
+
+	// ------------------------------------------------------------------
+	// JFR events
+	// ------------------------------------------------------------------
+	/**
+	 * JFR event type (category "ove", "Temporal"), defined via
+	 * jdk.jfr.EventFactory and committed reflectively, so that Metrics has no
+	 * (compile or link time) dependency on jdk.jfr. If jdk.jfr is not
+	 * available, events are never enabled.
+	 */
+	static final class JfrEvent {
+
+		/** events of a JDK without jdk.jfr */
+		private static final JfrEvent DISABLED = new JfrEvent();
+
+		/** */
+		static final JfrEvent MERGE = define("ove.atomic.Merge", "Temporal Merge",
+				"Merge (or reconcile) of contexts into a context", true, null,
+				field(String.class, "context", "Context"),
+				field(int.class, "contexts", "Contexts Merged"),
+				field(int.class, "entries", "Entries Merged"),
+				field(boolean.class, "reconcile", "Reconcile"),
+				field(long.class, "mergeTime", "Merge Time", "NANOSECONDS"));
+
+		/** */
+		static final JfrEvent DEEP_READ = define("ove.atomic.DeepRead", "Temporal Deep Read",
+				"Read that walked at least 16 ancestors of the read context", false, null,
+				field(String.class, "context", "Context"),
+				field(int.class, "id", "Id"),
+				field(int.class, "depth", "Depth"));
+
+		/** */
+		static final JfrEvent BRANCH = define("ove.atomic.Branch", "Temporal Branch",
+				null, false, null,
+				field(String.class, "context", "Context"),
+				field(String.class, "parent", "Parent"));
+
+		/** */
+		static final JfrEvent STATISTICS = define("ove.atomic.Statistics", "Temporal Statistics",
+				null, true, "1 s",
+				field(long.class, "reads", "Reads"),
+				field(long.class, "readMisses", "Read Misses"),
+				field(long.class, "writes", "Writes"),
+				field(long.class, "branches", "Branches"),
+				field(long.class, "merges", "Merges"),
+				field(int.class, "liveContexts", "Live Contexts"),
+				field(long.class, "retainedEntries", "Retained Entries"));
+
+		/** jdk.jfr.EventFactory -- null if jdk.jfr is not available */
+		private final Object factory;
+
+		/** jdk.jfr.EventType of the events */
+		private final Object type;
+
+		/** */
+		private final Method newEvent;
+		private final Method isEnabled;
+		private final Method set;
+		private final Method commit;
+
+		private JfrEvent () {
+			this.factory = this.type = null;
+			this.newEvent = this.isEnabled = this.set = this.commit = null;
+		}
+
+		private JfrEvent (final Object factory) throws ReflectiveOperationException {
+			this.factory = factory;
+			final Class<?> event = Class.forName("jdk.jfr.Event");
+			this.type = factory.getClass().getMethod("getEventType").invoke(factory);
+			this.newEvent = factory.getClass().getMethod("newEvent");
+			this.isEnabled = type.getClass().getMethod("isEnabled");
+			this.set = event.getMethod("set", int.class, Object.class);
+			this.commit = event.getMethod("commit");
+		}
+
+		/** @return true if events of this type are recorded */
+		final boolean isEnabled () {
+			if(factory == null) {
+				return false;
+			}
+			try {
+				return (Boolean) isEnabled.invoke(type);
+			} catch (ReflectiveOperationException e) {
+				throw new RuntimeException("ERR-jfr event", e);
+			}
+		}
+
+		/** commit an event with the given values, in field order */
+		final void commit (final Object... values) {
+			if(factory == null) {
+				return;
+			}
+			try {
+				final Object event = newEvent.invoke(factory);
+				for(int i = 0; i < values.length; i++) {
+					set.invoke(event, i, values[i]);
+				}
+				commit.invoke(event);
+			} catch (ReflectiveOperationException e) {
+				throw new RuntimeException("ERR-jfr event", e);
+			}
+		}
+
+		/** run hook at the period of this (periodic) event type -- it should commit an event */
+		final void periodic (final Runnable hook) {
+			if(factory == null) {
+				return;
+			}
+			try {
+				final Class<?> recorder = Class.forName("jdk.jfr.FlightRecorder");
+				recorder.getMethod("addPeriodicEvent", Class.class, Runnable.class)
+						.invoke(null, newEvent.invoke(factory).getClass(), hook);
+			} catch (ReflectiveOperationException e) {
+				throw new RuntimeException("ERR-jfr periodic event", e);
+			}
+		}
+
+		/** @return the event type, or a disabled one if jdk.jfr is not available */
+		private static JfrEvent define (final String name, final String label, final String description,
+				final boolean enabled, final String period, final Object[]... fields)
+		{
+			try {
+				final ArrayList<Object> annotations = new ArrayList<>();
+				annotations.add(annotation("Name", name));
+				annotations.add(annotation("Label", label));
+				annotations.add(annotation("Category", new String[] { "ove", "Temporal" }));
+				annotations.add(annotation("Enabled", enabled));
+				if(description != null) {
+					annotations.add(annotation("Description", description));
+				}
+				if(period != null) {
+					annotations.add(annotation("Period", period));
+				}
+				final ArrayList<Object> descriptors = new ArrayList<>();
+				for(final Object[] field : fields) {
+					final ArrayList<Object> elements = new ArrayList<>();
+					elements.add(annotation("Label", field[2]));
+					if(field.length > 3) {
+						elements.add(annotation("Timespan", field[3]));
+					}
+					descriptors.add(Class.forName("jdk.jfr.ValueDescriptor")
+							.getConstructor(Class.class, String.class, List.class)
+							.newInstance(field[0], field[1], elements));
+				}
+				final Object factory = Class.forName("jdk.jfr.EventFactory")
+						.getMethod("create", List.class, List.class)
+						.invoke(null, annotations, descriptors);
+				return new JfrEvent(factory);
+			} catch (ReflectiveOperationException | LinkageError e) {
+				return DISABLED;
+			}
+		}
+
+		/** @return a field of an event type: its type, name, label, and (optionally) timespan unit */
+		private static Object[] field (final Object... field) {
+			return field;
+		}
+
+		/** @return a jdk.jfr.AnnotationElement of the jdk.jfr annotation type */
+		private static Object annotation (final String type, final Object value) throws ReflectiveOperationException {
+			final Class<?> annotation = Class.forName("jdk.jfr." + type);
+			return Class.forName("jdk.jfr.AnnotationElement")
+					.getConstructor(Class.class, Object.class)
+					.newInstance(annotation, value);
+		}
+	}
+}
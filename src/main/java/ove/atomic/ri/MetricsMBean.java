@@ -0,0 +1,75 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+/**
+ * JMX view of the InMemory metrics -- registered as {@value Metrics#OBJECT_NAME}
+ * if metrics are enabled. See {@link Metrics}.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/28/14
+ */
+public interface MetricsMBean {
+
+	/** @return number of TemporalContext reads */
+	long getReads ();
+
+	/** @return number of TemporalContext reads not satisfied by the read context */
+	long getReadMisses ();
+
+	/**
+	 * @return number of read misses by the number of ancestors walked, in
+	 * buckets [1], [2,4), [4,8) ... [128,)
+	 */
+	long[] getReadMissDepthHistogram ();
+
+	/** @return number of TemporalContext writes */
+	long getWrites ();
+
+	/** @return number of TemporalContexts branched (excluding roots) */
+	long getBranches ();
+
+	/** @return number of merges (and reconciles) */
+	long getMerges ();
+
+	/** @return total number of ids written by merges */
+	long getMergedEntries ();
+
+	/** @return the largest number of ids written by a merge */
+	long getMaxMergedEntries ();
+
+	/** @return total time spent merging, in nanoseconds */
+	long getMergeNanos ();
+
+	/** @return number of TemporalContexts that are reachable */
+	int getLiveContexts ();
+
+	/** @return number of values (and prior versions) retained by reachable TemporalContexts */
+	long getRetainedEntries ();
+
+	/** @return description of the n reachable contexts with most reads and writes */
+	String[] busiest (int n);
+
+	/** @return description of the n reachable contexts with the deepest timelines */
+	String[] deepest (int n);
+}
@@ -0,0 +1,200 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.atomic.Temporal;
+
+import java.util.Arrays;
+
+/**
+ * Append-only journal of the operations of a context.
+ *
+ * Each op is recorded as a (code, id, revision) triple in segmented
+ * primitive arrays; appending allocates only when a segment fills up and
+ * no Temporal.Context.Op objects are created until {@link #operations()}
+ * is called. Reads may also record the context holding the value read.
+ *
+ * Codes are encoded in a byte: Context.Op.Codes by ordinal, followed by
+ * Flow.Op.Codes (offset by {@link #FLOW}).
+ *
+ * Not thread-safe.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/20/14
+ */
+final class OpLog {
+
+	/** offset of Flow.Op.Code encodings */
+	static final byte FLOW = (byte) Temporal.Context.Op.Code.values().length;
+
+	/** encoded codes */
+	static final byte INITIALIZE = encode(Temporal.Context.Op.Code.initialize);
+	static final byte BRANCH = encode(Temporal.Context.Op.Code.branch);
+	static final byte MERGE = encode(Temporal.Context.Op.Code.merge);
+	static final byte COMMIT = encode(Temporal.Context.Op.Code.commit);
+	static final byte READ = encode(Temporal.Flow.Op.Code.read);
+	static final byte WRITE = encode(Temporal.Flow.Op.Code.write);
+	static final byte FREEZE = encode(Temporal.Flow.Op.Code.freeze);
+	static final byte DELETE = encode(Temporal.Flow.Op.Code.delete);
+
+	/** id recorded for context (not reference) ops */
+	static final int NO_ID = -1;
+
+	/** */
+	private static final int SEGMENT_BITS = 10;
+
+	/** */
+	private static final int SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+
+	/** */
+	private byte[][] codes = new byte[1][];
+
+	/** */
+	private int[][] ids = new int[1][];
+
+	/** */
+	private long[][] revisions = new long[1][];
+
+	/** contexts holding the values read -- null until a read is recorded with one */
+	private Object[][] holders;
+
+	/** */
+	private int size;
+
+	/** @return number of recorded ops */
+	final int size () {
+		return size;
+	}
+
+	/** record an op */
+	final void append (final byte code, final int id, final long revision) {
+		final int segment = size >>> SEGMENT_BITS;
+		final int offset = size & SEGMENT_MASK;
+		if(offset == 0) {
+			if(segment == codes.length) {
+				codes = Arrays.copyOf(codes, segment << 1);
+				ids = Arrays.copyOf(ids, segment << 1);
+				revisions = Arrays.copyOf(revisions, segment << 1);
+			}
+			codes[segment] = new byte[1 << SEGMENT_BITS];
+			ids[segment] = new int[1 << SEGMENT_BITS];
+			revisions[segment] = new long[1 << SEGMENT_BITS];
+		}
+		codes[segment][offset] = code;
+		ids[segment][offset] = id;
+		revisions[segment][offset] = revision;
+		size++;
+	}
+
+	/** record a read, and the context holding the value read -- see Merge */
+	final void append (final byte code, final int id, final long revision, final Object holder) {
+		append(code, id, revision);
+		final int index = size - 1;
+		final int segment = index >>> SEGMENT_BITS;
+		if(holders == null || holders.length < codes.length) {
+			holders = holders == null ? new Object[codes.length][] : Arrays.copyOf(holders, codes.length);
+		}
+		if(holders[segment] == null) {
+			holders[segment] = new Object[1 << SEGMENT_BITS];
+		}
+		holders[segment][index & SEGMENT_MASK] = holder;
+	}
+
+	/** @return encoded code of op at index */
+	final byte codeAt (final int index) {
+		return codes[index >>> SEGMENT_BITS][index & SEGMENT_MASK];
+	}
+
+	/** @return id of op at index */
+	final int idAt (final int index) {
+		return ids[index >>> SEGMENT_BITS][index & SEGMENT_MASK];
+	}
+
+	/** @return revision of op at index */
+	final long revisionAt (final int index) {
+		return revisions[index >>> SEGMENT_BITS][index & SEGMENT_MASK];
+	}
+
+	/** @return context holding the value read by op at index, or null if not recorded */
+	final Object holderAt (final int index) {
+		final int segment = index >>> SEGMENT_BITS;
+		if(holders == null || segment >= holders.length || holders[segment] == null) {
+			return null;
+		}
+		return holders[segment][index & SEGMENT_MASK];
+	}
+
+	/** @return the recorded ops, in order */
+	final Temporal.Context.Op[] operations () {
+		final Temporal.Context.Op[] ops = new Temporal.Context.Op[size];
+		for(int i = 0; i < size; i++) {
+			ops[i] = new Operation(codeAt(i), idAt(i), revisionAt(i));
+		}
+		return ops;
+	}
+
+	static byte encode (final Temporal.Context.Op.Code code) {
+		return (byte) code.ordinal();
+	}
+
+	static byte encode (final Temporal.Flow.Op.Code code) {
+		return (byte) (FLOW + code.ordinal());
+	}
+
+	// ------------------------------------------------------------------
+	// OpLog.Operation
+	// ------------------------------------------------------------------
+	/** materialized view of a recorded op */
+	static final class Operation implements Temporal.Context.Op {
+		private final byte code;
+		private final int id;
+		private final long revision;
+
+		Operation (final byte code, final int id, final long revision) {
+			this.code = code;
+			this.id = id;
+			this.revision = revision;
+		}
+
+		@Override final public Code code () {
+			return code < FLOW ? Code.values()[code] : null;
+		}
+
+		@Override final public Temporal.Flow.Op.Code flowCode () {
+			return code < FLOW ? null : Temporal.Flow.Op.Code.values()[code - FLOW];
+		}
+
+		@Override final public int id () {
+			return id;
+		}
+
+		@Override final public long revision () {
+			return revision;
+		}
+
+		@Override final public String toString () {
+			final Object c = code < FLOW ? code() : flowCode();
+			return String.format("%s id:%d rev:%d", c, id, revision);
+		}
+	}
+}
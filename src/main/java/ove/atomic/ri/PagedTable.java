@@ -0,0 +1,78 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import java.util.Arrays;
+
+/**
+ * Direct indexed store of Objects for dense (non-negative) ids, e.g. those
+ * handed out by {@link Identities}.
+ *
+ * The index is a directory of fixed size pages of (1 + position) into the
+ * dense arrays of the Store, 0 marking an absent entry. Pages are only
+ * allocated for id ranges actually written in the context.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/19/14
+ */
+final class PagedTable extends Store {
+
+	/** */
+	private static final int PAGE_BITS = 10;
+
+	/** */
+	private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+	/** */
+	private static final int[][] NO_PAGES = new int[0][];
+
+	/** index pages: 1 + position of entry in dense arrays; 0 is absent */
+	private int[][] pages = NO_PAGES;
+
+	PagedTable () {
+		super(MIN_CAPACITY);
+	}
+
+	@Override final int position (final int id) {
+		assert id >= 0 : "ERR-dense storage requires non-negative ids";
+		final int p = id >>> PAGE_BITS;
+		if(p >= pages.length) {
+			return -1;
+		}
+		final int[] page = pages[p];
+		return page == null ? -1 : page[id & PAGE_MASK] - 1;
+	}
+
+	@Override final void index (final int id, final int position) {
+		final int p = id >>> PAGE_BITS;
+		if(p >= pages.length) {
+			pages = Arrays.copyOf(pages, Math.max(p + 1, pages.length << 1));
+		}
+		if(pages[p] == null) {
+			pages[p] = new int[1 << PAGE_BITS];
+		}
+		pages[p][id & PAGE_MASK] = position + 1;
+	}
+
+	@Override final void grown (final int capacity) { }
+}
@@ -0,0 +1,90 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide, monotonic revision clock of the InMemory timelines.
+ *
+ * A hybrid (logical) clock: each context stamps its writes from its own
+ * clock with after(), which only reads the process-wide clock, and the
+ * process-wide clock is only advanced with sync() at branch points (branch
+ * and merge). So writes do not contend on the process-wide clock, and a
+ * write anywhere that follows a branch (in real time) is stamped after the
+ * base of the branch: revisions stamped in different contexts of a timeline
+ * are comparable with the fork points of the timeline. Revisions of
+ * concurrent writes in different contexts may be equal.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/20/14
+ */
+final class Revisions {
+
+	/** */
+	private static final AtomicLong clock = new AtomicLong();
+
+	private Revisions () { }
+
+	/** @return a new revision, greater than all prior revisions */
+	static long next () {
+		return clock.incrementAndGet();
+	}
+
+	/**
+	 * @return a new revision, greater than local (e.g. the last revision of a
+	 * context) and all prior synchronized revisions -- e.g. the base of a branch
+	 */
+	static long sync (final long local) {
+		for(;;) {
+			final long current = clock.get();
+			final long revision = Math.max(current, local) + 1;
+			if(clock.compareAndSet(current, revision)) {
+				return revision;
+			}
+		}
+	}
+
+	/**
+	 * @return the revision of a write in a context whose last revision is
+	 * local: greater than local and all prior synchronized revisions. Reads,
+	 * but does not advance, the clock.
+	 */
+	static long after (final long local) {
+		return Math.max(local, clock.get()) + 1;
+	}
+
+	/** advance the clock to (at least) the given revision -- e.g. on recovery */
+	static void advance (final long revision) {
+		for(long current; (current = clock.get()) < revision; ) {
+			if(clock.compareAndSet(current, revision)) {
+				return;
+			}
+		}
+	}
+
+	/** @return the latest revision handed out */
+	static long current () {
+		return clock.get();
+	}
+}
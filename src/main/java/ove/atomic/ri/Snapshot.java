@@ -0,0 +1,707 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.atomic.Temporal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static ove.atomic.ri.InMemory.NilContext;
+
+/**
+ * Binary snapshot of a tree of Temporal.Contexts -- their names, parent
+ * links, and values written (modsets) -- for shipping a timeline to another
+ * JVM, or warming a new instance without rebuilding it.
+ * <p>
+ * A snapshot is loaded in place from a (mapped) buffer: nothing is copied or
+ * decoded on load. Contexts of a loaded snapshot binary search their (sorted)
+ * ids in the buffer, and decode a value on its first read.
+ * <p>
+ * Ids are those of the writing process: its epoch (see Identities). A
+ * snapshot loaded by another process imports them -- reads translate the ids
+ * of the loading process to those of the snapshot, and values are decoded
+ * with their references reattached to imported ids. Named references (see
+ * write(File, Codec, Map, Temporal.Context...)) are the way into the values
+ * of a snapshot loaded by another process.
+ * <p>
+ * Layout (big endian, all sections 8 byte aligned):
+ * <pre>
+ * header     [int magic][int version][int contexts][int references][long epoch][long references section]
+ * table      per context [int parent][int entries][int name length][int reserved][long name][long section]
+ * names      utf-8, of contexts and references
+ * values     encoded values
+ * sections   per context [int ids (sorted)][long revisions][16 byte refs: long value, int length (-1 is null, -2 is deleted), int reserved]
+ * references per named reference [int id][int kind][int name length][int reserved][long name]
+ * </pre>
+ * Contexts are in tree order (a parent precedes its children), and parent
+ * is the index of the parent context, or -1 for a root.
+ * <p>
+ * REVU: version 1 snapshots (a 16 byte header, with no epoch or references)
+ * are loaded as snapshots of this process.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/26/14
+ */
+public final class Snapshot {
+
+	/** "OVES" */
+	private static final int MAGIC = 0x4f564553;
+
+	/** */
+	private static final int VERSION = 2;
+
+	/** */
+	private static final int HEADER = 32;
+
+	/** size of a context table entry */
+	private static final int ENTRY = 32;
+
+	/** size of a value ref */
+	private static final int REF = 16;
+
+	/** size of a named reference entry */
+	private static final int NAMED = 24;
+
+	/** files are mapped in chunks of 1GB -- a multiple of 8, so aligned ints and longs never straddle chunks */
+	private static final int CHUNK_BITS = 30;
+
+	/** */
+	private final Region region;
+
+	/** */
+	private final Codec codec;
+
+	/** of the ids of this snapshot */
+	private final Identities.Import imports;
+
+	/** true if the ids of this snapshot are ids of this process */
+	private final boolean local;
+
+	/** in tree order */
+	private final SnapshotContext[] contexts;
+
+	/** named references, by name */
+	private final Map<String, Identities.Exported> references = new HashMap<>();
+
+	private Snapshot (final Region region, final Codec codec) {
+		this.region = region;
+		this.codec = codec;
+		if(region.getInt(0) != MAGIC) {
+			throw new IllegalArgumentException("ERR-not a snapshot");
+		}
+		final int version = region.getInt(4);
+		if(version != VERSION && version != 1) {
+			throw new IllegalArgumentException(String.format("ERR-unsupported snapshot version %d", version));
+		}
+		final int header = version == 1 ? 16 : HEADER;
+		this.imports = new Identities.Import(version == 1 ? Identities.epoch : region.getLong(16));
+		this.local = imports.local();
+		this.contexts = new SnapshotContext[region.getInt(8)];
+		for(int i = 0; i < contexts.length; i++) {
+			final long entry = header + (long) i * ENTRY;
+			final int parent = region.getInt(entry);
+			contexts[i] = new SnapshotContext(this,
+					parent < 0 ? NilContext : contexts[parent],
+					string(region.getLong(entry + 16), region.getInt(entry + 8)),
+					region.getInt(entry + 4),
+					region.getLong(entry + 24));
+		}
+		if(version != 1) {
+			for(int i = 0; i < region.getInt(12); i++) {
+				final long entry = region.getLong(24) + (long) i * NAMED;
+				references.put(string(region.getLong(entry + 16), region.getInt(entry + 8)),
+						new Identities.Exported(region.getInt(entry), (byte) region.getInt(entry + 4)));
+			}
+		}
+	}
+
+	/** @return utf-8 string of length bytes at position */
+	private String string (final long position, final int length) {
+		final byte[] bytes = new byte[length];
+		region.get(position, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/** @return the id of the snapshot of id of this process, or -1 if none */
+	private int key (final int id) {
+		return local ? id : imports.foreign(id);
+	}
+
+	// ------------------------------------------------------------------
+	// loading
+	// ------------------------------------------------------------------
+
+	/** @return snapshot in buffer, from its position -- the buffer is not copied */
+	public static Snapshot load (final ByteBuffer buffer, final Codec codec) {
+		return new Snapshot(new Region(new ByteBuffer[]{ buffer.slice() }, 31), codec);
+	}
+
+	/** @return snapshot in file, mapped read-only -- files larger than 2GB are mapped in chunks */
+	public static Snapshot map (final File file, final Codec codec) {
+		try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			final FileChannel channel = raf.getChannel();
+			final long size = channel.size();
+			final ByteBuffer[] chunks = new ByteBuffer[(int) ((size + (1L << CHUNK_BITS) - 1) >>> CHUNK_BITS)];
+			for(int i = 0; i < chunks.length; i++) {
+				final long offset = (long) i << CHUNK_BITS;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(1L << CHUNK_BITS, size - offset));
+			}
+			return new Snapshot(new Region(chunks, CHUNK_BITS), codec);
+		} catch (IOException e) {
+			throw new RuntimeException(String.format("ERR-map %s", file), e);
+		}
+	}
+
+	/** @return the contexts of this snapshot, in tree order */
+	public final List<Temporal.Context> contexts () {
+		return Arrays.<Temporal.Context>asList(contexts.clone());
+	}
+
+	/**
+	 * @return the reference named when this snapshot was written, or null if
+	 * none -- loaded by another process, a reference of the same kind
+	 * reattached to the (imported) id of the snapshot
+	 */
+	@SuppressWarnings("unchecked")
+	public final synchronized <R> R reference (final String name) {
+		final Identities.Exported exported = references.get(name);
+		return exported == null ? null : (R) Identities.resolve(imports.id(exported.id), exported.kind);
+	}
+
+	/** @return the (last, in tree order) context of this snapshot with given name, or null */
+	public final Temporal.Context context (final String name) {
+		for(int i = contexts.length - 1; i >= 0; i--) {
+			if(contexts[i].name.equals(name)) {
+				return contexts[i];
+			}
+		}
+		return null;
+	}
+
+	// ------------------------------------------------------------------
+	// writing
+	// ------------------------------------------------------------------
+
+	/**
+	 * Write a snapshot of the given contexts and all of their ancestors to file.
+	 * Contexts other than InMemory.TemporalContext are snapshot by value (of
+	 * their modset) and at revision 0, unless they are Temporal.Timelines.
+	 * <p>
+	 * The snapshot is written to a temporary file that then replaces file, so
+	 * a snapshot mapped from file remains valid.
+	 * <p>
+	 * REVU: contexts must not be written while snapshot.
+	 */
+	public static void write (final File file, final Codec codec, final Temporal.Context... contexts) {
+		write(file, codec, Collections.<String, Object>emptyMap(), contexts);
+	}
+
+	/**
+	 * Write a snapshot of the given contexts, as write(File, Codec,
+	 * Temporal.Context...), and the named (InMemory) references -- e.g. the
+	 * roots of structures written to the contexts -- see reference(String).
+	 * @throws IllegalArgumentException if a reference is not an InMemory reference
+	 */
+	public static void write (final File file, final Codec codec, final Map<String, ?> references, final Temporal.Context... contexts) {
+		final int named = references.size();
+		final byte[][] referenceNames = new byte[named][];
+		final int[] referenceIds = new int[named];
+		final byte[] referenceKinds = new byte[named];
+		final long[] referenceNamesAt = new long[named];
+		int k = 0;
+		for(final Map.Entry<String, ?> reference : references.entrySet()) {
+			referenceIds[k] = Identities.idOf(reference.getValue());
+			if(referenceIds[k] < 0) {
+				throw new IllegalArgumentException(String.format("ERR-not an InMemory reference: %s", reference.getKey()));
+			}
+			referenceKinds[k] = Identities.kindOf(reference.getValue());
+			Identities.export(reference.getValue(), referenceIds[k]);
+			referenceNames[k++] = reference.getKey().getBytes(StandardCharsets.UTF_8);
+		}
+		final List<Temporal.Context> tree = new ArrayList<>();
+		final IdentityHashMap<Temporal.Context, Integer> index = new IdentityHashMap<>();
+		final ArrayDeque<Temporal.Context> chain = new ArrayDeque<>();
+		for(final Temporal.Context context : contexts) {
+			for(Temporal.Context c = context; c != NilContext && !index.containsKey(c); c = c.parent()) {
+				chain.push(c);
+			}
+			while(!chain.isEmpty()) {
+				index.put(chain.peek(), tree.size());
+				tree.add(chain.pop());
+			}
+		}
+		final int n = tree.size();
+		final int[] parents = new int[n];
+		final byte[][] names = new byte[n][];
+		final Entries[] entries = new Entries[n];
+		final long[] namesAt = new long[n];
+		final long[] sections = new long[n];
+		final File tmp = new File(file.getPath() + ".tmp");
+		try (final RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+			raf.setLength(0);
+			final Writer out = new Writer(raf.getChannel());
+			out.skip(HEADER + (long) n * ENTRY);
+			for(int i = 0; i < n; i++) {
+				final Temporal.Context context = tree.get(i);
+				parents[i] = context.parent() == NilContext ? -1 : index.get(context.parent());
+				names[i] = name(context).getBytes(StandardCharsets.UTF_8);
+				namesAt[i] = out.position;
+				out.put(names[i]);
+			}
+			for(int i = 0; i < named; i++) {
+				referenceNamesAt[i] = out.position;
+				out.put(referenceNames[i]);
+			}
+			out.align();
+			for(int i = 0; i < n; i++) {
+				entries[i] = new Entries(tree.get(i));
+				entries[i].values = new long[entries[i].ids.length];
+				entries[i].lengths = new int[entries[i].ids.length];
+				for(int j = 0; j < entries[i].ids.length; j++) {
+					final Object value = entries[i].value(j);
+					if(value == null) {
+						entries[i].lengths[j] = -1;
+					} else if(value == Store.TOMBSTONE) {
+						entries[i].lengths[j] = -2;
+					} else {
+						final byte[] bytes = codec.encode(value);
+						entries[i].values[j] = out.position;
+						entries[i].lengths[j] = bytes.length;
+						out.put(bytes);
+					}
+				}
+				entries[i].release();
+			}
+			out.align();
+			for(int i = 0; i < n; i++) {
+				final Entries e = entries[i];
+				sections[i] = out.position;
+				for(final int id : e.ids) {
+					out.putInt(id);
+				}
+				out.align();
+				for(final long revision : e.revisions) {
+					out.putLong(revision);
+				}
+				for(int j = 0; j < e.ids.length; j++) {
+					out.putLong(e.values[j]);
+					out.putInt(e.lengths[j]);
+					out.putInt(0);
+				}
+			}
+			final long referencesAt = out.position;
+			for(int i = 0; i < named; i++) {
+				out.putInt(referenceIds[i]);
+				out.putInt(referenceKinds[i]);
+				out.putInt(referenceNames[i].length);
+				out.putInt(0);
+				out.putLong(referenceNamesAt[i]);
+			}
+			out.flush();
+			final ByteBuffer table = ByteBuffer.allocate(HEADER + n * ENTRY);
+			table.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(named);
+			table.putLong(Identities.epoch).putLong(referencesAt);
+			for(int i = 0; i < n; i++) {
+				table.putInt(parents[i]).putInt(entries[i].ids.length).putInt(names[i].length).putInt(0);
+				table.putLong(namesAt[i]).putLong(sections[i]);
+			}
+			table.flip();
+			long position = 0;
+			while(table.hasRemaining()) {
+				position += raf.getChannel().write(table, position);
+			}
+			raf.getChannel().force(true);
+		} catch (IOException e) {
+			throw new RuntimeException(String.format("ERR-snapshot %s", file), e);
+		}
+		if(!tmp.renameTo(file)) {
+			throw new RuntimeException(String.format("ERR-snapshot rename %s", file));
+		}
+	}
+
+	/** @return name of context -- generated for contexts that are unnamed */
+	private static String name (final Temporal.Context context) {
+		if(context instanceof InMemory.TemporalContext) {
+			return ((InMemory.TemporalContext) context).name;
+		}
+		if(context instanceof SnapshotContext) {
+			return ((SnapshotContext) context).name;
+		}
+		return String.format("anon-snapshot-context-%d", System.identityHashCode(context));
+	}
+
+	// ------------------------------------------------------------------
+	// Snapshot.Entries
+	// ------------------------------------------------------------------
+	/** the values written in a context, in id order */
+	private static final class Entries {
+		final int[] ids;
+		final long[] revisions;
+		/** (file) positions and lengths of encoded values */
+		long[] values;
+		int[] lengths;
+		/** source of values -- released once encoded */
+		private Temporal.Context context;
+		private Store store;
+		private int[] positions;
+
+		Entries (final Temporal.Context context) {
+			if(context instanceof InMemory.TemporalContext) {
+				final Store store = ((InMemory.TemporalContext) context).store();
+				final long[] sorted = new long[store.size()];
+				for(int i = 0; i < sorted.length; i++) {
+					sorted[i] = ((long) store.idAt(i) << 32) | i;
+				}
+				Arrays.sort(sorted);
+				this.ids = new int[sorted.length];
+				this.positions = new int[sorted.length];
+				this.revisions = new long[sorted.length];
+				for(int i = 0; i < sorted.length; i++) {
+					ids[i] = (int) (sorted[i] >> 32);
+					positions[i] = (int) sorted[i];
+					revisions[i] = store.revisionAt(positions[i]);
+				}
+				this.store = store;
+			} else {
+				this.ids = context.modset();
+				Arrays.sort(ids);
+				this.revisions = new long[ids.length];
+				if(context instanceof Temporal.Timeline) {
+					for(int i = 0; i < ids.length; i++) {
+						revisions[i] = ((Temporal.Timeline) context).revision(ids[i]);
+					}
+				}
+				this.context = context;
+			}
+		}
+
+		final Object value (final int i) {
+			return store != null ? store.valueAt(positions[i]) : context.read(ids[i]);
+		}
+
+		final void release () {
+			context = null;
+			store = null;
+			positions = null;
+		}
+	}
+
+	// ------------------------------------------------------------------
+	// Snapshot.Writer
+	// ------------------------------------------------------------------
+	/** buffered sequential writer of a channel, tracking (long) position */
+	private static final class Writer {
+		final FileChannel channel;
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+		long position;
+
+		Writer (final FileChannel channel) {
+			this.channel = channel;
+		}
+
+		final void skip (final long bytes) throws IOException {
+			flush();
+			position += bytes;
+		}
+
+		final void align () throws IOException {
+			while((position & 7) != 0) {
+				ensure(1);
+				buffer.put((byte) 0);
+				position++;
+			}
+		}
+
+		final void putInt (final int v) throws IOException {
+			ensure(4);
+			buffer.putInt(v);
+			position += 4;
+		}
+
+		final void putLong (final long v) throws IOException {
+			ensure(8);
+			buffer.putLong(v);
+			position += 8;
+		}
+
+		final void put (final byte[] bytes) throws IOException {
+			for(int off = 0; off < bytes.length; ) {
+				ensure(1);
+				final int len = Math.min(buffer.remaining(), bytes.length - off);
+				buffer.put(bytes, off, len);
+				position += len;
+				off += len;
+			}
+		}
+
+		private void ensure (final int bytes) throws IOException {
+			if(buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		/** write buffer, which ends at position */
+		final void flush () throws IOException {
+			buffer.flip();
+			long at = position - buffer.remaining();
+			while(buffer.hasRemaining()) {
+				at += channel.write(buffer, at);
+			}
+			buffer.clear();
+		}
+	}
+
+	// ------------------------------------------------------------------
+	// Snapshot.Region
+	// ------------------------------------------------------------------
+	/** (long) addressed view of one or more buffers of a snapshot */
+	private static final class Region {
+		final ByteBuffer[] chunks;
+		final int bits;
+		final long mask;
+
+		Region (final ByteBuffer[] chunks, final int bits) {
+			this.chunks = chunks;
+			this.bits = bits;
+			this.mask = (1L << bits) - 1;
+		}
+
+		final int getInt (final long position) {
+			return chunks[(int) (position >>> bits)].getInt((int) (position & mask));
+		}
+
+		final long getLong (final long position) {
+			return chunks[(int) (position >>> bits)].getLong((int) (position & mask));
+		}
+
+		/** copy bytes at position -- may straddle chunks */
+		final void get (long position, final byte[] bytes) {
+			for(int off = 0; off < bytes.length; ) {
+				final ByteBuffer chunk = chunks[(int) (position >>> bits)].duplicate();
+				chunk.position((int) (position & mask));
+				final int len = Math.min(chunk.remaining(), bytes.length - off);
+				chunk.get(bytes, off, len);
+				off += len;
+				position += len;
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------
+	// Snapshot.SnapshotContext
+	// ------------------------------------------------------------------
+	/**
+	 * Read-only context of a loaded snapshot. Branches are (writable)
+	 * InMemory.TemporalContexts, so a loaded timeline is continued by
+	 * branching its contexts.
+	 * <p>
+	 * Values are decoded on first read, and the same (decoded) value is then
+	 * returned to all readers. Prior versions are not snapshot. Ids are
+	 * translated to those of the snapshot on read -- see Snapshot.
+	 */
+	public static final class SnapshotContext implements Temporal.Timeline {
+
+		/** */
+		private final Snapshot snapshot;
+
+		/** */
+		public final String name;
+
+		/** */
+		private final Temporal.Context parent;
+
+		/** number of ids written in this context */
+		private final int entries;
+
+		/** positions of the sorted ids, revisions, and value refs of this context */
+		private final long ids;
+		private final long revisions;
+		private final long refs;
+
+		/** decoded values -- allocated on first read */
+		private volatile AtomicReferenceArray<Object> decoded;
+
+		private SnapshotContext (final Snapshot snapshot, final Temporal.Context parent, final String name, final int entries, final long section) {
+			this.snapshot = snapshot;
+			this.parent = parent;
+			this.name = name;
+			this.entries = entries;
+			this.ids = section;
+			this.revisions = (section + 4L * entries + 7) & ~7L;
+			this.refs = revisions + 8L * entries;
+		}
+
+		/** @return position of (snapshot) id in this context, or -1 */
+		private int find (final int id) {
+			final Region region = snapshot.region;
+			int lo = 0;
+			int hi = entries - 1;
+			while(lo <= hi) {
+				final int mid = (lo + hi) >>> 1;
+				final int v = region.getInt(ids + 4L * mid);
+				if(v < id) {
+					lo = mid + 1;
+				} else if(v > id) {
+					hi = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			return -1;
+		}
+
+		/** @return value at position, decoded on first read */
+		private Object value (final int position) {
+			AtomicReferenceArray<Object> decoded = this.decoded;
+			if(decoded == null) {
+				synchronized (this) {
+					if((decoded = this.decoded) == null) {
+						this.decoded = decoded = new AtomicReferenceArray<>(entries);
+					}
+				}
+			}
+			final Object value = decoded.get(position);
+			if(value != null) {
+				return value;
+			}
+			final long ref = refs + (long) REF * position;
+			final int length = snapshot.region.getInt(ref + 8);
+			if(length < 0) {
+				return length == -2 ? Store.TOMBSTONE : null;
+			}
+			final byte[] bytes = new byte[length];
+			snapshot.region.get(snapshot.region.getLong(ref), bytes);
+			decoded.compareAndSet(position, null, snapshot.imports.decode(snapshot.codec, bytes, 0, length));
+			return decoded.get(position);
+		}
+
+		@Override final public Temporal.Context branch () {
+			final String name = String.format("anon-child-temporal-context-%d", System.currentTimeMillis());
+			return this.branch(name);
+		}
+
+		@Override final public Temporal.Context branch (final String name) {
+			return new InMemory.TemporalContext(this, name);
+		}
+
+		/** REVU: merges into a (TemporalContext) branch of this context, i.e. two levels down */
+		@Override final public Temporal.Context merge (final Temporal.Context... contexts) {
+			return branch().merge(contexts);
+		}
+
+		@Override final public <T> void write (final int id, final T value) {
+			throw new IllegalStateException(String.format("ERR-snapshot context %s is read-only - branch to write", name));
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override final public <T> T read (final int id) {
+			final int key = snapshot.key(id);
+			if(key < 0) {
+				return null;
+			}
+			Temporal.Context context = this;
+			do {
+				final SnapshotContext c = (SnapshotContext) context;
+				final int position = c.find(key);
+				if(position >= 0) {
+					final Object value = c.value(position);
+					if(value != null) {
+						return value == Store.TOMBSTONE ? null : (T) value;
+					}
+				}
+				context = c.parent;
+			} while (context != NilContext);
+			return null;
+		}
+
+		@Override final public long revision (final int id) {
+			final int key = snapshot.key(id);
+			if(key < 0) {
+				return -1L;
+			}
+			Temporal.Context context = this;
+			do {
+				final SnapshotContext c = (SnapshotContext) context;
+				final int position = c.find(key);
+				if(position >= 0) {
+					return snapshot.region.getLong(c.revisions + 8L * position);
+				}
+				context = c.parent;
+			} while (context != NilContext);
+			return -1L;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override final public <T> T read (final int id, final long revision) {
+			final int key = snapshot.key(id);
+			if(key < 0) {
+				return null;
+			}
+			Temporal.Context context = this;
+			do {
+				final SnapshotContext c = (SnapshotContext) context;
+				final int position = c.find(key);
+				if(position >= 0 && snapshot.region.getLong(c.revisions + 8L * position) <= revision) {
+					final Object value = c.value(position);
+					if(value != null) {
+						return value == Store.TOMBSTONE ? null : (T) value;
+					}
+				}
+				context = c.parent;
+			} while (context != NilContext);
+			return null;
+		}
+
+		/** @return ids of this process -- ids of a snapshot of another process are imported */
+		@Override final public int[] modset () {
+			final int[] modset = new int[entries];
+			for(int i = 0; i < entries; i++) {
+				modset[i] = snapshot.imports.id(snapshot.region.getInt(ids + 4L * i));
+			}
+			return modset;
+		}
+
+		/** @return no ops -- operations are not snapshot */
+		@Override final public Op[] operations () {
+			return new Op[0];
+		}
+
+		@Override final public Temporal.Context parent () {
+			return parent;
+		}
+	}
+}
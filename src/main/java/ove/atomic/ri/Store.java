@@ -0,0 +1,238 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import java.util.Arrays;
+
+/**
+ * Base of the (per context) storage of values keyed by reference id.
+ *
+ * Entries are kept in insertion order in the dense {@link #ids},
+ * {@link #values}, and {@link #revisions} arrays; subclasses only provide
+ * the id to position index. The dense id array is, by construction, the modset of the owning
+ * context.
+ *
+ * Primitive values (of TemporalInt, TemporalLong, TemporalDouble) are held
+ * unboxed in the {@link #lanes} array, with their {@link Lane} as the marker
+ * value, and are boxed on access as Objects.
+ *
+ * Not thread-safe. Entries are never removed.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/19/14
+ */
+abstract class Store {
+
+	/** */
+	static final int MIN_CAPACITY = 8;
+
+	/** value of a deleted id -- see TemporalContext#delete(int) */
+	static final Object TOMBSTONE = new Object() {
+		@Override public String toString () { return "tombstone"; }
+	};
+
+	/** dense, insertion ordered, entry ids */
+	int[] ids;
+
+	/** dense, insertion ordered, entry values */
+	Object[] values;
+
+	/** dense, insertion ordered, revision of last put of entry */
+	long[] revisions;
+
+	/** dense, insertion ordered, bits of primitive entry values -- null until a primitive is put */
+	long[] lanes;
+
+	/** */
+	int size;
+
+	Store (final int expected) {
+		final int capacity = capacityFor(expected);
+		this.ids = new int[capacity];
+		this.values = new Object[capacity];
+		this.revisions = new long[capacity];
+	}
+
+	/** @return a new, empty store of the given storage mode */
+	static Store of (final InMemory.Storage storage) {
+		switch (storage) {
+			case hashed: return new IntTable();
+			case dense:  return new PagedTable();
+			default: throw new RuntimeException("BUG");
+		}
+	}
+
+	/** @return the (insertion order) position of the entry, or -1 if none */
+	abstract int position (final int id);
+
+	/** index a newly added entry */
+	abstract void index (final int id, final int position);
+
+	/** dense arrays have grown to capacity */
+	abstract void grown (final int capacity);
+
+	/** @return number of entries */
+	final int size () {
+		return size;
+	}
+
+	/** @return id of the entry at (insertion order) position */
+	final int idAt (final int position) {
+		return ids[position];
+	}
+
+	/** @return value of the entry at (insertion order) position -- primitives are boxed */
+	final Object valueAt (final int position) {
+		final Object value = values[position];
+		return value instanceof Lane ? ((Lane) value).box(lanes[position]) : value;
+	}
+
+	/** @return value, or the Lane of a primitive value, of the entry at (insertion order) position */
+	final Object rawAt (final int position) {
+		return values[position];
+	}
+
+	/** @return bits of the primitive value of the entry at (insertion order) position */
+	final long bitsAt (final int position) {
+		return lanes == null ? 0L : lanes[position];
+	}
+
+	/** @return revision of the entry at (insertion order) position */
+	final long revisionAt (final int position) {
+		return revisions[position];
+	}
+
+	/** @return true if store has an entry for id (regardless of its value) */
+	final boolean contains (final int id) {
+		return position(id) >= 0;
+	}
+
+	/** @return value mapped to id, or null if none */
+	final Object get (final int id) {
+		final int position = position(id);
+		return position < 0 ? null : valueAt(position);
+	}
+
+	/** @return the (insertion order) position of the entry */
+	final int put (final int id, final Object value, final long revision) {
+		final int position = position(id);
+		if(position < 0) {
+			return add(id, value, revision);
+		}
+		set(position, value, revision);
+		return position;
+	}
+
+	/** @return the (insertion order) position of the new entry -- id must be absent */
+	final int add (final int id, final Object value, final long revision) {
+		if(size == ids.length) {
+			resize(ids.length << 1);
+		}
+		final int position = size++;
+		ids[position] = id;
+		values[position] = value;
+		revisions[position] = revision;
+		index(id, position);
+		return position;
+	}
+
+	/** update the entry at (insertion order) position */
+	final void set (final int position, final Object value, final long revision) {
+		values[position] = value;
+		revisions[position] = revision;
+	}
+
+	/** @return the (insertion order) position of the new primitive entry -- id must be absent */
+	final int add (final int id, final Lane lane, final long bits, final long revision) {
+		final int position = add(id, lane, revision);
+		set(position, lane, bits, revision);
+		return position;
+	}
+
+	/** update the entry at (insertion order) position with a primitive value */
+	final void set (final int position, final Lane lane, final long bits, final long revision) {
+		if(lanes == null) {
+			lanes = new long[ids.length];
+		}
+		values[position] = lane;
+		lanes[position] = bits;
+		revisions[position] = revision;
+	}
+
+	/** make room for (at least) expected entries in total */
+	final void reserve (final int expected) {
+		if(expected > ids.length) {
+			resize(capacityFor(expected));
+		}
+	}
+
+	/** @return a copy of the ids (modset) in insertion order -- see size() and idAt(int) to iterate without copying */
+	final int[] ids () {
+		return Arrays.copyOf(ids, size);
+	}
+
+	private void resize (final int capacity) {
+		ids = Arrays.copyOf(ids, capacity);
+		values = Arrays.copyOf(values, capacity);
+		revisions = Arrays.copyOf(revisions, capacity);
+		if(lanes != null) {
+			lanes = Arrays.copyOf(lanes, capacity);
+		}
+		grown(capacity);
+	}
+
+	static int capacityFor (final int expected) {
+		int capacity = MIN_CAPACITY;
+		while(capacity < expected) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	// ------------------------------------------------------------------
+	// Store.Lane
+	// ------------------------------------------------------------------
+	/** primitive value types -- the bits of a value are its (raw) long encoding */
+	enum Lane {
+		INT {
+			@Override final Object box (final long bits) { return Integer.valueOf((int) bits); }
+			@Override final long bits (final Object value) { return value == null ? 0L : ((Number) value).intValue(); }
+		},
+		LONG {
+			@Override final Object box (final long bits) { return Long.valueOf(bits); }
+			@Override final long bits (final Object value) { return value == null ? 0L : ((Number) value).longValue(); }
+		},
+		DOUBLE {
+			@Override final Object box (final long bits) { return Double.valueOf(Double.longBitsToDouble(bits)); }
+			@Override final long bits (final Object value) {
+				return Double.doubleToRawLongBits(value == null ? 0d : ((Number) value).doubleValue());
+			}
+		};
+
+		/** @return boxed value of bits */
+		abstract Object box (long bits);
+
+		/** @return bits of (boxed) value -- 0 (bits of the default value) if null */
+		abstract long bits (Object value);
+	}
+}
@@ -0,0 +1,140 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.atomic.Temporal;
+
+/**
+ * Runtime support of instrumented {@link Temporal.Reference.Versioned} fields.
+ * <p>
+ * The versioned instance fields of a class are replaced by a single int base
+ * id per object, allocated on construction, and field k of the object is
+ * read and written as id base + k in the Temporal.Context of the current
+ * actor -- i.e. without a Temporal.Reference per field, or a virtual call.
+ * See the ove.atomic.agent module for the instrumenting agent.
+ * <p>
+ * Primitive fields read their default value if never written.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/29/14
+ */
+public final class VersionedFields {
+
+	private VersionedFields () { }
+
+	/**
+	 * @return base of count consecutive ids for the versioned fields of object.
+	 * If ids are recycled (see Identities) the fields are deleted in the
+	 * current context, so that they do not read the values of a prior owner.
+	 */
+	public static int allocate (final Object object, final int count) {
+		final int base = Identities.allocate(object, count);
+		if(Identities.recycle) {
+			final Temporal.Context context = InMemory.TemporalContext.get();
+			for(int k = 0; k < count; k++) {
+				InMemory.TemporalContext.delete(context, base + k);
+			}
+		}
+		return base;
+	}
+
+	public static Object read (final int id) {
+		return InMemory.TemporalContext.get().read(id);
+	}
+
+	public static void write (final int id, final Object value) {
+		InMemory.TemporalContext.get().write(id, value);
+	}
+
+	public static boolean readBoolean (final int id) {
+		final Boolean value = InMemory.TemporalContext.get().read(id);
+		return value != null && value;
+	}
+
+	public static void writeBoolean (final int id, final boolean value) {
+		InMemory.TemporalContext.get().write(id, value);
+	}
+
+	public static byte readByte (final int id) {
+		final Byte value = InMemory.TemporalContext.get().read(id);
+		return value == null ? 0 : value;
+	}
+
+	public static void writeByte (final int id, final byte value) {
+		InMemory.TemporalContext.get().write(id, value);
+	}
+
+	public static char readChar (final int id) {
+		final Character value = InMemory.TemporalContext.get().read(id);
+		return value == null ? 0 : value;
+	}
+
+	public static void writeChar (final int id, final char value) {
+		InMemory.TemporalContext.get().write(id, value);
+	}
+
+	public static short readShort (final int id) {
+		final Short value = InMemory.TemporalContext.get().read(id);
+		return value == null ? 0 : value;
+	}
+
+	public static void writeShort (final int id, final short value) {
+		InMemory.TemporalContext.get().write(id, value);
+	}
+
+	public static int readInt (final int id) {
+		final Integer value = InMemory.TemporalContext.get().read(id);
+		return value == null ? 0 : value;
+	}
+
+	public static void writeInt (final int id, final int value) {
+		InMemory.TemporalContext.get().write(id, value);
+	}
+
+	public static long readLong (final int id) {
+		final Long value = InMemory.TemporalContext.get().read(id);
+		return value == null ? 0L : value;
+	}
+
+	public static void writeLong (final int id, final long value) {
+		InMemory.TemporalContext.get().write(id, value);
+	}
+
+	public static float readFloat (final int id) {
+		final Float value = InMemory.TemporalContext.get().read(id);
+		return value == null ? 0f : value;
+	}
+
+	public static void writeFloat (final int id, final float value) {
+		InMemory.TemporalContext.get().write(id, value);
+	}
+
+	public static double readDouble (final int id) {
+		final Double value = InMemory.TemporalContext.get().read(id);
+		return value == null ? 0d : value;
+	}
+
+	public static void writeDouble (final int id, final double value) {
+		InMemory.TemporalContext.get().write(id, value);
+	}
+}
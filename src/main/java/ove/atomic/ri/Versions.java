@@ -0,0 +1,128 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+/**
+ * Bounded chain of the prior (overwritten) revisions of an id in a context,
+ * oldest first. Once full, the oldest revision is dropped on each push.
+ *
+ * Not thread-safe.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 5/22/14
+ */
+final class Versions {
+
+	/** ring of revisions (ascending in logical order) */
+	private final long[] revisions;
+
+	/** ring of values -- a Store.Lane marks a primitive value */
+	private final Object[] values;
+
+	/** ring of bits of primitive values -- null until a primitive is pushed */
+	private long[] lanes;
+
+	/** ring index of the oldest version */
+	private int head;
+
+	/** */
+	private int size;
+
+	/** revision of the first version ever pushed */
+	private long first;
+
+	/** true if versions have been dropped */
+	private boolean dropped;
+
+	Versions (final int capacity) {
+		assert capacity > 0 : "capacity must be positive";
+		this.revisions = new long[capacity];
+		this.values = new Object[capacity];
+	}
+
+	/** @return number of retained versions */
+	final int size () {
+		return size;
+	}
+
+	/** retain a version -- revision must be greater than all retained */
+	final void push (final long revision, final Object value, final long bits) {
+		final int capacity = revisions.length;
+		final int i;
+		if(size == 0 && !dropped) {
+			first = revision;
+		}
+		if(size == capacity) {
+			i = head;
+			head = (head + 1) % capacity;
+			dropped = true;
+		} else {
+			i = (head + size++) % capacity;
+		}
+		revisions[i] = revision;
+		values[i] = value;
+		if(value instanceof Store.Lane) {
+			if(lanes == null) {
+				lanes = new long[revisions.length];
+			}
+			lanes[i] = bits;
+		}
+	}
+
+	/** @return ring index of the latest version at or before revision, or -1 if none */
+	final int find (final long revision) {
+		int lo = 0;
+		int hi = size - 1;
+		int found = -1;
+		while(lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			final int i = (head + mid) % revisions.length;
+			if(revisions[i] <= revision) {
+				found = i;
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @return true if the version at the given revision has been dropped,
+	 * i.e. it is later than the first version but before the oldest retained
+	 */
+	final boolean dropped (final long revision) {
+		return dropped && revision >= first && find(revision) < 0;
+	}
+
+	/** @return revision at ring index */
+	final long revisionAt (final int i) {
+		return revisions[i];
+	}
+
+	/** @return value at ring index -- primitives are boxed */
+	final Object valueAt (final int i) {
+		final Object value = values[i];
+		return value instanceof Store.Lane ? ((Store.Lane) value).box(lanes[i]) : value;
+	}
+}
@@ -40,7 +40,8 @@ import ove.atomic.ri.InMemory;
  *
  * Further note that in a more developed variant, we would simply annotate the
  * stateful bits with Temporal annotations and instrument the class to inject
- * the Temporal.Reference related bits of code.
+ * the Temporal.Reference related bits of code. (See ove.atomic.agent, which
+ * does just that for @Temporal.Reference.Versioned fields.)
  *
  */
 public class ContactInfo {
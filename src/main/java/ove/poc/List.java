@@ -22,17 +22,22 @@
 
 package ove.poc;
 
+import ove.atomic.Mergeable;
 import ove.atomic.Temporal;
+import ove.atomic.TemporalInt;
 import ove.atomic.ri.InMemory;
 
+import java.io.Serializable;
+
 /**
  *
  * @author: Joubin <alphazero@sensesay.net>
  * @date: 5/11/14
  */
-public class List<T> {
+public class List<T> implements Serializable {
 	/* -- List.Node -------------------------------------------------- */
-	public class Node {
+	/** serializable (with its list) -- e.g. by Codec.serializable of a durable context */
+	public class Node implements Serializable {
 		final T value;
 		final Temporal.Reference<List<T>.Node> next;
 		Node(final T value) {
@@ -45,29 +50,40 @@ public class List<T> {
 		Node next() { return next.get(); }
 	}
 
-	// REVU: this can/should be pulled up (TODO) as a general utility class
-	public static class TemporalInteger extends InMemory.TemporalReference<Integer> {
-		public TemporalInteger (Integer initialValue) {
-			super(initialValue);
-		}
-		public void increment() {
-			this.set(this.get()+1);
-		}
-		public void decrement() {
-			this.set(this.get()-1);
-		}
-	}
-
 	/* -- List ------------------------------------------------------- */
 
-	final TemporalInteger          size;
+	final TemporalInt              size;
 	final Temporal.Reference<Node> head;
 
 	final Node terminal = new Node(null);
 
 	public List() {
-		this.head = new InMemory.TemporalReference<>(terminal);
-		this.size = new TemporalInteger(0);
+		this.head = new InMemory.MergeableReference<>(terminal, this::append);
+		this.size = new InMemory.IntReference(0, Mergeable.intCounter);
+	}
+
+	/**
+	 * append-merge of the head: nodes added by theirs since base are
+	 * prepended to ours.
+	 * REVU: if theirs removed nodes of base, and ours changed the head, the
+	 * nodes added by ours are not visible in theirs: the merge is a conflict.
+	 */
+	private Node append(final Node base, final Node ours, final Node theirs) {
+		if(theirs == base || theirs == ours) {
+			return ours;
+		}
+		if(ours == base) {
+			return theirs;
+		}
+		Node last = theirs;
+		for(Node next = last.next(); next != base; next = last.next()) {
+			if(next == null) {
+				throw new Mergeable.Conflict("ERR-head of list removed by merged context and changed by merging context");
+			}
+			last = next;
+		}
+		last.setNext(ours);
+		return theirs;
 	}
 
 	private Node head() { return head.get(); }
@@ -0,0 +1,535 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.poc;
+
+import ove.atomic.Temporal;
+import ove.atomic.ri.InMemory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Temporal hash map -- a fixed number of buckets, each the value of its own
+ * mergeable reference and each an immutable hash array mapped trie, so point
+ * reads and writes are a bucket read (and write) and an O(log32 n) trie op.
+ *
+ * Buckets merge key-wise: the keys theirs put or removed since the branch
+ * are put or removed in ours, so concurrent actors writing different keys
+ * (even of the same bucket) merge cleanly. Diffing theirs and base skips the
+ * subtries they share, so merging costs in proportion to theirs' changes.
+ * REVU: if both put (or removed) the same key, theirs wins.
+ *
+ * Null keys are permitted, null values are not.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 6/1/14
+ */
+public class TemporalMap<K, V> implements Iterable<Map.Entry<K, V>> {
+
+	/** */
+	private static final int BITS = 5;
+
+	/** */
+	private static final int MASK = (1 << BITS) - 1;
+
+	/* -- TemporalMap.Trie ------------------------------------------- */
+	/** immutable value of a bucket -- trie nodes are Entry, Collision, or Node */
+	static final class Trie {
+		static final Trie EMPTY = new Trie(null, 0);
+
+		final Object root;
+		final int size;
+
+		Trie(final Object root, final int size) {
+			this.root = root;
+			this.size = size;
+		}
+
+		Entry find(final int hash, final Object key) {
+			return TemporalMap.find(root, 0, hash, key);
+		}
+
+		Trie put(final Entry entry) {
+			final Object root = TemporalMap.put(this.root, 0, entry);
+			if(root == this.root) {
+				return this;
+			}
+			return new Trie(root, find(entry.hash, entry.key) == null ? size + 1 : size);
+		}
+
+		Trie remove(final int hash, final Object key) {
+			final Object root = TemporalMap.remove(this.root, 0, hash, key);
+			return root == this.root ? this : new Trie(root, size - 1);
+		}
+	}
+
+	/** immutable (key, value) of a trie */
+	static final class Entry implements Map.Entry<Object, Object> {
+		final int hash;
+		final Object key;
+		final Object value;
+
+		Entry(final int hash, final Object key, final Object value) {
+			this.hash = hash;
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override public Object getKey() { return key; }
+		@Override public Object getValue() { return value; }
+		@Override public Object setValue(final Object value) { throw new UnsupportedOperationException("ERR-entries are immutable"); }
+		@Override public String toString() { return String.format("%s=%s", key, value); }
+	}
+
+	/** entries of distinct keys of the same hash */
+	static final class Collision {
+		final int hash;
+		final Entry[] entries;
+
+		Collision(final int hash, final Entry[] entries) {
+			this.hash = hash;
+			this.entries = entries;
+		}
+	}
+
+	/** bitmap indexed node */
+	static final class Node {
+		final int bitmap;
+		final Object[] array;
+
+		Node(final int bitmap, final Object[] array) {
+			this.bitmap = bitmap;
+			this.array = array;
+		}
+
+		Object child(final int bit) {
+			return (bitmap & bit) == 0 ? null : array[Integer.bitCount(bitmap & (bit - 1))];
+		}
+	}
+
+	/* -- trie ops --------------------------------------------------- */
+
+	private static Entry find(Object node, int shift, final int hash, final Object key) {
+		while(node instanceof Node) {
+			node = ((Node) node).child(1 << ((hash >>> shift) & MASK));
+			shift += BITS;
+		}
+		if(node instanceof Entry) {
+			final Entry entry = (Entry) node;
+			return entry.hash == hash && Objects.equals(entry.key, key) ? entry : null;
+		}
+		if(node instanceof Collision && ((Collision) node).hash == hash) {
+			for(final Entry entry : ((Collision) node).entries) {
+				if(Objects.equals(entry.key, key)) {
+					return entry;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static Object put(final Object node, final int shift, final Entry entry) {
+		if(node == null) {
+			return entry;
+		}
+		if(node instanceof Node) {
+			final Node n = (Node) node;
+			final int bit = 1 << ((entry.hash >>> shift) & MASK);
+			final int i = Integer.bitCount(n.bitmap & (bit - 1));
+			if((n.bitmap & bit) == 0) {
+				final Object[] array = new Object[n.array.length + 1];
+				System.arraycopy(n.array, 0, array, 0, i);
+				array[i] = entry;
+				System.arraycopy(n.array, i, array, i + 1, n.array.length - i);
+				return new Node(n.bitmap | bit, array);
+			}
+			final Object child = put(n.array[i], shift + BITS, entry);
+			if(child == n.array[i]) {
+				return n;
+			}
+			final Object[] array = n.array.clone();
+			array[i] = child;
+			return new Node(n.bitmap, array);
+		}
+		if(node instanceof Entry) {
+			final Entry e = (Entry) node;
+			if(e.hash != entry.hash) {
+				return pair(e, e.hash, entry, shift);
+			}
+			if(Objects.equals(e.key, entry.key)) {
+				return e.value == entry.value ? e : entry;
+			}
+			return new Collision(entry.hash, new Entry[]{ e, entry });
+		}
+		final Collision c = (Collision) node;
+		if(c.hash != entry.hash) {
+			return pair(c, c.hash, entry, shift);
+		}
+		for(int i = 0; i < c.entries.length; i++) {
+			if(Objects.equals(c.entries[i].key, entry.key)) {
+				final Entry[] entries = c.entries.clone();
+				entries[i] = entry;
+				return new Collision(c.hash, entries);
+			}
+		}
+		final Entry[] entries = new Entry[c.entries.length + 1];
+		System.arraycopy(c.entries, 0, entries, 0, c.entries.length);
+		entries[c.entries.length] = entry;
+		return new Collision(c.hash, entries);
+	}
+
+	/** @return node of an Entry or Collision and an Entry of distinct hashes */
+	private static Node pair(final Object a, final int hash, final Entry b, final int shift) {
+		final int ia = (hash >>> shift) & MASK;
+		final int ib = (b.hash >>> shift) & MASK;
+		if(ia == ib) {
+			return new Node(1 << ia, new Object[]{ pair(a, hash, b, shift + BITS) });
+		}
+		return ia < ib
+				? new Node((1 << ia) | (1 << ib), new Object[]{ a, b })
+				: new Node((1 << ia) | (1 << ib), new Object[]{ b, a });
+	}
+
+	/** @return node without key -- the same node if key is absent, null if empty */
+	private static Object remove(final Object node, final int shift, final int hash, final Object key) {
+		if(node instanceof Node) {
+			final Node n = (Node) node;
+			final int bit = 1 << ((hash >>> shift) & MASK);
+			if((n.bitmap & bit) == 0) {
+				return n;
+			}
+			final int i = Integer.bitCount(n.bitmap & (bit - 1));
+			final Object child = remove(n.array[i], shift + BITS, hash, key);
+			if(child == n.array[i]) {
+				return n;
+			}
+			if(child == null) {
+				if(n.array.length == 1) {
+					return null;
+				}
+				final Object[] array = new Object[n.array.length - 1];
+				System.arraycopy(n.array, 0, array, 0, i);
+				System.arraycopy(n.array, i + 1, array, i, array.length - i);
+				return array.length == 1 && !(array[0] instanceof Node) ? array[0] : new Node(n.bitmap & ~bit, array);
+			}
+			if(n.array.length == 1 && !(child instanceof Node)) {
+				return child;
+			}
+			final Object[] array = n.array.clone();
+			array[i] = child;
+			return new Node(n.bitmap, array);
+		}
+		if(node instanceof Entry) {
+			final Entry e = (Entry) node;
+			return e.hash == hash && Objects.equals(e.key, key) ? null : e;
+		}
+		if(node instanceof Collision && ((Collision) node).hash == hash) {
+			final Entry[] entries = ((Collision) node).entries;
+			for(int i = 0; i < entries.length; i++) {
+				if(Objects.equals(entries[i].key, key)) {
+					if(entries.length == 2) {
+						return entries[1 - i];
+					}
+					final Entry[] remaining = new Entry[entries.length - 1];
+					System.arraycopy(entries, 0, remaining, 0, i);
+					System.arraycopy(entries, i + 1, remaining, i, remaining.length - i);
+					return new Collision(hash, remaining);
+				}
+			}
+		}
+		return node;
+	}
+
+	private static void forEach(final Object node, final Consumer<Entry> visitor) {
+		if(node instanceof Node) {
+			for(final Object child : ((Node) node).array) {
+				forEach(child, visitor);
+			}
+		} else if(node instanceof Entry) {
+			visitor.accept((Entry) node);
+		} else if(node instanceof Collision) {
+			for(final Entry entry : ((Collision) node).entries) {
+				visitor.accept(entry);
+			}
+		}
+	}
+
+	/** gather the entries of theirs that differ from base, and the entries of base absent in theirs */
+	private static void diff(final Object base, final Object theirs, final int shift, final ArrayList<Entry> puts, final ArrayList<Entry> removes) {
+		if(base == theirs) {
+			return;
+		}
+		if(base instanceof Node && theirs instanceof Node) {
+			final int bitmap = ((Node) base).bitmap | ((Node) theirs).bitmap;
+			for(int bits = bitmap; bits != 0; bits &= bits - 1) {
+				final int bit = Integer.lowestOneBit(bits);
+				diff(((Node) base).child(bit), ((Node) theirs).child(bit), shift + BITS, puts, removes);
+			}
+			return;
+		}
+		forEach(theirs, entry -> {
+			final Entry prior = find(base, shift, entry.hash, entry.key);
+			if(prior == null || !Objects.equals(prior.value, entry.value)) {
+				puts.add(entry);
+			}
+		});
+		forEach(base, entry -> {
+			if(find(theirs, shift, entry.hash, entry.key) == null) {
+				removes.add(entry);
+			}
+		});
+	}
+
+	/** key-wise merge of a bucket: the changes of theirs since base are applied to ours */
+	private static Trie merge(final Trie base, final Trie ours, final Trie theirs) {
+		if(theirs == base || theirs == ours) {
+			return ours;
+		}
+		if(ours == base) {
+			return theirs;
+		}
+		final ArrayList<Entry> puts = new ArrayList<>();
+		final ArrayList<Entry> removes = new ArrayList<>();
+		diff(base == null ? null : base.root, theirs.root, 0, puts, removes);
+		Trie merged = ours;
+		for(final Entry entry : removes) {
+			merged = merged.remove(entry.hash, entry.key);
+		}
+		for(final Entry entry : puts) {
+			merged = merged.put(entry);
+		}
+		return merged;
+	}
+
+	/* -- TemporalMap ------------------------------------------------ */
+
+	final Temporal.Reference<Trie>[] buckets;
+
+	/** number of bits of the bucket index -- see index(int) */
+	private final int bucketBits;
+
+	public TemporalMap() {
+		this(32);
+	}
+
+	/** REVU: buckets are fixed -- a power of two, best about the number of concurrently written keys */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public TemporalMap(final int buckets) {
+		assert buckets > 1 && Integer.bitCount(buckets) == 1 : "buckets is not a power of two";
+		this.bucketBits = Integer.numberOfTrailingZeros(buckets);
+		this.buckets = new Temporal.Reference[buckets];
+		for(int i = 0; i < buckets; i++) {
+			this.buckets[i] = new InMemory.MergeableReference<>(Trie.EMPTY, TemporalMap::merge);
+		}
+	}
+
+	private static int hash(final Object key) {
+		final int h = Objects.hashCode(key);
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return index of the bucket of hash -- the top bits of a multiplicative
+	 * (Fibonacci) mix, so small hashes spread over the buckets. The tries are
+	 * indexed by the low bits of the (unmixed) hash.
+	 */
+	private int index(final int hash) {
+		return (hash * 0x9E3779B9) >>> (32 - bucketBits);
+	}
+
+	private Temporal.Reference<Trie> bucket(final int hash) {
+		return buckets[index(hash)];
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(final K key) {
+		final int hash = hash(key);
+		final Entry entry = bucket(hash).get().find(hash, key);
+		return entry == null ? null : (V) entry.value;
+	}
+
+	public boolean containsKey(final K key) {
+		final int hash = hash(key);
+		return bucket(hash).get().find(hash, key) != null;
+	}
+
+	/**
+	 * @return the prior value of key, or null
+	 * @throws NullPointerException if value is null -- see remove(K)
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(final K key, final V value) {
+		if(value == null) {
+			throw new NullPointerException("ERR-null value - remove the key");
+		}
+		final int hash = hash(key);
+		final Temporal.Reference<Trie> bucket = bucket(hash);
+		final Trie trie = bucket.get();
+		final Entry prior = trie.find(hash, key);
+		final Trie updated = trie.put(new Entry(hash, key, value));
+		if(updated != trie) {
+			bucket.set(updated);
+		}
+		return prior == null ? null : (V) prior.value;
+	}
+
+	/**
+	 * put the entries of the map -- each bucket is read and written once
+	 * @throws NullPointerException if a value is null -- nothing is put
+	 */
+	public void putAll(final Map<? extends K, ? extends V> map) {
+		final Trie[] tries = new Trie[buckets.length];
+		for(final Map.Entry<? extends K, ? extends V> e : map.entrySet()) {
+			if(e.getValue() == null) {
+				throw new NullPointerException("ERR-null value - remove the key");
+			}
+			final int hash = hash(e.getKey());
+			final int b = index(hash);
+			if(tries[b] == null) {
+				tries[b] = buckets[b].get();
+			}
+			tries[b] = tries[b].put(new Entry(hash, e.getKey(), e.getValue()));
+		}
+		for(int b = 0; b < tries.length; b++) {
+			if(tries[b] != null) {
+				buckets[b].set(tries[b]);
+			}
+		}
+	}
+
+	/** @return the prior value of key, or null */
+	@SuppressWarnings("unchecked")
+	public V remove(final K key) {
+		final int hash = hash(key);
+		final Temporal.Reference<Trie> bucket = bucket(hash);
+		final Trie trie = bucket.get();
+		final Entry prior = trie.find(hash, key);
+		if(prior == null) {
+			return null;
+		}
+		bucket.set(trie.remove(hash, key));
+		return (V) prior.value;
+	}
+
+	/** O(buckets) */
+	public int size() {
+		int size = 0;
+		for(final Temporal.Reference<Trie> bucket : buckets) {
+			size += bucket.get().size;
+		}
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void forEach(final BiConsumer<? super K, ? super V> action) {
+		for(final Temporal.Reference<Trie> bucket : buckets) {
+			forEach(bucket.get().root, entry -> action.accept((K) entry.key, (V) entry.value));
+		}
+	}
+
+	/**
+	 * iterates the entries visible in the context of the iterating actor,
+	 * reading a bucket at a time -- entries are immutable
+	 */
+	@Override public Iterator<Map.Entry<K, V>> iterator() {
+		return new Iterator<Map.Entry<K, V>>() {
+			final ArrayList<Entry> entries = new ArrayList<>();
+			int bucket;
+			int i;
+			@Override public boolean hasNext() {
+				while(i == entries.size() && bucket < buckets.length) {
+					entries.clear();
+					i = 0;
+					forEach(buckets[bucket++].get().root, entries::add);
+				}
+				return i < entries.size();
+			}
+			@SuppressWarnings("unchecked")
+			@Override public Map.Entry<K, V> next() {
+				if(!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return (Map.Entry<K, V>) (Map.Entry<?, ?>) entries.get(i++);
+			}
+		};
+	}
+
+	/** @see #iterator() */
+	public Stream<Map.Entry<K, V>> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(), Spliterator.NONNULL), false);
+	}
+
+	/* -- test ------------------------------------------------------- */
+
+	public static void main (String[] args) throws InterruptedException{
+
+		final InMemory.TemporalActor rootActor = new InMemory.TemporalActor( () -> {
+
+			final Temporal.Actor self = InMemory.TemporalActor.currentActor();
+			final TemporalMap<String, Integer> map = new TemporalMap<>();
+			for(int i = 0; i < 100; i++) {
+				map.put(String.format("common-%d", i), i);
+			}
+
+			final Temporal.Actor task_1 = self.fork(() -> {
+				for(int i = 0; i < 50; i++) {
+					map.put(String.format("task-1-%d", i), i);
+				}
+				map.remove("common-1");
+				map.put("common-2", -2);
+			}, "task-1");
+
+			task_1.start();
+
+			for(int i = 0; i < 50; i++) {
+				map.put(String.format("top-level-%d", i), i);
+			}
+			map.remove("common-3");
+
+			self.merge(task_1);
+			List.puts("size: %d common-1: %s common-2: %s common-3: %s task-1-7: %s top-level-7: %s",
+					map.size(), map.get("common-1"), map.get("common-2"), map.get("common-3"), map.get("task-1-7"), map.get("top-level-7"));
+			List.puts("task-1 entries: %d", map.stream().filter(e -> e.getKey().startsWith("task-1")).count());
+
+			self.goBackInTime();
+			List.puts("size: %d", map.size());
+
+		}, "test-root"
+		);
+		rootActor.start();
+		rootActor.join();
+	}
+}
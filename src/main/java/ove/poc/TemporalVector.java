@@ -0,0 +1,366 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.poc;
+
+import ove.atomic.Temporal;
+import ove.atomic.ri.InMemory;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Temporal persistent vector -- a 32-way trie of chunks of 32 elements,
+ * with O(log32 n) indexed access and append.
+ *
+ * The trie, size, and the (unfilled) tail chunk are an immutable Root, the
+ * value of a single mergeable reference. Filled chunks are each the value of
+ * their own reference, so a set of an element writes one chunk and leaves
+ * the Root be. Reads of n elements are n/32 reference reads.
+ *
+ * Like List, concurrently appended elements are merged: the elements theirs
+ * appended since the branch are appended to ours.
+ * REVU: if theirs removed or replaced elements of base -- popped them, if
+ * only to add others, or set them in the tail of base -- theirs wins. Sets
+ * of (filled) chunks are last-writer-wins per chunk.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 6/1/14
+ */
+public class TemporalVector<T> implements Iterable<T> {
+
+	/** */
+	private static final int BITS = 5;
+
+	/** */
+	private static final int WIDTH = 1 << BITS;
+
+	/** */
+	private static final int MASK = WIDTH - 1;
+
+	/* -- TemporalVector.Root ---------------------------------------- */
+	/** immutable state of a vector -- index nodes are Object[], leaves are chunk references */
+	static final class Root {
+		static final Root EMPTY = new Root(0, BITS, new Object[WIDTH], new Object[0]);
+
+		final int count;
+		final int shift;
+		final Object[] index;
+		final Object[] tail;
+
+		Root(final int count, final int shift, final Object[] index, final Object[] tail) {
+			this.count = count;
+			this.shift = shift;
+			this.index = index;
+			this.tail = tail;
+		}
+
+		int tailOffset() {
+			return count < WIDTH ? 0 : ((count - 1) >>> BITS) << BITS;
+		}
+
+		/** @return the reference of the (filled) chunk of index i */
+		@SuppressWarnings("unchecked")
+		Temporal.Reference<Object[]> chunkFor(final int i) {
+			Object node = index;
+			for(int level = shift; level > 0; level -= BITS) {
+				node = ((Object[]) node)[(i >>> level) & MASK];
+			}
+			return (Temporal.Reference<Object[]>) node;
+		}
+
+		/** @return the elements of the chunk of index i */
+		Object[] arrayFor(final int i) {
+			return i >= tailOffset() ? tail : chunkFor(i).get();
+		}
+
+		Root add(final Object value) {
+			if(count - tailOffset() < WIDTH) {
+				final Object[] tail = new Object[this.tail.length + 1];
+				System.arraycopy(this.tail, 0, tail, 0, this.tail.length);
+				tail[this.tail.length] = value;
+				return new Root(count + 1, shift, index, tail);
+			}
+			final Temporal.Reference<Object[]> chunk = new InMemory.TemporalReference<>(this.tail);
+			final Object[] index;
+			int shift = this.shift;
+			if((count >>> BITS) > (1 << shift)) {
+				index = new Object[WIDTH];
+				index[0] = this.index;
+				index[1] = newPath(shift, chunk);
+				shift += BITS;
+			} else {
+				index = pushTail(shift, this.index, chunk);
+			}
+			return new Root(count + 1, shift, index, new Object[]{ value });
+		}
+
+		private Object[] pushTail(final int level, final Object[] parent, final Temporal.Reference<Object[]> chunk) {
+			final int i = ((count - 1) >>> level) & MASK;
+			final Object[] node = parent.clone();
+			if(level == BITS) {
+				node[i] = chunk;
+			} else {
+				final Object[] child = (Object[]) parent[i];
+				node[i] = child != null ? pushTail(level - BITS, child, chunk) : newPath(level - BITS, chunk);
+			}
+			return node;
+		}
+
+		private static Object newPath(final int level, final Object node) {
+			if(level == 0) {
+				return node;
+			}
+			final Object[] path = new Object[WIDTH];
+			path[0] = newPath(level - BITS, node);
+			return path;
+		}
+
+		Root set(final int i, final Object value) {
+			final Object[] tail = this.tail.clone();
+			tail[i & MASK] = value;
+			return new Root(count, shift, index, tail);
+		}
+
+		Root pop() {
+			if(count == 1) {
+				return EMPTY;
+			}
+			if(count - tailOffset() > 1) {
+				final Object[] tail = new Object[this.tail.length - 1];
+				System.arraycopy(this.tail, 0, tail, 0, tail.length);
+				return new Root(count - 1, shift, index, tail);
+			}
+			final Object[] tail = arrayFor(count - 2);
+			Object[] index = popTail(shift, this.index);
+			int shift = this.shift;
+			if(index == null) {
+				index = new Object[WIDTH];
+			}
+			if(shift > BITS && index[1] == null) {
+				index = (Object[]) index[0];
+				shift -= BITS;
+			}
+			return new Root(count - 1, shift, index, tail);
+		}
+
+		private Object[] popTail(final int level, final Object[] parent) {
+			final int i = ((count - 2) >>> level) & MASK;
+			if(level > BITS) {
+				final Object[] child = popTail(level - BITS, (Object[]) parent[i]);
+				if(child == null && i == 0) {
+					return null;
+				}
+				final Object[] node = parent.clone();
+				node[i] = child;
+				return node;
+			}
+			if(i == 0) {
+				return null;
+			}
+			final Object[] node = parent.clone();
+			node[i] = null;
+			return node;
+		}
+	}
+
+	/* -- TemporalVector --------------------------------------------- */
+
+	final Temporal.Reference<Root> root;
+
+	public TemporalVector() {
+		this.root = new InMemory.MergeableReference<>(Root.EMPTY, this::append);
+	}
+
+	/**
+	 * append-merge of the root: elements appended by theirs since base are
+	 * appended to ours -- unless theirs diverged from base, see diverged().
+	 */
+	private Root append(final Root base, final Root ours, final Root theirs) {
+		if(theirs == base || theirs == ours) {
+			return ours;
+		}
+		if(ours == base) {
+			return theirs;
+		}
+		final int from = base == null ? 0 : base.count;
+		if(theirs.count < from || diverged(base, theirs)) {
+			return theirs;
+		}
+		Root merged = ours;
+		for(int i = from; i < theirs.count; ) {
+			final Object[] chunk = theirs.arrayFor(i);
+			for(int j = i & MASK; j < chunk.length && i < theirs.count; j++, i++) {
+				merged = merged.add(chunk[j]);
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * @return true if theirs (of at least base.count elements) replaced
+	 * elements of base: the last filled chunk of base is no longer that of
+	 * theirs, or an element of the tail of base is not.
+	 */
+	private static boolean diverged(final Root base, final Root theirs) {
+		if(base == null || base.count == 0) {
+			return false;
+		}
+		final int tailOffset = base.tailOffset();
+		if(tailOffset > 0 && theirs.chunkFor(tailOffset - 1) != base.chunkFor(tailOffset - 1)) {
+			return true;
+		}
+		final Object[] chunk = theirs.arrayFor(base.count - 1);
+		for(int i = tailOffset; i < base.count; i++) {
+			if(chunk[i & MASK] != base.tail[i & MASK]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int size() {
+		return root.get().count;
+	}
+
+	public void add(final T value) {
+		root.set(root.get().add(value));
+	}
+
+	@SuppressWarnings("unchecked")
+	public T get(final int index) {
+		final Root root = this.root.get();
+		assertIndex(root, index);
+		return (T) root.arrayFor(index)[index & MASK];
+	}
+
+	/** @return the prior element at index */
+	@SuppressWarnings("unchecked")
+	public T set(final int index, final T value) {
+		final Root root = this.root.get();
+		assertIndex(root, index);
+		if(index >= root.tailOffset()) {
+			this.root.set(root.set(index, value));
+			return (T) root.tail[index & MASK];
+		}
+		final Temporal.Reference<Object[]> ref = root.chunkFor(index);
+		final Object[] chunk = ref.get().clone();
+		final Object prior = chunk[index & MASK];
+		chunk[index & MASK] = value;
+		ref.set(chunk);
+		return (T) prior;
+	}
+
+	/** remove last element */
+	@SuppressWarnings("unchecked")
+	public T removeLast() {
+		final Root root = this.root.get();
+		assertIndex(root, 0);
+		final T value = (T) root.tail[root.tail.length - 1];
+		this.root.set(root.pop());
+		return value;
+	}
+
+	private static void assertIndex(final Root root, final int index) {
+		if(index < 0 || index >= root.count) {
+			final String err = String.format("index out of bounds: %d", index);
+			throw new IllegalArgumentException(err);
+		}
+	}
+
+	public T[] toArray(final T[] arr) {
+		final Root root = this.root.get();
+		for(int i = 0; i < root.count; i += WIDTH) {
+			final Object[] chunk = root.arrayFor(i);
+			System.arraycopy(chunk, 0, arr, i, chunk.length);
+		}
+		return arr;
+	}
+
+	/** iterates the elements as of the call -- a chunk at a time */
+	@Override public Iterator<T> iterator() {
+		final Root root = this.root.get();
+		return new Iterator<T>() {
+			int i;
+			Object[] chunk;
+			@Override public boolean hasNext() {
+				return i < root.count;
+			}
+			@SuppressWarnings("unchecked")
+			@Override public T next() {
+				if(i >= root.count) {
+					throw new NoSuchElementException();
+				}
+				if((i & MASK) == 0) {
+					chunk = root.arrayFor(i);
+				}
+				return (T) chunk[i++ & MASK];
+			}
+		};
+	}
+
+	/* -- test ------------------------------------------------------- */
+
+	public static void main (String[] args) throws InterruptedException{
+
+		final InMemory.TemporalActor rootActor = new InMemory.TemporalActor( () -> {
+
+			final Temporal.Actor self = InMemory.TemporalActor.currentActor();
+			final TemporalVector<String> vector = new TemporalVector<>();
+			for(int i = 0; i < 40; i++) {
+				vector.add(String.format("common-%d", i));
+			}
+
+			final Temporal.Actor task_1 = self.fork(() -> {
+				vector.add("Hi");
+				vector.add("There!");
+				vector.set(1, "set-by-task-1");
+			}, "task-1");
+
+			task_1.start();
+
+			vector.removeLast();
+			vector.add("Salaam");
+			vector.set(33, "set-by-top-level");
+			List.puts("top-level size: %d", vector.size());
+
+			self.merge(task_1);
+			debug(vector);
+
+			self.goBackInTime();
+			debug(vector);
+
+		}, "test-root"
+		);
+		rootActor.start();
+		rootActor.join();
+	}
+
+	public static void debug(final TemporalVector<String> vector) {
+		List.puts("size: %d", vector.size());
+		final StringBuilder items = new StringBuilder();
+		for(final String item : vector) {
+			items.append(item).append(' ');
+		}
+		List.puts("%s", items);
+	}
+}
@@ -0,0 +1,135 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.atomic.Temporal;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+/**
+ * Deletes (tombstones) and their propagation by branch, merge, commit,
+ * compaction and freeze -- see TemporalContext#delete(int).
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 6/9/14
+ */
+public class DeleteTest {
+
+	private static InMemory.TemporalContext root (final String name) {
+		return (InMemory.TemporalContext) InMemory.TemporalContext.newRootContext(name);
+	}
+
+	@Test
+	public void deleteHidesValuesOfAncestors () {
+		final InMemory.TemporalContext root = root("root");
+		root.write(1, "a");
+		root.write(2, "b");
+		final InMemory.TemporalContext child = (InMemory.TemporalContext) root.branch("child");
+		child.delete(1);
+		final Temporal.Context grandchild = child.branch("grandchild");
+		assertNull(child.read(1));
+		assertNull(grandchild.read(1));
+		assertEquals(root.read(1), "a");
+		assertEquals(grandchild.read(2), "b");
+
+		final Object[] out = new Object[2];
+		((InMemory.TemporalContext) grandchild).readAll(new int[]{ 1, 2 }, out);
+		assertNull(out[0]);
+		assertEquals(out[1], "b");
+
+		child.write(1, "again");
+		assertEquals(grandchild.read(1), "again");
+	}
+
+	@Test
+	public void mergePropagatesDeletes () throws Exception {
+		final InMemory.TemporalContext root = root("root");
+		root.write(1, "a");
+		final InMemory.TemporalContext child = (InMemory.TemporalContext) root.branch("child");
+		child.delete(1);
+		assertNull(root.merge(child).read(1));
+		assertNull(root.reconcile(child).read(1));
+		assertEquals(root.read(1), "a");
+	}
+
+	@Test
+	public void deleteConflictsWithWrite () {
+		final InMemory.TemporalContext root = root("root");
+		root.write(1, "a");
+		final InMemory.TemporalContext deleting = (InMemory.TemporalContext) root.branch("deleting");
+		final Temporal.Context writing = root.branch("writing");
+		deleting.delete(1);
+		writing.write(1, "b");
+		try {
+			root.reconcile(deleting, writing);
+			fail("delete and write reconciled");
+		} catch (Temporal.Context.Op.Exception e) {
+			assertEquals(e.op.id(), 1);
+		}
+	}
+
+	@Test
+	public void commitPropagatesDeletes () throws Exception {
+		final InMemory.TemporalContext parent = root("parent");
+		parent.write(1, "a");
+		final InMemory.TemporalContext tx = parent.transaction();
+		tx.delete(1);
+		tx.commit();
+		assertNull(parent.read(1));
+	}
+
+	@Test
+	public void compactionAndFreezeKeepDeletes () {
+		final InMemory.TemporalContext root = root("root");
+		root.write(1, "a");
+		root.write(2, "b");
+		final InMemory.TemporalContext deleting = (InMemory.TemporalContext) root.branch("deleting");
+		deleting.delete(1);
+		final InMemory.TemporalContext c2 = (InMemory.TemporalContext) deleting.branch("c2");
+		final InMemory.TemporalContext c3 = (InMemory.TemporalContext) c2.branch("c3");
+		assertEquals(c3.compact(1), 2);
+		assertNull(c3.read(1));
+		assertEquals(c3.read(2), "b");
+
+		final InMemory.FrozenContext frozen = c3.freeze();
+		assertNull(frozen.read(1));
+		assertEquals(frozen.read(2), "b");
+	}
+
+	/** reads of ids never written in a deep timeline -- the filters of contexts skip them */
+	@Test
+	public void missesOfDeepTimeline () {
+		Temporal.Context context = root("root");
+		for(int depth = 0; depth < 64; depth++) {
+			context.write(depth, depth);
+			context = context.branch();
+		}
+		for(int id = 0; id < 64; id++) {
+			assertEquals(context.read(id), (Object) id);
+			assertNull(context.read(64 + id));
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.atomic.Temporal;
+
+import java.io.File;
+
+/**
+ * Helpers of the tests of the reference implementation.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 6/9/14
+ */
+final class Fixtures {
+
+	private Fixtures () { }
+
+	/** run task as the actor of context, and rethrow its failure */
+	static void act (final Temporal.Context context, final Runnable task) throws InterruptedException {
+		final Throwable[] failure = new Throwable[1];
+		final InMemory.TemporalActor actor = new InMemory.TemporalActor(context, () -> {
+			try {
+				task.run();
+			} catch (Throwable t) {
+				failure[0] = t;
+			}
+		}, "test-actor");
+		actor.start();
+		actor.join();
+		if(failure[0] != null) {
+			throw new AssertionError(failure[0].getMessage(), failure[0]);
+		}
+	}
+
+	/** @return exit code of main of the class, run in a new JVM -- e.g. to write a store read after a restart */
+	static int fork (final Class<?> main, final String... args) throws Exception {
+		final String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+		final String[] command = new String[args.length + 4];
+		command[0] = java;
+		command[1] = "-cp";
+		command[2] = System.getProperty("java.class.path");
+		command[3] = main.getName();
+		System.arraycopy(args, 0, command, 4, args.length);
+		return new ProcessBuilder(command).inheritIO().start().waitFor();
+	}
+}
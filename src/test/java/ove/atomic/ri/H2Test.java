@@ -0,0 +1,109 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.poc.List;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.testng.Assert.assertEquals;
+import static ove.atomic.ri.Fixtures.act;
+
+/**
+ * Write-behind and restart of an H2.Database.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 6/9/14
+ */
+public class H2Test {
+
+	/** write a list and a plain value to a new database at path -- run by a separate process, see restart() */
+	public static void main (final String[] args) throws Exception {
+		final H2.Database db = H2.Database.file(args[0]);
+		final H2.TemporalContext root = (H2.TemporalContext) db.newRootContext("root");
+		act(root, () -> {
+			final List<String> list = new List<>();
+			list.add("a");
+			list.add("b");
+			db.name("list", new InMemory.TemporalReference<>(list));
+			db.name("greeting", new InMemory.TemporalReference<>("hello"));
+		});
+		root.flush();
+		db.close();
+	}
+
+	/** the flusher is blocked on the database lock: reads of handed off batches do not write them */
+	@Test
+	public void readsThroughBatchesNotYetWritten () throws Exception {
+		final File dir = Files.createTempDirectory("h2").toFile();
+		final H2.Database db = new H2.Database(String.format("jdbc:h2:file:%s/db", dir), Codec.serializable, 1, 1);
+		final H2.TemporalContext root = (H2.TemporalContext) db.newRootContext("root");
+		synchronized (db) {
+			for(int i = 0; i < 8; i++) {
+				root.write(i, "v" + i);
+			}
+			for(int i = 0; i < 8; i++) {
+				assertEquals(root.read(i), "v" + i);
+			}
+			assertEquals(root.inflight.size(), 8, "batches were written by the reader");
+		}
+		root.flush();
+		assertEquals(root.inflight.size(), 0);
+		for(int i = 0; i < 8; i++) {
+			assertEquals(root.read(i), "v" + i);
+		}
+		db.close();
+	}
+
+	@Test
+	public void restart () throws Exception {
+		final String path = new File(Files.createTempDirectory("h2").toFile(), "db").getPath();
+		assertEquals(Fixtures.fork(H2Test.class, path), 0, "writer failed");
+
+		// ids of this process, that the (imported) ids of the writer must not collide with
+		act(InMemory.TemporalContext.newRootContext("other"), () -> {
+			for(int i = 0; i < 16; i++) {
+				new InMemory.TemporalReference<>("other");
+			}
+		});
+		for(int restart = 0; restart < 2; restart++) {
+			final H2.Database db = H2.Database.file(path);
+			final H2.TemporalContext root = (H2.TemporalContext) db.open("root");
+			final int expected = 2 + restart;
+			act(root, () -> {
+				final InMemory.TemporalReference<String> greeting = db.reference("greeting");
+				assertEquals(greeting.get(), "hello");
+				final InMemory.TemporalReference<List<String>> reference = db.reference("list");
+				final List<String> list = reference.get();
+				assertEquals(list.size(), expected);
+				assertEquals(list.get(0), expected == 2 ? "b" : "c");
+				assertEquals(list.get(expected - 1), "a");
+				list.add("c");
+			});
+			root.flush();
+			db.close();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.atomic.Temporal;
+import ove.poc.List;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.testng.Assert.assertEquals;
+import static ove.atomic.ri.Fixtures.act;
+
+/**
+ * Recovery of a MappedLog -- in the same process, and after a restart.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 6/9/14
+ */
+public class MappedLogTest {
+
+	/** write a list and a plain value to a new log in dir -- run by a separate process, see restart() */
+	public static void main (final String[] args) throws Exception {
+		final MappedLog log = MappedLog.open(new File(args[0]), Codec.serializable);
+		act(log.newRootContext("root"), () -> {
+			final List<String> list = new List<>();
+			list.add("a");
+			list.add("b");
+			log.name("list", new InMemory.TemporalReference<>(list));
+			log.name("greeting", new InMemory.TemporalReference<>("hello"));
+		});
+		log.close();
+	}
+
+	@Test
+	public void reopen () throws Exception {
+		final File dir = Files.createTempDirectory("mapped-log").toFile();
+		final MappedLog log = new MappedLog(dir, Codec.serializable, 4096, 5, 2);
+		final Temporal.Context root = log.newRootContext("root");
+		root.write(1, "a");
+		final Temporal.Context child = root.branch("child");
+		for(int i = 0; i < 500; i++) {
+			child.write(100 + i % 50, "v" + i);
+		}
+		log.checkpoint();
+		child.write(2, "b");
+		log.close();
+
+		final MappedLog reopened = new MappedLog(dir, Codec.serializable, 4096, 5, 2);
+		final Temporal.Context recovered = reopened.context("child");
+		assertEquals(recovered.read(1), "a");
+		assertEquals(recovered.read(2), "b");
+		assertEquals(recovered.read(149), "v499");
+		reopened.close();
+	}
+
+	@Test
+	public void restart () throws Exception {
+		final File dir = Files.createTempDirectory("mapped-log").toFile();
+		assertEquals(Fixtures.fork(MappedLogTest.class, dir.getPath()), 0, "writer failed");
+
+		// ids of this process, that the (imported) ids of the writer must not collide with
+		act(InMemory.TemporalContext.newRootContext("other"), () -> {
+			for(int i = 0; i < 16; i++) {
+				new InMemory.TemporalReference<>("other");
+			}
+		});
+		for(int restart = 0; restart < 2; restart++) {
+			final MappedLog log = MappedLog.open(dir, Codec.serializable);
+			final int expected = 2 + restart;
+			act(log.context("root"), () -> {
+				final InMemory.TemporalReference<String> greeting = log.reference("greeting");
+				assertEquals(greeting.get(), "hello");
+				final InMemory.TemporalReference<List<String>> reference = log.reference("list");
+				final List<String> list = reference.get();
+				assertEquals(list.size(), expected);
+				assertEquals(list.get(expected - 1), "a");
+				assertEquals(list.get(0), expected == 2 ? "b" : "c");
+				list.add("c");
+			});
+			log.close();
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.atomic.Temporal;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+/**
+ * Merges and reconciling (three-way) merges of contexts -- see Merge.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 6/9/14
+ */
+public class MergeTest {
+
+	private static InMemory.TemporalContext root (final String name) {
+		return (InMemory.TemporalContext) InMemory.TemporalContext.newRootContext(name);
+	}
+
+	private static void assertConflict (final InMemory.TemporalContext ours, final int id, final Temporal.Context... contexts) {
+		try {
+			ours.reconcile(contexts);
+			fail(String.format("no conflict on id %d", id));
+		} catch (Temporal.Context.Op.Exception e) {
+			assertEquals(e.op.id(), id);
+		}
+	}
+
+	@Test
+	public void mergeIsLastWriterWins () {
+		final InMemory.TemporalContext ours = root("ours");
+		ours.write(1, "base");
+		final Temporal.Context a = ours.branch("a");
+		final Temporal.Context b = ours.branch("b");
+		a.write(1, "a");
+		a.write(2, "a");
+		b.write(1, "b");
+		final Temporal.Context merged = ours.merge(a, b);
+		assertEquals(merged.read(1), "b");
+		assertEquals(merged.read(2), "a");
+		assertEquals(merged.parent(), ours);
+		assertEquals(ours.read(1), "base");
+	}
+
+	@Test
+	public void reconcileMergesDisjointWrites () throws Exception {
+		final InMemory.TemporalContext ours = root("ours");
+		ours.write(1, "base");
+		final Temporal.Context a = ours.branch("a");
+		final Temporal.Context b = ours.branch("b");
+		a.write(2, "a");
+		b.write(3, "b");
+		a.write(4, "same");
+		b.write(4, "same");
+		final Temporal.Context merged = ours.reconcile(a, b);
+		assertEquals(merged.read(1), "base");
+		assertEquals(merged.read(2), "a");
+		assertEquals(merged.read(3), "b");
+		assertEquals(merged.read(4), "same");
+	}
+
+	@Test
+	public void writeWriteConflictOfMergedContexts () {
+		final InMemory.TemporalContext ours = root("ours");
+		final Temporal.Context a = ours.branch("a");
+		final Temporal.Context b = ours.branch("b");
+		a.write(1, "a");
+		b.write(1, "b");
+		b.write(2, "b");
+		assertConflict(ours, 1, a, b);
+		assertNull(ours.read(2), "writes of a failed reconcile were merged");
+	}
+
+	@Test
+	public void writeWriteConflictWithOurs () {
+		final InMemory.TemporalContext ours = root("ours");
+		ours.write(1, "base");
+		final Temporal.Context a = ours.branch("a");
+		a.write(1, "a");
+		ours.write(1, "ours");
+		assertConflict(ours, 1, a);
+	}
+
+	@Test
+	public void readWriteConflictOfJournaledReads () {
+		final InMemory.TemporalContext ours = root("ours");
+		ours.journal(InMemory.Journal.full);
+		ours.write(1, 10);
+		final Temporal.Context a = ours.branch("a");
+		final int v = a.read(1);
+		a.write(2, v + 1);
+		ours.write(1, 11);
+		assertConflict(ours, 1, a);
+	}
+
+	@Test
+	public void readWriteConflictOfPrecedingMergedContext () {
+		final InMemory.TemporalContext ours = root("ours");
+		ours.journal(InMemory.Journal.full);
+		ours.write(1, 10);
+		final Temporal.Context a = ours.branch("a");
+		final Temporal.Context b = ours.branch("b");
+		a.write(1, 20);
+		final int v = b.read(1);
+		b.write(2, v + 1);
+		assertConflict(ours, 1, a, b);
+	}
+
+	@Test
+	public void readsNotJournaledAreNotValidated () throws Exception {
+		final InMemory.TemporalContext ours = root("ours");
+		ours.write(1, 10);
+		final Temporal.Context a = ours.branch("a");
+		final int v = a.read(1);
+		a.write(2, v + 1);
+		ours.write(1, 11);
+		final Temporal.Context merged = ours.reconcile(a);
+		assertEquals(merged.read(1), (Object) 11);
+		assertEquals(merged.read(2), (Object) 11);
+	}
+
+	/** above the threshold, partitions are merged (and conflicts detected) in parallel */
+	@Test
+	public void parallelReconcile () throws Exception {
+		final int n = Merge.PARALLEL_THRESHOLD;
+		final InMemory.TemporalContext ours = root("ours");
+		final Temporal.Context a = ours.branch("a");
+		final Temporal.Context b = ours.branch("b");
+		for(int id = 0; id < n; id++) {
+			a.write(id, id);
+			b.write(n + id, -id);
+		}
+		final Temporal.Context merged = ours.reconcile(a, b);
+		for(int id = 0; id < n; id++) {
+			assertEquals(merged.read(id), (Object) id);
+			assertEquals(merged.read(n + id), (Object) (-id));
+		}
+
+		final Temporal.Context c = ours.branch("c");
+		c.write(n - 1, "c");
+		for(int id = 0; id < n; id++) {
+			c.write(2 * n + id, id);
+		}
+		assertConflict(ours, n - 1, a, b, c);
+	}
+}
@@ -0,0 +1,143 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.atomic.Mergeable;
+import ove.atomic.Temporal;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+import static ove.atomic.ri.Fixtures.act;
+
+/**
+ * Tree-reduce merges of forked actors -- see TemporalActor#mergeTree.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 6/9/14
+ */
+public class MergeTreeTest {
+
+	/** actors forked from the current actor, each writing ids 2k (its own) and 1 (shared), and adding to counter */
+	private static Temporal.Actor[] fork (final int n, final InMemory.IntReference counter, final CountDownLatch first) {
+		final Temporal.Actor self = InMemory.TemporalActor.currentActor();
+		final Temporal.Actor[] actors = new Temporal.Actor[n];
+		for(int k = 0; k < n; k++) {
+			final int actor = k;
+			actors[k] = self.fork(() -> {
+				if(actor == 0 && n > 1) {
+					try {
+						first.await();
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				}
+				final Temporal.Context context = InMemory.TemporalContext.get();
+				context.write(1000 + 2 * actor, actor);
+				context.write(1, actor);
+				counter.add(actor + 1);
+				if(actor == n - 1) {
+					first.countDown();
+				}
+			}, String.format("task-%d", k));
+			actors[k].start();
+		}
+		return actors;
+	}
+
+	/** the first actor completes last: the result is still in actor order */
+	@Test
+	public void mergeTreeIsMergeInActorOrder () throws Exception {
+		for(final int n : new int[]{ 1, 2, 7, 16 }) {
+			act(InMemory.TemporalContext.newRootContext("root"), () -> {
+				final InMemory.IntReference counter = new InMemory.IntReference(0, Mergeable.intCounter);
+				final Temporal.Actor self = InMemory.TemporalActor.currentActor();
+				final Temporal.Context before = self.getTemporalContext();
+				self.mergeTree(fork(n, counter, new CountDownLatch(1)));
+				final Temporal.Context merged = self.getTemporalContext();
+				assertEquals(merged.parent(), before);
+				assertEquals(merged.read(1), (Object) (n - 1));
+				for(int k = 0; k < n; k++) {
+					assertEquals(merged.read(1000 + 2 * k), (Object) k);
+				}
+				assertEquals(counter.get(), n * (n + 1) / 2);
+			});
+		}
+	}
+
+	@Test
+	public void mergeTreeEqualsMerge () throws Exception {
+		final int n = 9;
+		final Object[][] results = new Object[2][];
+		for(int mode = 0; mode < 2; mode++) {
+			final boolean tree = mode == 1;
+			final Object[] result = results[mode] = new Object[2 * n + 2];
+			act(InMemory.TemporalContext.newRootContext("root"), () -> {
+				final InMemory.IntReference counter = new InMemory.IntReference(0, Mergeable.intCounter);
+				final Temporal.Actor self = InMemory.TemporalActor.currentActor();
+				final CountDownLatch first = new CountDownLatch(1);
+				if(tree) {
+					self.mergeTree(fork(n, counter, first));
+				} else {
+					self.merge(fork(n, counter, first));
+				}
+				final Temporal.Context merged = self.getTemporalContext();
+				for(int k = 0; k < n; k++) {
+					result[k] = merged.read(1000 + 2 * k);
+					result[n + k] = merged.read(1000 + 2 * k + 1);
+				}
+				result[2 * n] = merged.read(1);
+				result[2 * n + 1] = counter.get();
+			});
+		}
+		assertEquals(results[1], results[0]);
+	}
+
+	@Test
+	public void conflictOfMergeFunctionFailsMergeTree () throws Exception {
+		act(InMemory.TemporalContext.newRootContext("root"), () -> {
+			final InMemory.MergeableReference<String> ref = new InMemory.MergeableReference<>("base", (base, ours, theirs) -> {
+				if(ours.equals(base) || ours.equals(theirs)) {
+					return theirs;
+				}
+				throw new Mergeable.Conflict("ERR-both changed");
+			});
+			final Temporal.Actor self = InMemory.TemporalActor.currentActor();
+			final Temporal.Actor[] actors = new Temporal.Actor[4];
+			for(int k = 0; k < actors.length; k++) {
+				final String value = k == 2 ? "other" : "changed";
+				actors[k] = self.fork(() -> ref.set(value), String.format("task-%d", k));
+				actors[k].start();
+			}
+			final Temporal.Context before = self.getTemporalContext();
+			try {
+				self.mergeTree(actors);
+				fail("conflict merged");
+			} catch (IllegalStateException expected) { }
+			assertEquals(self.getTemporalContext(), before);
+			assertEquals(ref.get(), "base");
+		});
+	}
+}
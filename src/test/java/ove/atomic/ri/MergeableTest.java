@@ -0,0 +1,143 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.atomic.Mergeable;
+import ove.atomic.Temporal;
+import ove.poc.List;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+import static ove.atomic.ri.Fixtures.act;
+
+/**
+ * Merges of mergeable references written by forked actors -- see Mergeable.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 6/9/14
+ */
+public class MergeableTest {
+
+	/** fork an actor per task from the current actor, and run them */
+	private static Temporal.Actor[] fork (final Runnable... tasks) {
+		final Temporal.Actor self = InMemory.TemporalActor.currentActor();
+		final Temporal.Actor[] actors = new Temporal.Actor[tasks.length];
+		for(int i = 0; i < tasks.length; i++) {
+			actors[i] = self.fork(tasks[i], String.format("task-%d", i));
+			actors[i].start();
+		}
+		return actors;
+	}
+
+	@Test
+	public void countersAddConcurrentDeltas () throws Exception {
+		act(InMemory.TemporalContext.newRootContext("root"), () -> {
+			final InMemory.IntReference ints = new InMemory.IntReference(1, Mergeable.intCounter);
+			final InMemory.LongReference longs = new InMemory.LongReference(1L, Mergeable.longCounter);
+			final InMemory.DoubleReference doubles = new InMemory.DoubleReference(1d, Mergeable.doubleCounter);
+			final Runnable[] tasks = new Runnable[4];
+			for(int i = 0; i < tasks.length; i++) {
+				final int delta = i + 1;
+				tasks[i] = () -> {
+					ints.add(delta);
+					longs.add(delta);
+					doubles.add(delta);
+				};
+			}
+			final Temporal.Actor[] actors = fork(tasks);
+			ints.add(100);
+			InMemory.TemporalActor.currentActor().merge(actors);
+			assertEquals(ints.get(), 111);
+			assertEquals(longs.get(), 11L);
+			assertEquals(doubles.get(), 11d);
+		});
+	}
+
+	@Test
+	public void registersAndSetsMerge () throws Exception {
+		act(InMemory.TemporalContext.newRootContext("root"), () -> {
+			final InMemory.MergeableReference<Integer> max = new InMemory.MergeableReference<>(0, Mergeable.<Integer>max());
+			final InMemory.MergeableReference<Integer> min = new InMemory.MergeableReference<>(10, Mergeable.<Integer>min());
+			final InMemory.GrowOnlySet<String> set = new InMemory.GrowOnlySet<>();
+			set.add("common");
+			final Temporal.Actor[] actors = fork(
+					() -> { max.set(3); min.set(4); set.add("a"); },
+					() -> { max.set(7); min.set(2); set.add("b"); },
+					() -> { max.set(5); min.set(6); set.add("c"); });
+			set.add("ours");
+			InMemory.TemporalActor.currentActor().merge(actors);
+			assertEquals(max.get(), (Integer) 7);
+			assertEquals(min.get(), (Integer) 2);
+			assertEquals(set.get(), new HashSet<>(Arrays.asList("common", "ours", "a", "b", "c")));
+		});
+	}
+
+	@Test
+	public void listsAppendMerge () throws Exception {
+		act(InMemory.TemporalContext.newRootContext("root"), () -> {
+			final List<String> list = new List<>();
+			list.add("common");
+			final Temporal.Actor[] actors = fork(
+					() -> { list.add("a1"); list.add("a2"); },
+					() -> list.add("b"));
+			list.add("ours");
+			InMemory.TemporalActor.currentActor().merge(actors);
+			assertEquals(list.size(), 5);
+			final HashSet<String> elements = new HashSet<>(Arrays.asList(list.toArray(new String[list.size()])));
+			assertEquals(elements, new HashSet<>(Arrays.asList("common", "a1", "a2", "b", "ours")));
+			assertEquals(list.get(4), "common");
+		});
+	}
+
+	@Test
+	public void conflictOfMergeFunctionFailsMerge () throws Exception {
+		act(InMemory.TemporalContext.newRootContext("root"), () -> {
+			final InMemory.MergeableReference<String> ref = new InMemory.MergeableReference<>("base", (base, ours, theirs) -> {
+				if(ours.equals(base) || ours.equals(theirs)) {
+					return theirs;
+				}
+				throw new Mergeable.Conflict("ERR-both changed");
+			});
+			final Temporal.Actor self = InMemory.TemporalActor.currentActor();
+			final Temporal.Actor[] merged = fork(() -> ref.set("theirs"));
+			final Temporal.Actor[] reconciled = fork(() -> ref.set("theirs"));
+			final Temporal.Actor[] same = fork(() -> ref.set("ours"));
+			ref.set("ours");
+			try {
+				self.merge(merged);
+				fail("conflict merged");
+			} catch (IllegalStateException expected) { }
+			try {
+				self.reconcile(reconciled);
+				fail("conflict reconciled");
+			} catch (Temporal.Context.Op.Exception expected) { }
+			assertEquals(ref.get(), "ours");
+			self.merge(same);
+			assertEquals(ref.get(), "ours");
+		});
+	}
+}
@@ -0,0 +1,106 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.atomic.Temporal;
+import ove.poc.List;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static ove.atomic.ri.Fixtures.act;
+
+/**
+ * Snapshots loaded by the writing process and by another process.
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 6/9/14
+ */
+public class SnapshotTest {
+
+	/** write a snapshot of a list to file -- run by a separate process, see load() */
+	public static void main (final String[] args) throws Exception {
+		final Temporal.Context root = InMemory.TemporalContext.newRootContext("root");
+		act(root, () -> {
+			final List<String> list = new List<>();
+			list.add("a");
+			list.add("b");
+			Snapshot.write(new File(args[0]), Codec.serializable,
+					Collections.singletonMap("list", new InMemory.TemporalReference<>(list)), root);
+		});
+	}
+
+	@Test
+	public void local () throws Exception {
+		final File file = new File(Files.createTempDirectory("snapshot").toFile(), "snapshot");
+		final Temporal.Context root = InMemory.TemporalContext.newRootContext("root");
+		act(root, () -> {
+			final InMemory.TemporalReference<String> greeting = new InMemory.TemporalReference<>("hello");
+			Snapshot.write(file, Codec.serializable, Collections.singletonMap("greeting", greeting), root);
+			final Snapshot snapshot = Snapshot.map(file, Codec.serializable);
+			assertEquals(snapshot.reference("greeting"), greeting);
+			assertEquals(snapshot.context("root").read(greeting.id()), "hello");
+			assertNull(snapshot.reference("none"));
+		});
+	}
+
+	@Test
+	public void load () throws Exception {
+		final File file = new File(Files.createTempDirectory("snapshot").toFile(), "snapshot");
+		assertEquals(Fixtures.fork(SnapshotTest.class, file.getPath()), 0, "writer failed");
+
+		// ids of this process, that the (imported) ids of the writer must not collide with
+		final Temporal.Context other = InMemory.TemporalContext.newRootContext("other");
+		act(other, () -> {
+			for(int i = 0; i < 16; i++) {
+				new InMemory.TemporalReference<>("other");
+			}
+		});
+		final Snapshot snapshot = Snapshot.map(file, Codec.serializable);
+		final Temporal.Context next = snapshot.context("root").branch("next");
+		act(next, () -> {
+			final InMemory.TemporalReference<List<String>> reference = snapshot.reference("list");
+			final List<String> list = reference.get();
+			assertEquals(list.size(), 2);
+			assertEquals(list.get(0), "b");
+			assertEquals(list.get(1), "a");
+			list.add("c");
+		});
+
+		// a snapshot of the (imported) timeline is a snapshot of this process
+		final File again = new File(file.getPath() + "-again");
+		act(next, () -> Snapshot.write(again, Codec.serializable,
+				Collections.singletonMap("list", snapshot.reference("list")), next));
+		final Snapshot reloaded = Snapshot.map(again, Codec.serializable);
+		act(reloaded.context("next").branch(), () -> {
+			final InMemory.TemporalReference<List<String>> reference = reloaded.reference("list");
+			assertEquals(reference.get().size(), 3);
+			assertEquals(reference.get().get(0), "c");
+			assertEquals(reference.get().get(2), "a");
+		});
+	}
+}
@@ -0,0 +1,138 @@
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+/*                             ~!!! As-Salaam !!!~                             */
+/*                               ~!!! Doost !!!~                               */
+/* !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! */
+
+/*
+ *   Copyright 2014 Joubin Muhammad Houshyar
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ove.atomic.ri;
+
+import ove.atomic.Temporal;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+/**
+ * Commit validation of transaction contexts -- see TemporalContext#commit().
+ *
+ * @author: Joubin <alphazero@sensesay.net>
+ * @date: 6/9/14
+ */
+public class TransactionTest {
+
+	private static InMemory.TemporalContext root (final String name) {
+		return (InMemory.TemporalContext) InMemory.TemporalContext.newRootContext(name);
+	}
+
+	@Test
+	public void commitPublishesWrites () throws Exception {
+		final InMemory.TemporalContext parent = root("parent");
+		parent.write(1, 10);
+		final InMemory.TemporalContext tx = parent.transaction();
+		final int v = tx.read(1);
+		tx.write(2, v + 1);
+		tx.commit();
+		assertEquals(parent.read(2), (Object) 11);
+		assertEquals(tx.store().size(), 0, "transaction was not reset");
+	}
+
+	@Test
+	public void staleReadFailsCommit () {
+		final InMemory.TemporalContext parent = root("parent");
+		parent.write(1, 10);
+		final InMemory.TemporalContext tx = parent.transaction();
+		final int v = tx.read(1);
+		tx.write(2, v + 1);
+		parent.write(1, 11);
+		try {
+			tx.commit();
+			fail("stale read committed");
+		} catch (Temporal.Context.Op.Exception e) {
+			assertEquals(e.op.id(), 1);
+		}
+		assertNull(parent.read(2), "writes of a failed commit were published");
+	}
+
+	@Test
+	public void readsOfOwnWritesAreNotValidated () throws Exception {
+		final InMemory.TemporalContext parent = root("parent");
+		final InMemory.TemporalContext tx = parent.transaction();
+		tx.write(1, 5);
+		final int v = tx.read(1);
+		parent.write(1, 6);
+		tx.write(2, v);
+		tx.commit();
+		assertEquals(parent.read(1), (Object) 5);
+		assertEquals(parent.read(2), (Object) 5);
+	}
+
+	/**
+	 * the parent's write is stamped with the revision of the grandparent's
+	 * value read by the transaction -- revisions of different contexts may be
+	 * equal (see Revisions)
+	 */
+	@Test
+	public void readShadowedByParentWriteOfEqualRevisionFailsCommit () {
+		final InMemory.TemporalContext grandparent = root("grandparent");
+		grandparent.write(1, "g0");
+		final InMemory.TemporalContext parent = (InMemory.TemporalContext) grandparent.branch("parent");
+		final InMemory.TemporalContext tx = parent.transaction();
+		grandparent.write(1, "g1");
+		assertEquals(tx.read(1), "g1");
+		final long read = tx.revision(1);
+		parent.write(1, "p1");
+		assertEquals(parent.revision(1), read, "revisions differ -- not the interleaving tested");
+		tx.write(2, "x");
+		try {
+			tx.commit();
+			fail("stale read committed");
+		} catch (Temporal.Context.Op.Exception e) {
+			assertEquals(e.op.id(), 1);
+		}
+		assertNull(parent.read(2));
+	}
+
+	/** as above, for read validation by reconcile */
+	@Test
+	public void readShadowedByMergingContextWriteOfEqualRevisionFailsReconcile () {
+		final InMemory.TemporalContext grandparent = root("grandparent");
+		grandparent.write(1, "g0");
+		final InMemory.TemporalContext parent = (InMemory.TemporalContext) grandparent.branch("parent");
+		parent.journal(InMemory.Journal.full);
+		final InMemory.TemporalContext child = (InMemory.TemporalContext) parent.branch("child");
+		grandparent.write(1, "g1");
+		assertEquals(child.read(1), "g1");
+		final long read = child.revision(1);
+		parent.write(1, "p1");
+		assertEquals(parent.revision(1), read, "revisions differ -- not the interleaving tested");
+		child.write(2, "x");
+		try {
+			parent.reconcile(child);
+			fail("stale read reconciled");
+		} catch (Temporal.Context.Op.Exception e) {
+			assertEquals(e.op.id(), 1);
+		}
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void commitOfBranchThrows () throws Exception {
+		((InMemory.TemporalContext) root("parent").branch("child")).commit();
+	}
+}